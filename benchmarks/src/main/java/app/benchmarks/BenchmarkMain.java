@@ -0,0 +1,80 @@
+package app.benchmarks;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, adding what every run should record
+ * unless the command line says otherwise: the {@code gc} profiler for allocation rates, the
+ * {@link RetainedHeapProfiler} and a JSON report, written to jmh-result.json, that can be
+ * diffed between builds.
+ * <p>
+ * Benchmarks with a {@code rows} parameter are also summarised per row at the end, so runs at
+ * different sizes can be compared directly.
+ */
+public class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()) {
+            // Listing and help are handled by JMH's own entry point
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+            options.addProfiler(RetainedHeapProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT);
+        }
+
+        printPerRow(new Runner(options.build()).run());
+    }
+
+    /**
+     * Time and bytes allocated divided by the row count, with the peak retained heap, for the
+     * average time results of benchmarks that take one
+     */
+    private static void printPerRow(Collection<RunResult> results) {
+        boolean first = true;
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            String rows = params.getParam("rows");
+            if (rows == null || params.getMode() != Mode.AverageTime) continue;
+
+            if (first) {
+                System.out.println();
+                System.out.printf("%-40s %8s %12s %14s %18s%n", "Per row", "rows", "ns/row", "bytes/row", "peak retained (B)");
+                first = false;
+            }
+            double count = Double.parseDouble(rows);
+            double nanos = result.getPrimaryResult().getScore() * params.getTimeUnit().toNanos(1);
+            Result allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            Result retained = result.getSecondaryResults().get("heap.retained.peak");
+            // Class and method, without the package
+            String benchmark = params.getBenchmark();
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            System.out.printf("%-40s %8s %12.1f %14s %18s%n", name, rows, nanos / count,
+                allocated == null ? "-" : String.format("%.1f", allocated.getScore() / count),
+                retained == null ? "-" : String.format("%.0f", retained.getScore()));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package app.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import app.DimensionCache;
+import app.JDBCConnection;
+
+/**
+ * A JDBCConnection on a private copy of who.db, plus fixed mixes of filter values drawn from
+ * the real lookup tables so each benchmark cycles through realistic requests.
+ * <p>
+ * The copy is taken fresh for every run so benchmarks never change the shipped database. The
+ * result cache is turned off unless {@code cache.results.maxBytes} is given, so the query
+ * methods measure their own work rather than copying a cached list.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+
+    // Database to copy - override with -Dbench.db=FILE
+    private static final String SOURCE = System.getProperty("bench.db", "database/who.db");
+
+    // Filter combinations per mix; a power of two so picking the next one is a mask
+    static final int MIX_SIZE = 512;
+
+    // Same mixes on every run, so results are comparable between builds
+    private static final long SEED = 20_251_017L;
+
+    JDBCConnection connection;
+    String[][] vaccinationFilters;
+    String[][] infectionFilters;
+    String[][] summaryFilters;
+    String[][] improvementFilters;
+
+    private Path directory;
+
+    @Setup
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("who-bench-");
+        Path copy = directory.resolve("who.db");
+        Files.copy(Paths.get(SOURCE), copy);
+
+        // Both are read when JDBCConnection is first used, which happens below
+        System.setProperty("db.path", copy.toString());
+        if (System.getProperty("cache.results.maxBytes") == null) {
+            System.setProperty("cache.results.maxBytes", "0");
+        }
+
+        connection = new JDBCConnection();
+        connection.migrateSchema();
+        connection.warmCaches();
+        buildMixes(connection.getDimensions());
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        connection.close();
+        // The database and any WAL files it left behind
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private void buildMixes(DimensionCache dimensions) {
+        Random random = new Random(SEED);
+        List<String> countries = dimensions.getCountries().getNames();
+        List<String> regions = dimensions.getRegions().getNames();
+        List<String> antigens = dimensions.getAntigens().getNames();
+        List<String> economies = dimensions.getEconomies().getNames();
+        List<String> infectionTypes = dimensions.getInfectionTypes().getNames();
+        List<String> years = dimensions.getYears();
+        List<String> vaccinationYears = dimensions.getVaccinationYears();
+
+        vaccinationFilters = new String[MIX_SIZE][];
+        infectionFilters = new String[MIX_SIZE][];
+        summaryFilters = new String[MIX_SIZE][];
+        improvementFilters = new String[MIX_SIZE][];
+        for (int i = 0; i < MIX_SIZE; i++) {
+            int roll = random.nextInt(100);
+            String[] range = yearRange(random, vaccinationYears);
+
+            // country, region, antigen, yearStart, yearEnd - mostly one country or one vaccine over a period
+            if (roll < 35) {
+                vaccinationFilters[i] = new String[] { pick(random, countries), null, null, range[0], range[1] };
+            } else if (roll < 60) {
+                vaccinationFilters[i] = new String[] { null, pick(random, regions), pick(random, antigens), null, null };
+            } else if (roll < 80) {
+                vaccinationFilters[i] = new String[] { null, null, pick(random, antigens), range[0], range[1] };
+            } else if (roll < 90) {
+                vaccinationFilters[i] = new String[] { null, pick(random, regions), null, null, null };
+            } else {
+                vaccinationFilters[i] = new String[] { null, null, null, null, null };
+            }
+
+            // startYear, endYear, antigen, country
+            if (roll < 50) {
+                improvementFilters[i] = new String[] { range[0], range[1], pick(random, antigens), null };
+            } else if (roll < 80) {
+                improvementFilters[i] = new String[] { range[0], range[1], null, null };
+            } else {
+                improvementFilters[i] = new String[] { range[0], range[1], null, pick(random, countries) };
+            }
+
+            range = yearRange(random, years);
+            // infType, economicStatus, country, yearStart, yearEnd
+            if (roll < 40) {
+                infectionFilters[i] = new String[] { pick(random, infectionTypes), null, null, range[0], range[1] };
+            } else if (roll < 65) {
+                infectionFilters[i] = new String[] { pick(random, infectionTypes), pick(random, economies), null, null, null };
+            } else if (roll < 85) {
+                infectionFilters[i] = new String[] { null, null, pick(random, countries), null, null };
+            } else {
+                infectionFilters[i] = new String[] { null, null, null, null, null };
+            }
+
+            // infType, yearStart, yearEnd
+            if (roll < 50) {
+                summaryFilters[i] = new String[] { pick(random, infectionTypes), range[0], range[1] };
+            } else if (roll < 80) {
+                summaryFilters[i] = new String[] { null, range[0], range[1] };
+            } else {
+                summaryFilters[i] = new String[] { null, null, null };
+            }
+        }
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.isEmpty() ? null : values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Two years from the list, earliest first
+     */
+    private static String[] yearRange(Random random, List<String> years) {
+        if (years.isEmpty()) return new String[] { null, null };
+        int a = random.nextInt(years.size());
+        int b = random.nextInt(years.size());
+        return new String[] { years.get(Math.min(a, b)), years.get(Math.max(a, b)) };
+    }
+}
@@ -0,0 +1,96 @@
+package app.benchmarks;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.CSVExport;
+import app.CsvWriter;
+import app.InfectionCSVExport;
+import app.InfectionCursor;
+import app.InfectionPDFExport;
+import app.PDFExport;
+import app.VaccinationCursor;
+
+/**
+ * The four export generators, each writing every row of {@link SyntheticRows} to a stream that
+ * only counts the bytes. Run through {@link BenchmarkMain}, the time, allocation and peak
+ * retained heap are also reported per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExportBenchmarks {
+
+    // Filter labels written into the headers; the rows themselves are not filtered
+    private static final String COUNTRY = "Australia";
+    private static final String YEAR_START = "2000";
+    private static final String YEAR_END = "2023";
+
+    @Benchmark
+    public long vaccinationCsv(SyntheticRows data) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        try (VaccinationCursor cursor = data.vaccinationCursor();
+             CsvWriter csv = new CsvWriter(out, StandardCharsets.UTF_8)) {
+            CSVExport.writeCSV(cursor, csv, COUNTRY, null, null, YEAR_START, YEAR_END);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long infectionCsv(SyntheticRows data) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        InfectionCSVExport.generateCSV(out, data.infectionData(), COUNTRY, null, null, YEAR_START, YEAR_END);
+        return out.count;
+    }
+
+    // The PDF limits are raised to the row count so the largest inputs are laid out in full
+
+    @Benchmark
+    public long vaccinationPdf(SyntheticRows data) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        try (VaccinationCursor cursor = data.vaccinationCursor()) {
+            PDFExport.writePDF(cursor, out, data.rows, COUNTRY, null, null, YEAR_START, YEAR_END);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long infectionPdf(SyntheticRows data) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        try (InfectionCursor cursor = data.infectionCursor()) {
+            InfectionPDFExport.writePDF(cursor, out, data.rows, COUNTRY, null, null, YEAR_START, YEAR_END);
+        }
+        return out.count;
+    }
+
+    /**
+     * Discards what is written, so neither a buffer growing nor a disk is part of the timing
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
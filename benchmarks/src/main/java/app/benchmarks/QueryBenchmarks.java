@@ -0,0 +1,89 @@
+package app.benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The JDBCConnection query methods behind the pages, each called with the next filter
+ * combination from its mix in {@link DatabaseState}
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmarks {
+
+    // A raw query through the generic helper, joining two lookup tables
+    private static final String RAW_QUERY =
+        "SELECT c.name AS country, r.region AS region FROM Country c JOIN Region r ON c.region = r.RegionID ORDER BY c.name";
+
+    // Position in the filter mixes, per benchmark thread
+    private int next;
+
+    private String[] pick(String[][] mix) {
+        return mix[next++ & (DatabaseState.MIX_SIZE - 1)];
+    }
+
+    @Benchmark
+    public Object executeQuery(DatabaseState db) {
+        return db.connection.executeQuery(RAW_QUERY);
+    }
+
+    @Benchmark
+    public Object getDashboardSummary(DatabaseState db) throws SQLException {
+        return db.connection.getDashboardSummary();
+    }
+
+    @Benchmark
+    public Object getVaccinationData(DatabaseState db) {
+        String[] f = pick(db.vaccinationFilters);
+        return db.connection.getVaccinationData(f[0], f[1], f[2], f[3], f[4]);
+    }
+
+    @Benchmark
+    public Object getInfectionData(DatabaseState db) {
+        String[] f = pick(db.infectionFilters);
+        return db.connection.getInfectionData(f[0], f[1], f[2], f[3], f[4]);
+    }
+
+    @Benchmark
+    public Object getInfectionDataByEconomicStatus(DatabaseState db) {
+        String[] f = pick(db.summaryFilters);
+        return db.connection.getInfectionDataByEconomicStatus(f[0], f[1], f[2]);
+    }
+
+    @Benchmark
+    public Object getVaccinationImprovements(DatabaseState db) {
+        String[] f = pick(db.improvementFilters);
+        return db.connection.getVaccinationImprovements(f[0], f[1], f[2], f[3]);
+    }
+
+    // Dropdown getters - the cached lookup tables and the two still read through SQL
+
+    @Benchmark
+    public Object getDimensions(DatabaseState db) {
+        return db.connection.getDimensions();
+    }
+
+    @Benchmark
+    public Object getAllRegions(DatabaseState db) {
+        return db.connection.getAllRegions();
+    }
+
+    @Benchmark
+    public Object getRegionCountryMappings(DatabaseState db) {
+        return db.connection.getRegionCountryMappings();
+    }
+}
@@ -0,0 +1,102 @@
+package app.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Peak heap still in use while a benchmark runs, above what was live when its iteration began.
+ * <p>
+ * Each iteration starts from a full collection. After every collection during the iteration
+ * the JVM reports how much of the heap survived it, which is what the benchmark was holding on
+ * to at that moment; the largest of these, less the starting figure, is reported as
+ * {@code heap.retained.peak}. It is sampled, so it can only be seen when collections happen -
+ * {@code heap.retained.gcs} says how many there were.
+ */
+public class RetainedHeapProfiler implements InternalProfiler {
+
+    private final Set<String> heapPools = new HashSet<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final AtomicLong peak = new AtomicLong();
+    private final LongAdder samples = new LongAdder();
+    private long baseline;
+
+    private final NotificationListener listener = (notification, handback) -> {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) used += pool.getValue().getUsed();
+        }
+        peak.accumulateAndGet(used, Math::max);
+        samples.increment();
+    };
+
+    public RetainedHeapProfiler() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) emitters.add((NotificationEmitter) collector);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Peak heap retained during each iteration, sampled after garbage collections";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        System.gc();
+        baseline = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        peak.set(baseline);
+        samples.reset();
+        for (NotificationEmitter emitter : emitters) {
+            emitter.addNotificationListener(listener, null, null);
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // Never added, nothing to remove
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        results.add(new ScalarResult("heap.retained.peak", Math.max(0, peak.get() - baseline), "bytes", AggregationPolicy.MAX));
+        results.add(new ScalarResult("heap.retained.gcs", samples.sum(), "#", AggregationPolicy.SUM));
+        return results;
+    }
+}
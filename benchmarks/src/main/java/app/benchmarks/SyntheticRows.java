@@ -0,0 +1,170 @@
+package app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import app.InfectionCursor;
+import app.VaccinationCursor;
+import app.model.InfectionData;
+
+/**
+ * Made-up export rows, the same on every run, so the exports can be timed at sizes the real
+ * database does not have and without a query in the way.
+ * <p>
+ * Names are drawn from short lists shaped like the real data - some countries contain commas
+ * and quotes, so the CSV escaping does its share of the work. All rows are built before the
+ * benchmarks start; the cursors only step through arrays.
+ */
+@State(Scope.Benchmark)
+public class SyntheticRows {
+
+    private static final long SEED = 20240617L;
+
+    private static final String[] COUNTRIES = {
+        "Australia", "Bahamas, The", "Brazil", "Congo, Dem. Rep.", "Egypt, Arab Rep.", "Hong Kong SAR, China",
+        "India", "Iran, Islamic Rep.", "Korea, Dem. People's Rep.", "New Zealand", "Nigeria",
+        "Saint Vincent and the Grenadines", "United Kingdom", "\"Test\" Territory"
+    };
+    private static final String[] ANTIGENS = { "BCG", "DTPCV1", "DTPCV3", "HEPB3", "HIBCV3", "MCV1", "MCV2", "POL3", "RCV1" };
+    private static final String[] ECONOMIES = { "High Income", "Upper Middle Income", "Lower Middle Income", "Low Income" };
+    private static final String[] INFECTIONS = { "Diphtheria", "Measles", "Mumps", "Pertussis", "Rubella", "Tetanus (neonatal)" };
+
+    @Param({ "100", "10000", "100000" })
+    public int rows;
+
+    private int[] years;
+    private String[] countries;
+    private String[] antigens;
+    private String[] economies;
+    private String[] infections;
+    private double[] coverage;
+    private double[] targets;
+    private double[] doses;
+    private double[] cases;
+
+    // The infection CSV export takes a list rather than a cursor
+    private ArrayList<InfectionData> infectionData;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(SEED);
+        years = new int[rows];
+        countries = new String[rows];
+        antigens = new String[rows];
+        economies = new String[rows];
+        infections = new String[rows];
+        coverage = new double[rows];
+        targets = new double[rows];
+        doses = new double[rows];
+        cases = new double[rows];
+        infectionData = new ArrayList<>(rows);
+
+        for (int i = 0; i < rows; i++) {
+            years[i] = 2000 + random.nextInt(24);
+            countries[i] = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            antigens[i] = ANTIGENS[random.nextInt(ANTIGENS.length)];
+            economies[i] = ECONOMIES[random.nextInt(ECONOMIES.length)];
+            infections[i] = INFECTIONS[random.nextInt(INFECTIONS.length)];
+            coverage[i] = Math.round(random.nextDouble() * 10_000) / 100.0;
+            targets[i] = 1_000 + random.nextInt(5_000_000);
+            doses[i] = Math.floor(targets[i] * coverage[i] / 100);
+            // Mostly small counts with the occasional outbreak, as in the real table
+            cases[i] = random.nextInt(10) == 0 ? random.nextInt(500_000) : random.nextInt(200);
+            infectionData.add(new InfectionData(infections[i], countries[i], economies[i], years[i], cases[i]));
+        }
+    }
+
+    public VaccinationCursor vaccinationCursor() {
+        return new VaccinationCursor() {
+            private int row = -1;
+
+            @Override
+            public boolean next() {
+                return ++row < rows;
+            }
+
+            @Override
+            public int getYear() {
+                return years[row];
+            }
+
+            @Override
+            public String getCountry() {
+                return countries[row];
+            }
+
+            @Override
+            public String getAntigen() {
+                return antigens[row];
+            }
+
+            @Override
+            public double getCoverage() {
+                return coverage[row];
+            }
+
+            @Override
+            public double getTargetNum() {
+                return targets[row];
+            }
+
+            @Override
+            public double getDoses() {
+                return doses[row];
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public InfectionCursor infectionCursor() {
+        return new InfectionCursor() {
+            private int row = -1;
+
+            @Override
+            public boolean next() {
+                return ++row < rows;
+            }
+
+            @Override
+            public int getYear() {
+                return years[row];
+            }
+
+            @Override
+            public String getCountry() {
+                return countries[row];
+            }
+
+            @Override
+            public String getEconomicStatus() {
+                return economies[row];
+            }
+
+            @Override
+            public String getInfectionType() {
+                return infections[row];
+            }
+
+            @Override
+            public double getCases() {
+                return cases[row];
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public ArrayList<InfectionData> infectionData() {
+        return infectionData;
+    }
+}
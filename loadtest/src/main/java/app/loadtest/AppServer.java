@@ -0,0 +1,159 @@
+package app.loadtest;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import app.App;
+
+/**
+ * The application under test, run in a JVM of its own on a private copy of who.db so the load
+ * generator neither shares its heap and CPU time nor changes the shipped database.
+ * <p>
+ * The child uses the same classpath as the load generator - the shaded jar holds the
+ * application - and writes its output to app.log next to the copy.
+ */
+public class AppServer implements AutoCloseable {
+
+    // Longest wait for the application to start answering
+    private static final long START_TIMEOUT_MS = 120_000;
+    private static final long STOP_TIMEOUT_MS = 15_000;
+
+    private final Path directory;
+    private final Path log;
+    private Process process;
+    private boolean failed = false;
+
+    private AppServer(Path directory) {
+        this.directory = directory;
+        this.log = directory.resolve("app.log");
+    }
+
+    /**
+     * Copies the database, starts the application on it with the extra JVM options and waits
+     * until its home page answers
+     */
+    public static AppServer start(String database, String jvmOptions) throws IOException, InterruptedException {
+        if (portInUse(App.JAVALIN_PORT)) {
+            throw new IllegalStateException("Port " + App.JAVALIN_PORT + " is already in use - stop the server there, " +
+                "or point the load test at it with -Dloadtest.url");
+        }
+
+        AppServer server = new AppServer(Files.createTempDirectory("who-loadtest-"));
+        try {
+            Path copy = server.directory.resolve("who.db");
+            Files.copy(Paths.get(database), copy);
+
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            if (jvmOptions != null && !jvmOptions.trim().isEmpty()) {
+                command.addAll(Arrays.asList(jvmOptions.trim().split("\\s+")));
+            }
+            command.add("-Ddb.path=" + copy);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(App.class.getName());
+
+            server.process = new ProcessBuilder(command)
+                .directory(server.directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(server.log.toFile())
+                .start();
+            server.awaitReady();
+            return server;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            server.failed = true;
+            server.close();
+            throw e;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + App.JAVALIN_PORT;
+    }
+
+    /**
+     * Stops the application - letting its shutdown hooks run - and deletes the database copy.
+     * The log is kept if the application failed to start or died during the run.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        boolean keepLog = failed;
+        if (process != null) {
+            if (process.isAlive()) {
+                process.destroy();
+                if (!process.waitFor(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    System.err.println("Application did not stop within " + STOP_TIMEOUT_MS + "ms, killing it");
+                    process.destroyForcibly().waitFor();
+                }
+            } else {
+                keepLog = true;
+            }
+        }
+
+        // The copy and its WAL files
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!keepLog || !file.equals(log)) Files.deleteIfExists(file);
+            }
+        }
+        if (keepLog) {
+            System.err.println("Application log kept at " + log);
+        } else {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * False once the application has exited on its own
+     */
+    public boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    private void awaitReady() throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(getBaseUrl() + "/"))
+            .timeout(Duration.ofSeconds(10))
+            .build();
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with status " + process.exitValue() +
+                    " while starting - see " + log);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (ConnectException e) {
+                // Not listening yet
+            } catch (IOException e) {
+                System.err.println("Waiting for the application: " + e.getMessage());
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("Application did not answer within " + START_TIMEOUT_MS + "ms - see " + log);
+    }
+
+    private static boolean portInUse(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
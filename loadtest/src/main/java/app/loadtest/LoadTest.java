@@ -0,0 +1,278 @@
+package app.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+/**
+ * Drives the application with a weighted mix of page, chart data and export requests and
+ * reports how fast it answered.
+ * <p>
+ * Unless {@code loadtest.url} names a server that is already running, the application is
+ * started in its own JVM on a copy of who.db (see {@link AppServer}). A number of clients then
+ * send requests picked from the {@link RouteMix} - back to back, or at a fixed total rate when
+ * {@code loadtest.rate} is given. At a fixed rate each latency is measured from when the request
+ * was due rather than when it was sent, so a server that falls behind shows it in the
+ * percentiles instead of quietly receiving fewer requests.
+ * <p>
+ * Throughput and latency are printed every {@code loadtest.interval} seconds. After the warm-up,
+ * intervals are added to per-route HdrHistograms; at the end their percentiles are printed, and
+ * the output directory gets one percentile distribution file per route plus an HdrHistogram
+ * interval log of the whole run. Everything runs on this machine - nothing is downloaded.
+ * <p>
+ * Settings, as system properties:
+ * <ul>
+ *     <li>{@code loadtest.clients} - concurrent clients (16)</li>
+ *     <li>{@code loadtest.rate} - total requests per second, or 0 to send back to back (0)</li>
+ *     <li>{@code loadtest.warmup}, {@code loadtest.duration} - seconds of warm-up and measurement (10, 60)</li>
+ *     <li>{@code loadtest.interval} - seconds between progress lines (5)</li>
+ *     <li>{@code loadtest.mix} - route weights, e.g. {@code index=50,export-pdf=10}</li>
+ *     <li>{@code loadtest.db} - database to copy and draw filter values from (database/who.db)</li>
+ *     <li>{@code loadtest.appJvmOptions} - extra options for the application's JVM</li>
+ *     <li>{@code loadtest.url} - test a server that is already running instead</li>
+ *     <li>{@code loadtest.timeout} - seconds before a request counts as an error (60)</li>
+ *     <li>{@code loadtest.seed} - seed for the route and filter choices</li>
+ *     <li>{@code loadtest.output} - directory for the result files (loadtest-results)</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 16);
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "0"));
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup", 10);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration", 60);
+    private static final int INTERVAL_SECONDS = Integer.getInteger("loadtest.interval", 5);
+    private static final String MIX = System.getProperty("loadtest.mix", RouteMix.DEFAULT_MIX);
+    private static final String DATABASE = System.getProperty("loadtest.db", "database/who.db");
+    private static final String APP_JVM_OPTIONS = System.getProperty("loadtest.appJvmOptions", "");
+    private static final String URL = System.getProperty("loadtest.url");
+    private static final int TIMEOUT_SECONDS = Integer.getInteger("loadtest.timeout", 60);
+    private static final long SEED = Long.getLong("loadtest.seed", 20_251_017L);
+    private static final String OUTPUT = System.getProperty("loadtest.output", "loadtest-results");
+
+    private final RouteMix mix;
+    private final RouteStats[] stats;
+    private final String baseUrl;
+    private final HttpClient client;
+    private volatile boolean stopping = false;
+
+    private LoadTest(RouteMix mix, String baseUrl) {
+        this.mix = mix;
+        this.baseUrl = baseUrl;
+        this.stats = new RouteStats[mix.getRouteNames().size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new RouteStats(mix.getRouteNames().get(i));
+        }
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!new File(DATABASE).isFile()) {
+            System.err.println("Database " + DATABASE + " not found - run from the project folder or set -Dloadtest.db");
+            System.exit(1);
+        }
+        RouteMix mix = new RouteMix(DATABASE, MIX);
+
+        if (URL != null) {
+            new LoadTest(mix, URL.replaceAll("/+$", "")).run(null);
+            return;
+        }
+
+        System.out.println("Starting the application on a copy of " + DATABASE);
+        try (AppServer server = AppServer.start(DATABASE, APP_JVM_OPTIONS)) {
+            new LoadTest(mix, server.getBaseUrl()).run(server);
+        }
+    }
+
+    private void run(AppServer server) throws IOException, InterruptedException {
+        Path output = Paths.get(OUTPUT, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(output);
+
+        System.out.printf("%d clients, %s, %ds warm-up, %ds measured, against %s%n", CLIENTS,
+            RATE > 0 ? String.format("%.1f requests/s", RATE) : "back to back", WARMUP_SECONDS, DURATION_SECONDS, baseUrl);
+        System.out.println("Mix: " + MIX);
+        System.out.println();
+        System.out.printf("%8s %-8s %10s %8s %10s %10s %10s%n", "time(s)", "phase", "req/s", "errors", "p50(ms)", "p99(ms)", "max(ms)");
+
+        ExecutorService workers = Executors.newFixedThreadPool(CLIENTS, runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        for (int i = 0; i < CLIENTS; i++) {
+            int id = i;
+            workers.execute(() -> client(id, start));
+        }
+
+        HistogramLogWriter log = new HistogramLogWriter(output.resolve("latency.hlog").toFile());
+        long startMillis = System.currentTimeMillis();
+        log.outputComment("Latencies in microseconds per route, tagged by route name");
+        log.outputLogFormatVersion();
+        log.outputStartTime(startMillis);
+        log.setBaseTime(startMillis);
+        log.outputLegend();
+
+        long measuredNanos = 0;
+        try {
+            long warmupEnd = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+            long intervalStart = start;
+            while (intervalStart < end) {
+                // Intervals end on the warm-up boundary so no warm-up requests are measured
+                long next = Math.min(intervalStart + TimeUnit.SECONDS.toNanos(INTERVAL_SECONDS),
+                    intervalStart < warmupEnd ? warmupEnd : end);
+                sleepUntil(next);
+                boolean measuring = intervalStart >= warmupEnd;
+                long now = System.nanoTime();
+                report(log, now - start, now - intervalStart, measuring);
+                if (measuring) measuredNanos += now - intervalStart;
+                intervalStart = now;
+
+                if (server != null && !server.isRunning()) {
+                    System.err.println("The application stopped during the run");
+                    break;
+                }
+            }
+        } finally {
+            stopping = true;
+            workers.shutdownNow();
+            workers.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            log.close();
+        }
+
+        summarise(output, measuredNanos);
+    }
+
+    /**
+     * One client: picks a route, requests it, records how long it took, and repeats
+     */
+    private void client(int id, long start) {
+        Random random = new Random(SEED + id);
+        // At a fixed rate the clients take turns, each due every CLIENTS / RATE seconds
+        long period = RATE > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * CLIENTS / RATE) : 0;
+        long due = start + (RATE > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * id / RATE) : 0);
+
+        while (!stopping) {
+            long sent;
+            if (period > 0) {
+                sleepUntil(due);
+                if (stopping) return;
+                sent = due;
+                due += period;
+            } else {
+                sent = System.nanoTime();
+            }
+
+            int route = mix.pick(random);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + mix.path(route, random)))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .build();
+            boolean ok;
+            try {
+                // The whole body is read, as a browser would
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                ok = status >= 200 && status < 300;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (stopping) return;
+            stats[route].record((System.nanoTime() - sent) / 1_000, ok);
+        }
+    }
+
+    private void report(HistogramLogWriter log, long elapsedNanos, long intervalNanos, boolean measuring) {
+        Histogram all = new Histogram(RouteStats.HIGHEST_MICROS, RouteStats.DIGITS);
+        long errors = 0;
+        for (RouteStats route : stats) {
+            Histogram interval = route.takeInterval();
+            long intervalErrors = route.takeIntervalErrors();
+            all.add(interval);
+            errors += intervalErrors;
+            if (measuring) {
+                route.addToTotal(interval, intervalErrors);
+                log.outputIntervalHistogram(interval);
+            }
+        }
+
+        double seconds = intervalNanos / 1e9;
+        System.out.printf("%8.1f %-8s %10.1f %8d %10.2f %10.2f %10.2f%n", elapsedNanos / 1e9,
+            measuring ? "measure" : "warm-up", all.getTotalCount() / seconds, errors,
+            millis(all.getValueAtPercentile(50)), millis(all.getValueAtPercentile(99)), millis(all.getMaxValue()));
+    }
+
+    private void summarise(Path output, long measuredNanos) throws IOException {
+        double seconds = Math.max(measuredNanos / 1e9, 1e-9);
+        Histogram all = new Histogram(RouteStats.HIGHEST_MICROS, RouteStats.DIGITS);
+        long errors = 0;
+
+        System.out.println();
+        System.out.printf("%-22s %9s %8s %9s %9s %9s %9s %9s %9s %9s%n", "route", "requests", "errors", "req/s",
+            "mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        for (RouteStats route : stats) {
+            Histogram total = route.getTotal();
+            all.add(total);
+            errors += route.getTotalErrors();
+            printRow(route.getName(), total, route.getTotalErrors(), seconds);
+            writeDistribution(output.resolve(route.getName() + ".hgrm"), total);
+        }
+        printRow("all", all, errors, seconds);
+        writeDistribution(output.resolve("all.hgrm"), all);
+
+        System.out.println();
+        System.out.println("Percentile distributions and the interval log are in " + output);
+    }
+
+    private static void printRow(String name, Histogram histogram, long errors, double seconds) {
+        System.out.printf("%-22s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+            histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds, histogram.getMean() / 1_000,
+            millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMaxValue()));
+    }
+
+    /**
+     * The full percentile distribution in milliseconds, in the .hgrm format HdrHistogram's
+     * plotter reads
+     */
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1_000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1_000.0;
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+    }
+}
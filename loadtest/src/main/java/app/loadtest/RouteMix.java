@@ -0,0 +1,241 @@
+package app.loadtest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The routes the load test requests, how often each is picked, and the filter values they are
+ * given.
+ * <p>
+ * Filter values are read from the lookup tables of the database under test, so every request
+ * is one the site's own dropdowns could produce. Each route mixes no filters, one filter and
+ * several, with year ranges always in order.
+ * <p>
+ * The default weights roughly follow a browsing session - pages, the chart data they fetch,
+ * and the occasional export. {@code -Dloadtest.mix=index=50,export-pdf=10} replaces them; routes
+ * not listed are not requested.
+ */
+public class RouteMix {
+
+    static final String DEFAULT_MIX =
+        "index=12,trending=12,infection=15,insights=12," +
+        "api-vaccination=10,api-infection=10,api-summary=8,api-improvements=8," +
+        "export-csv=5,export-infection-csv=4,export-pdf=2,export-infection-pdf=2";
+
+    /**
+     * Builds a request path, query included, for one route
+     */
+    private interface PathMaker {
+        String next(Random random);
+    }
+
+    private final List<String> countries;
+    private final List<String> regions;
+    private final List<String> antigens;
+    private final List<String> economies;
+    private final List<String> infectionTypes;
+    private final List<String> years;
+    private final List<String> vaccinationYears;
+
+    // Every route that can be requested, by name
+    private final Map<String, PathMaker> catalogue = new LinkedHashMap<>();
+
+    // The chosen routes, and the running total of their weights for picking one
+    private final List<String> names = new ArrayList<>();
+    private final List<PathMaker> makers = new ArrayList<>();
+    private int[] cumulativeWeights;
+
+    public RouteMix(String database, String mix) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            countries = column(statement, "SELECT DISTINCT name FROM Country ORDER BY name");
+            regions = column(statement, "SELECT DISTINCT region FROM Region ORDER BY region");
+            antigens = column(statement, "SELECT DISTINCT name FROM Antigen ORDER BY name");
+            economies = column(statement, "SELECT DISTINCT phase FROM Economy ORDER BY phase");
+            infectionTypes = column(statement, "SELECT DISTINCT description FROM Infection_Type ORDER BY description");
+            years = column(statement, "SELECT YearID FROM YearDate ORDER BY YearID");
+            vaccinationYears = column(statement, "SELECT DISTINCT year FROM Vaccination ORDER BY year");
+        }
+
+        catalogue.put("index", random -> "/");
+        catalogue.put("trending", random -> infectionQuery("/trending", random));
+        catalogue.put("infection", random -> infectionQuery("/infection", random));
+        catalogue.put("insights", random -> improvementQuery("/insights", random));
+        catalogue.put("api-vaccination", random -> vaccinationQuery("/api/vaccination", random));
+        catalogue.put("api-infection", random -> infectionQuery("/api/infection", random));
+        catalogue.put("api-summary", this::summaryQuery);
+        catalogue.put("api-improvements", random -> improvementQuery("/api/improvements", random));
+        catalogue.put("export-csv", random -> vaccinationQuery("/export/csv", random));
+        catalogue.put("export-infection-csv", random -> infectionQuery("/export/infection/csv", random));
+        catalogue.put("export-pdf", random -> vaccinationQuery("/export/pdf", random));
+        catalogue.put("export-infection-pdf", random -> infectionQuery("/export/infection/pdf", random));
+
+        parse(mix);
+    }
+
+    /**
+     * Names of the routes in the mix, in the order they were given
+     */
+    public List<String> getRouteNames() {
+        return names;
+    }
+
+    /**
+     * Index into {@link #getRouteNames()} of a route picked by weight
+     */
+    public int pick(Random random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) return i;
+        }
+        return cumulativeWeights.length - 1;
+    }
+
+    /**
+     * A fresh path, filters included, for the route at the index
+     */
+    public String path(int route, Random random) {
+        return makers.get(route).next(random);
+    }
+
+    private void parse(String mix) {
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            if (entry.trim().isEmpty()) continue;
+            String[] parts = entry.split("=");
+            String name = parts[0].trim();
+            if (!catalogue.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown route '" + name + "' in loadtest.mix - known routes are " +
+                    String.join(", ", catalogue.keySet()));
+            }
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight <= 0) continue;
+            names.add(name);
+            makers.add(catalogue.get(name));
+            weights.add(weight);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix names no routes with a positive weight");
+        }
+
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    // Filters shared by the vaccination pages, chart data and exports
+    private String vaccinationQuery(String path, Random random) {
+        Query query = new Query(path);
+        int roll = random.nextInt(100);
+        if (roll < 35) {
+            query.add("country", pick(random, countries)).years("yearStart", "yearEnd", random, vaccinationYears);
+        } else if (roll < 60) {
+            query.add("region", pick(random, regions)).add("antigen", pick(random, antigens));
+        } else if (roll < 80) {
+            query.add("antigen", pick(random, antigens)).years("yearStart", "yearEnd", random, vaccinationYears);
+        } else if (roll < 90) {
+            query.add("region", pick(random, regions));
+        }
+        return query.toString();
+    }
+
+    // Filters shared by the infection pages, chart data and exports
+    private String infectionQuery(String path, Random random) {
+        Query query = new Query(path);
+        int roll = random.nextInt(100);
+        if (roll < 40) {
+            query.add("infectionType", pick(random, infectionTypes)).years("yearStart", "yearEnd", random, years);
+        } else if (roll < 65) {
+            query.add("infectionType", pick(random, infectionTypes)).add("economicStatus", pick(random, economies));
+        } else if (roll < 85) {
+            query.add("country", pick(random, countries));
+        }
+        return query.toString();
+    }
+
+    private String summaryQuery(Random random) {
+        Query query = new Query("/api/infection/summary");
+        int roll = random.nextInt(100);
+        if (roll < 50) {
+            query.add("infectionType", pick(random, infectionTypes)).years("yearStart", "yearEnd", random, years);
+        } else if (roll < 80) {
+            query.years("yearStart", "yearEnd", random, years);
+        }
+        return query.toString();
+    }
+
+    // The Insights page and its improvement rankings always have a year range
+    private String improvementQuery(String path, Random random) {
+        Query query = new Query(path).years("start_year", "end_year", random, vaccinationYears);
+        int roll = random.nextInt(100);
+        if (roll < 50) {
+            query.add("antigen", pick(random, antigens));
+        } else if (roll >= 80) {
+            query.add("country", pick(random, countries));
+        }
+        return query.toString();
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.isEmpty() ? null : values.get(random.nextInt(values.size()));
+    }
+
+    private static List<String> column(Statement statement, String query) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                String value = rs.getString(1);
+                if (value != null) values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Path with URL-encoded query parameters; null values are left out
+     */
+    private static final class Query {
+        private final StringBuilder text;
+        private boolean first = true;
+
+        private Query(String path) {
+            this.text = new StringBuilder(path);
+        }
+
+        private Query add(String name, String value) {
+            if (value == null) return this;
+            text.append(first ? '?' : '&').append(name).append('=')
+                .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            first = false;
+            return this;
+        }
+
+        /**
+         * Two years from the list, earliest first
+         */
+        private Query years(String startName, String endName, Random random, List<String> values) {
+            if (values.isEmpty()) return this;
+            int a = random.nextInt(values.size());
+            int b = random.nextInt(values.size());
+            return add(startName, values.get(Math.min(a, b))).add(endName, values.get(Math.max(a, b)));
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package app.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies and errors for one route. Workers record into a {@link Recorder}, which the
+ * reporting thread swaps out every interval without stopping them; the intervals after the
+ * warm-up are added up into the route's totals.
+ */
+public class RouteStats {
+
+    // Latencies are kept in microseconds, to three significant digits, up to ten minutes
+    static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+    static final int DIGITS = 3;
+
+    private final String name;
+    private final Recorder recorder = new Recorder(HIGHEST_MICROS, DIGITS);
+    private final Histogram total = new Histogram(HIGHEST_MICROS, DIGITS);
+    private final LongAdder errors = new LongAdder();
+
+    private Histogram interval;
+    private long errorsBefore;
+    private long totalErrors;
+
+    public RouteStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Called by the workers for every response, or failure to get one
+     */
+    public void record(long micros, boolean ok) {
+        recorder.recordValue(Math.min(Math.max(micros, 0), HIGHEST_MICROS));
+        if (!ok) errors.increment();
+    }
+
+    /**
+     * Latencies since the last call, tagged with the route name. The histogram is reused by the
+     * next call, so it must not be kept.
+     */
+    public Histogram takeInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        interval.setTag(name);
+        return interval;
+    }
+
+    /**
+     * Errors since the last call
+     */
+    public long takeIntervalErrors() {
+        long now = errors.sum();
+        long count = now - errorsBefore;
+        errorsBefore = now;
+        return count;
+    }
+
+    /**
+     * Adds an interval taken from this route to the measured totals
+     */
+    public void addToTotal(Histogram histogram, long intervalErrors) {
+        total.add(histogram);
+        totalErrors += intervalErrors;
+    }
+
+    public Histogram getTotal() {
+        return total;
+    }
+
+    public long getTotalErrors() {
+        return totalErrors;
+    }
+}
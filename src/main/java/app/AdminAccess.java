@@ -0,0 +1,63 @@
+package app;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.UnauthorizedResponse;
+
+/**
+ * Keeps the operator routes - everything under /admin and {@link MetricsPage} - away from
+ * visitors.
+ * <p>
+ * With {@code -Dadmin.token=SECRET} a request must carry {@code Authorization: Bearer SECRET},
+ * which curl sends with {@code -H} and Prometheus with its {@code authorization} scrape setting;
+ * anything else is refused with 401. Without a token the routes only answer requests from the
+ * machine itself and refuse the rest with 403. Behind a proxy on the same machine every request
+ * looks local, so set a token there.
+ */
+public class AdminAccess {
+
+    private static final String TOKEN = System.getProperty("admin.token", "");
+
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * Adds the before handlers that check access
+     */
+    public static void install(Javalin app) {
+        app.before("/admin/*", AdminAccess::check);
+        app.before(MetricsPage.URL, AdminAccess::check);
+    }
+
+    private static void check(Context context) {
+        if (!TOKEN.isEmpty()) {
+            String header = context.header("Authorization");
+            if (header == null || !header.startsWith(BEARER) || !matches(header.substring(BEARER.length()))) {
+                context.header("WWW-Authenticate", "Bearer");
+                throw new UnauthorizedResponse("Admin token required");
+            }
+        } else if (!isLocal(context.req.getRemoteAddr())) {
+            throw new ForbiddenResponse("Admin routes are only served locally unless admin.token is set");
+        }
+    }
+
+    // Compares in constant time, so response times give nothing away about the token
+    private static boolean matches(String token) {
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The remote address is a literal IP, so this never looks up a name
+    private static boolean isLocal(String address) {
+        if (address == null) return false;
+        try {
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
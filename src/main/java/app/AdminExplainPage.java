@@ -0,0 +1,65 @@
+package app;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Plain-text query plan report for operators - SQLite's EXPLAIN QUERY PLAN for every query shape
+ * the pool knows about, run with the values last bound to it. Shapes whose plan scans a whole
+ * table without an index are flagged, so a query that stops using its index is easy to spot.
+ */
+public class AdminExplainPage implements Handler {
+
+    public static final String URL = "/admin/explain";
+
+    private final JDBCConnection connection;
+
+    public AdminExplainPage(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        Map<String, QueryShape> shapes = new TreeMap<>(connection.getPool().getRegisteredShapes());
+        StringBuilder report = new StringBuilder();
+        int fullScans = 0;
+
+        for (Map.Entry<String, QueryShape> entry : shapes.entrySet()) {
+            report.append("\n# ").append(entry.getKey()).append("\n");
+            report.append("params ").append(entry.getValue().getParams()).append("\n");
+            try {
+                List<String> plan = connection.explainQueryPlan(entry.getValue());
+                boolean scans = false;
+                for (String line : plan) {
+                    boolean scan = isFullScan(line);
+                    scans |= scan;
+                    report.append(line).append(scan ? "    <-- full scan" : "").append("\n");
+                }
+                if (scans) fullScans++;
+            } catch (SQLException e) {
+                report.append("error: ").append(e.getMessage()).append("\n");
+            }
+        }
+
+        String header = "# Query plans\n"
+            + "schema.version_expected " + SchemaMigration.getTargetVersion() + "\n"
+            + "shapes " + shapes.size() + "\n"
+            + "shapes_with_full_scans " + fullScans + "\n";
+
+        context.contentType("text/plain");
+        context.result(header + report);
+    }
+
+    /**
+     * A SCAN step that uses no index reads every row of the table
+     */
+    private static boolean isFullScan(String line) {
+        String detail = line.trim();
+        return detail.startsWith("SCAN ") && !detail.contains(" USING ");
+    }
+}
@@ -0,0 +1,61 @@
+package app;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Plain-text query timings for operators - per query shape, how often it ran, the total, mean,
+ * p95 and longest time, and the mean time in each phase (connect, prepare, execute, map), most
+ * total time first. The latest queries over the slow query threshold follow with their plans.
+ */
+public class AdminQueriesPage implements Handler {
+
+    public static final String URL = "/admin/queries";
+
+    private final JDBCConnection connection;
+
+    public AdminQueriesPage(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        QueryStats stats = connection.getQueryStats();
+        StringBuilder text = new StringBuilder();
+
+        List<QueryStats.Shape> shapes = stats.getShapes();
+        shapes.sort(Comparator.comparingDouble(QueryStats.Shape::getTotalMillis).reversed());
+
+        text.append("# Queries (count, total / mean / p95 / max ms, mean ms per phase: connect / prepare / execute / map)\n");
+        text.append("slow_query_ms ").append(QueryStats.getSlowQueryMillis()).append("\n");
+        for (QueryStats.Shape shape : shapes) {
+            Histogram latencies = shape.getLatencies();
+            long count = shape.getCount();
+            if (count == 0) continue;
+            text.append("\nqueries.").append(shape.getKey()).append(" ").append(count).append(" ")
+                .append(String.format("%.3f / %.3f / %.3f / %.3f", shape.getTotalMillis(), shape.getTotalMillis() / count,
+                    latencies.getValueAtPercentile(95) / 1_000.0, shape.getMaxMillis()))
+                .append("  ")
+                .append(String.format("%.3f / %.3f / %.3f / %.3f",
+                    shape.getPhaseMillis(QueryStats.Phase.CONNECT) / count, shape.getPhaseMillis(QueryStats.Phase.PREPARE) / count,
+                    shape.getPhaseMillis(QueryStats.Phase.EXECUTE) / count, shape.getPhaseMillis(QueryStats.Phase.MAP) / count))
+                .append("\n");
+            text.append("  method ").append(shape.getMethod()).append("\n");
+            text.append("  sql ").append(shape.getSql()).append("\n");
+        }
+
+        List<QueryStats.SlowQuery> slowQueries = stats.getSlowQueries();
+        text.append("\n# Slow queries (latest ").append(slowQueries.size()).append(", newest first)\n");
+        for (QueryStats.SlowQuery slow : slowQueries) {
+            text.append(slow).append("\n");
+        }
+
+        context.contentType("text/plain");
+        context.result(text.toString());
+    }
+}
@@ -0,0 +1,33 @@
+package app;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Forces the cached home page aggregates and dropdown lookup tables to be reloaded and the
+ * cached query results dropped, e.g. after loading new data. Accepts POST only since it does work on the server.
+ */
+public class AdminRefreshPage implements Handler {
+
+    public static final String URL = "/admin/refresh";
+
+    private final JDBCConnection connection;
+
+    public AdminRefreshPage(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        long start = System.nanoTime();
+        // Pick up changed table versions first, so what is rebuilt below reads the new data
+        connection.getDataVersions().check();
+        connection.refreshDimensions();
+        connection.getDashboardCache().refresh();
+        connection.getResultCache().clear();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        context.contentType("text/plain");
+        context.result("dimensions and dashboard refreshed, query results cleared in " + elapsedMs + "ms\n");
+    }
+}
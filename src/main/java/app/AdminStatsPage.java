@@ -0,0 +1,123 @@
+package app;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Plain-text runtime statistics for operators - request latency per route, connection pool
+ * usage, wait times, table data versions, dashboard and result cache state and prepared
+ * statement cache hits per query shape. The same figures in Prometheus form are on /metrics.
+ */
+public class AdminStatsPage implements Handler {
+
+    public static final String URL = "/admin/stats";
+
+    private final JDBCConnection connection;
+    private final RequestMetrics metrics;
+
+    public AdminStatsPage(JDBCConnection connection, RequestMetrics metrics) {
+        this.connection = connection;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        ConnectionPool pool = connection.getPool();
+        StringBuilder text = new StringBuilder();
+
+        text.append("# Requests (count, in flight, p50 / p99 / max ms)\n");
+        for (RequestMetrics.Route route : metrics.getRoutes()) {
+            Histogram latencies = route.getLatencies();
+            if (latencies.getTotalCount() == 0 && route.getInFlight() == 0) continue;
+            text.append("requests.").append(route.getMethod()).append(" ").append(route.getPath()).append(" ")
+                .append(latencies.getTotalCount()).append(" ")
+                .append(route.getInFlight()).append(" ")
+                .append(String.format("%.3f / %.3f / %.3f", latencies.getValueAtPercentile(50) / 1_000.0,
+                    latencies.getValueAtPercentile(99) / 1_000.0, latencies.getMaxValue() / 1_000.0))
+                .append("\n");
+        }
+
+        text.append("\n# Connection pool\n");
+        text.append("pool.max_size ").append(pool.getMaxSize()).append("\n");
+        text.append("pool.active ").append(pool.getActiveCount()).append("\n");
+        text.append("pool.idle ").append(pool.getIdleCount()).append("\n");
+        text.append("pool.borrows ").append(pool.getBorrowCount()).append("\n");
+        text.append("pool.discarded ").append(pool.getDiscardedCount()).append("\n");
+        text.append("pool.wait_ms.total ").append(String.format("%.3f", pool.getTotalWaitMillis())).append("\n");
+        text.append("pool.wait_ms.avg ").append(String.format("%.3f", pool.getAverageWaitMillis())).append("\n");
+        text.append("pool.wait_ms.max ").append(String.format("%.3f", pool.getMaxWaitMillis())).append("\n");
+
+        MemoryReplica replica = connection.getReplica();
+        text.append("\n# In-memory replica\n");
+        text.append("replica.enabled ").append(MemoryReplica.isEnabled()).append("\n");
+        text.append("replica.generation ").append(replica.getGeneration()).append("\n");
+        text.append("replica.loads ").append(replica.getLoadCount()).append("\n");
+        text.append("replica.failures ").append(replica.getFailureCount()).append("\n");
+        text.append("replica.last_load_ms ").append(replica.getLastLoadMillis()).append("\n");
+
+        DataVersionService versions = connection.getDataVersions();
+        text.append("\n# Data versions\n");
+        text.append("versions.change_log ").append(DataVersionService.isChangeLogEnabled()).append("\n");
+        text.append("versions.checks ").append(versions.getCheckCount()).append("\n");
+        text.append("versions.changes ").append(versions.getChangeCount()).append("\n");
+        for (Map.Entry<String, Long> entry : versions.getVersions().entrySet()) {
+            text.append("versions.table.").append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+
+        DashboardCache dashboard = connection.getDashboardCache();
+        text.append("\n# Dashboard cache\n");
+        text.append("dashboard.hits ").append(dashboard.getHitCount()).append("\n");
+        text.append("dashboard.refreshes ").append(dashboard.getRefreshCount()).append("\n");
+        text.append("dashboard.age_ms ").append(dashboard.getAgeMillis()).append("\n");
+
+        ResultCache results = connection.getResultCache();
+        text.append("\n# Result cache\n");
+        text.append("results.hits ").append(results.getHitCount()).append("\n");
+        text.append("results.misses ").append(results.getMissCount()).append("\n");
+        text.append("results.coalesced ").append(results.getCoalescedCount()).append("\n");
+        text.append("results.hit_ratio ").append(String.format("%.3f", results.getHitRatio())).append("\n");
+        text.append("results.evictions ").append(results.getEvictionCount()).append("\n");
+        text.append("results.invalidations ").append(results.getInvalidationCount()).append("\n");
+        text.append("results.entries ").append(results.size()).append("\n");
+        text.append("results.bytes_used ").append(results.getBytesUsed()).append("\n");
+        text.append("results.bytes_max ").append(results.getMaxBytes()).append("\n");
+
+        FanOut fanOut = connection.getFanOut();
+        text.append("\n# Parallel queries\n");
+        text.append("fanout.submitted ").append(fanOut.getSubmittedCount()).append("\n");
+        text.append("fanout.timeouts ").append(fanOut.getTimeoutCount()).append("\n");
+        text.append("fanout.failures ").append(fanOut.getFailureCount()).append("\n");
+
+        FeedbackWriter feedback = connection.getFeedbackWriter();
+        text.append("\n# Feedback writer\n");
+        text.append("feedback.queued ").append(feedback.getQueuedCount()).append("\n");
+        text.append("feedback.queue_capacity ").append(feedback.getQueueCapacity()).append("\n");
+        text.append("feedback.accepted ").append(feedback.getAcceptedCount()).append("\n");
+        text.append("feedback.rejected ").append(feedback.getRejectedCount()).append("\n");
+        text.append("feedback.written ").append(feedback.getWrittenCount()).append("\n");
+        text.append("feedback.batches ").append(feedback.getBatchCount()).append("\n");
+        text.append("feedback.failed ").append(feedback.getFailedCount()).append("\n");
+
+        SharedExports exports = connection.getSharedExports();
+        text.append("\n# Shared exports\n");
+        text.append("exports.rendered ").append(exports.getRenderCount()).append("\n");
+        text.append("exports.shared ").append(exports.getSharedCount()).append("\n");
+        text.append("exports.wait_timeouts ").append(exports.getWaitTimeoutCount()).append("\n");
+
+        text.append("\n# Prepared statement cache (hits / misses per query shape)\n");
+        Map<String, ConnectionPool.ShapeStats> shapes = new TreeMap<>(pool.getShapeStats());
+        for (Map.Entry<String, ConnectionPool.ShapeStats> entry : shapes.entrySet()) {
+            text.append("statements.").append(entry.getKey()).append(" ")
+                .append(entry.getValue().getHits()).append(" / ")
+                .append(entry.getValue().getMisses()).append("\n");
+        }
+
+        context.contentType("text/plain");
+        context.result(text.toString());
+    }
+}
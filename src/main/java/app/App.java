@@ -20,15 +20,37 @@ public class App {
     public static final String      IMAGES_DIR      = "images/";
 
     public static JDBCConnection connection;
+    public static ExportJobs exportJobs;
+    public static RequestMetrics metrics;
 
 
     public static void main(String[] args) {
 
         connection = new JDBCConnection();
+        exportJobs = new ExportJobs();
+        // Export files left behind by an earlier run that was killed
+        ExportFiles.sweep(false);
+        metrics = new RequestMetrics();
+
+        // Release pooled database connections and background export files when the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            exportJobs.close();
+            connection.close();
+            ExportFiles.sweep(true);
+        }));
+
+        // Add missing indexes and planner statistics, then load in-memory data snapshots before serving requests
+        connection.migrateSchema();
+        connection.watchForChanges();
+        connection.openReplica();
+        connection.warmCaches();
 
         // Create our HTTP server and listen in port 7001
         Javalin app = Javalin.create(config -> {
             config.registerPlugin(new RouteOverviewPlugin("/help/routes"));
+
+            // Platform or virtual request threads, see ServerThreads
+            ServerThreads.configure(config);
             
             // Uncomment this if you have files in the CSS Directory
             config.addStaticFiles(CSS_DIR);
@@ -37,6 +59,14 @@ public class App {
             config.addStaticFiles(IMAGES_DIR);
         }).start(JAVALIN_PORT);
 
+        // Count and time every request per route - installed first so it sees each route added
+        metrics.install(app);
+
+        // Split requests into phases for the Server-Timing header and Flight Recorder events
+        RequestTiming.install(app);
+
+        // Admin pages and /metrics need the admin token, or a local client when none is set
+        AdminAccess.install(app);
 
         // Configure Web Routes
         configureRoutes(app);
@@ -53,13 +83,25 @@ public class App {
         app.get(Feedback.URL, new Feedback(connection));
         app.get(ViewFeedbackPage.URL, new ViewFeedbackPage(connection));
         app.get(PrivacyPage.URL, new PrivacyPage());
-        app.get(PDFExport.URL, new PDFExport(connection));
+        app.get(PDFExport.URL, new PDFExport(connection, exportJobs));
         app.get(CSVExport.URL, new CSVExport(connection));
-        app.get(InfectionPDFExport.URL, new InfectionPDFExport(connection));
+        app.get(InfectionPDFExport.URL, new InfectionPDFExport(connection, exportJobs));
+        app.get(ExportJobPage.URL, new ExportJobPage(exportJobs));
         app.get(InfectionCSVExport.URL, new InfectionCSVExport(connection));
+        app.get(AdminStatsPage.URL, new AdminStatsPage(connection, metrics));
+        app.get(AdminExplainPage.URL, new AdminExplainPage(connection));
+        app.get(AdminQueriesPage.URL, new AdminQueriesPage(connection));
+        app.get(MetricsPage.URL, new MetricsPage(connection, metrics));
+
+        // JSON data for the page charts
+        app.get(VaccinationApi.URL, new VaccinationApi(connection));
+        app.get(InfectionApi.URL, new InfectionApi(connection));
+        app.get(InfectionSummaryApi.URL, new InfectionSummaryApi(connection));
+        app.get(ImprovementApi.URL, new ImprovementApi(connection));
 
         // POST pages can accept form data
         app.post(Feedback.URL, new Feedback(connection));
+        app.post(AdminRefreshPage.URL, new AdminRefreshPage(connection));
 
     }
 }
\ No newline at end of file
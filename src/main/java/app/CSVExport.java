@@ -1,10 +1,9 @@
 package app;
 
-import app.model.Vaccination;
 import io.javalin.http.Handler;
 import io.javalin.http.Context;
 
-import java.util.ArrayList;
+import java.nio.charset.Charset;
 
 public class CSVExport implements Handler {
     
@@ -18,76 +17,74 @@ public class CSVExport implements Handler {
     
     @Override
     public void handle(Context context) throws Exception {
+        // Get the same filters as in ExploreDataPage
+        String country = context.queryParam("country");
+        String region = context.queryParam("region");
+        String antigen = context.queryParam("antigen");
+        String yearStart = context.queryParam("yearStart");
+        String yearEnd = context.queryParam("yearEnd");
+
         try {
-            // Get the same filters as in ExploreDataPage
-            String country = context.queryParam("country");
-            String region = context.queryParam("region");
-            String antigen = context.queryParam("antigen");
-            String yearStart = context.queryParam("yearStart");
-            String yearEnd = context.queryParam("yearEnd");
-            
-            // Get filtered data
-            ArrayList<Vaccination> vaccinationData = connection.getVaccinationData(
-                country, region, antigen, yearStart, yearEnd);
-            
-            // Generate CSV
-            String csvContent = generateCSV(vaccinationData, country, region, antigen, yearStart, yearEnd);
-            
             // Set response headers for CSV download
             String fileName = generateFileName(country, region, antigen, yearStart, yearEnd, "csv");
             context.contentType("text/csv");
             context.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-            context.result(csvContent);
-            
+
+            // Rows are streamed to the response as they are read, so memory use does not grow with the export.
+            // Identical exports requested at the same time share one pass over the data.
+            Charset charset = Charset.forName(context.res.getCharacterEncoding());
+            connection.writeExport(URL, context.res.getOutputStream(), out -> {
+                try (VaccinationCursor cursor = connection.openVaccinationCursor(country, region, antigen, yearStart, yearEnd);
+                     CsvWriter csv = new CsvWriter(out, charset)) {
+                    writeCSV(cursor, csv, country, region, antigen, yearStart, yearEnd);
+                }
+            }, country, region, antigen, yearStart, yearEnd);
+
         } catch (Exception e) {
             e.printStackTrace();
-            context.status(500).result("Error generating CSV: " + e.getMessage());
+            // Once rows have been sent the status can no longer change; the client sees a cut-off file
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error generating CSV: " + e.getMessage());
+            }
         }
     }
     
-    private String generateCSV(ArrayList<Vaccination> data, String country, String region, 
-                             String antigen, String yearStart, String yearEnd) {
-        StringBuilder csv = new StringBuilder();
-        
+    /**
+     * Writes the export from any vaccination cursor - the database in the handler, synthetic
+     * rows in the export benchmarks
+     */
+    public static void writeCSV(VaccinationCursor cursor, CsvWriter csv, String country, String region,
+                                String antigen, String yearStart, String yearEnd) throws Exception {
         // Add header with filter information
-        csv.append("Vaccination Data Export\n");
-        csv.append("Filters Applied: ");
-        if (country != null && !country.isEmpty()) csv.append("Country: ").append(country).append("; ");
-        if (region != null && !region.isEmpty()) csv.append("Region: ").append(region).append("; ");
-        if (antigen != null && !antigen.isEmpty()) csv.append("Antigen: ").append(antigen).append("; ");
-        if (yearStart != null && !yearStart.isEmpty()) csv.append("From: ").append(yearStart).append("; ");
-        if (yearEnd != null && !yearEnd.isEmpty()) csv.append("To: ").append(yearEnd).append("; ");
-        csv.append("\n\n");
-        
+        csv.text("Vaccination Data Export").endLine();
+        csv.text("Filters Applied: ");
+        if (country != null && !country.isEmpty()) csv.text("Country: ").text(country).text("; ");
+        if (region != null && !region.isEmpty()) csv.text("Region: ").text(region).text("; ");
+        if (antigen != null && !antigen.isEmpty()) csv.text("Antigen: ").text(antigen).text("; ");
+        if (yearStart != null && !yearStart.isEmpty()) csv.text("From: ").text(yearStart).text("; ");
+        if (yearEnd != null && !yearEnd.isEmpty()) csv.text("To: ").text(yearEnd).text("; ");
+        csv.endLine().endLine();
+
         // CSV headers
-        csv.append("Year,Country,Antigen,Coverage (%),Target Population,Doses Administered\n");
-        
+        csv.text("Year,Country,Antigen,Coverage (%),Target Population,Doses Administered").endLine();
+
         // Data rows
-        for (Vaccination vaccination : data) {
-            csv.append(vaccination.getYear()).append(",");
-            csv.append(escapeCsvField(vaccination.getCountry())).append(",");
-            csv.append(escapeCsvField(vaccination.getAntigen())).append(",");
-            csv.append(String.format("%.2f", vaccination.getCoverage())).append(",");
-            csv.append(String.format("%.0f", vaccination.getTargetNum())).append(",");
-            csv.append(String.format("%.0f", vaccination.getDoses())).append("\n");
+        long rows = 0;
+        while (cursor.next()) {
+            csv.number(cursor.getYear()).comma();
+            csv.field(cursor.getCountry()).comma();
+            csv.field(cursor.getAntigen()).comma();
+            csv.number(cursor.getCoverage(), 2).comma();
+            csv.number(cursor.getTargetNum(), 0).comma();
+            csv.number(cursor.getDoses(), 0).endLine();
+            rows++;
         }
-        
+
         // Summary
-        if (!data.isEmpty()) {
-            csv.append("\n");
-            csv.append("Total Records:,").append(data.size()).append("\n");
-        }
-        
-        return csv.toString();
-    }
-    
-    private String escapeCsvField(String field) {
-        if (field == null) return "";
-        // Escape quotes and wrap in quotes if contains comma or quotes
-        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
-            return "\"" + field.replace("\"", "\"\"") + "\"";
+        if (rows > 0) {
+            csv.endLine();
+            csv.text("Total Records:,").number(rows).endLine();
         }
-        return field;
     }
     
     private String generateFileName(String country, String region, String antigen, 
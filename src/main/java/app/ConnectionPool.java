@@ -0,0 +1,437 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Bounded pool of long-lived SQLite connections.
+ * <p>
+ * Read queries borrow one of up to {@code maxSize} read-only connections, so the
+ * database file is opened and its schema parsed once per connection instead of
+ * once per query. Updates go through a single writer connection that only one
+ * thread can hold at a time, which matches SQLite's one-writer model.
+ * <p>
+ * Each connection also keeps a small cache of prepared statements keyed by SQL text, so a query
+ * shape that has been seen before on that connection skips SQLite's parse and plan step.
+ * <p>
+ * Read connections can be pointed at another database holding the same data, such as an
+ * in-memory replica, with {@link #switchReads(String)}; the writer always uses the file.
+ */
+public class ConnectionPool {
+
+    // How long a connection may take to answer the validation check on borrow
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    // Query timeout applied to cached prepared statements
+    private static final int QUERY_TIMEOUT_SECONDS = 30;
+
+    // Most distinct statements kept open per connection before the least recently used is closed
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.statementCache.size", 64);
+
+    // Set by the writer when it opens; in WAL mode readers never wait for a write to commit
+    private static final String JOURNAL_MODE = System.getProperty("db.journalMode", "WAL");
+
+    private final String url;
+    private final int maxSize;
+
+    // Where read connections are opened, and which switch they were opened after
+    private volatile String readUrl;
+    private final AtomicInteger readGeneration = new AtomicInteger();
+    private final Map<Connection, Integer> generations = new ConcurrentHashMap<>();
+    private final long borrowTimeoutMillis;
+
+    private final ArrayBlockingQueue<Connection> idle;
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private Connection writer;
+
+    // Metrics
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder discardedCount = new LongAdder();
+
+    // Prepared statements per connection, and hit/miss counts per query shape
+    private final Map<Connection, Map<String, PreparedStatement>> statementCaches = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> shapeStats = new ConcurrentHashMap<>();
+
+    // Latest instance of every query shape, with its bound values, for the query plan report
+    private final Map<String, QueryShape> registeredShapes = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.readUrl = url;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a read connection, waiting up to the configured timeout when all
+     * connections are in use. Every borrowed connection must be handed back with
+     * {@link #release(Connection)}.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            // Reuse an idle connection if it still answers, otherwise open a fresh one
+            Connection connection = idle.poll();
+            while (connection != null && (isStale(connection) || !isUsable(connection))) {
+                discard(connection);
+                connection = idle.poll();
+            }
+            if (connection == null) {
+                connection = open(true);
+            }
+            active.incrementAndGet();
+            return connection;
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a read connection to the pool. Safe to call with null so it can sit
+     * in a finally block after a failed borrow.
+     */
+    public void release(Connection connection) {
+        if (connection == null) return;
+
+        active.decrementAndGet();
+        try {
+            if (closed || isStale(connection) || connection.isClosed() || !idle.offer(connection)) {
+                discard(connection);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Opens read connections on the given database from now on. Idle connections to the previous
+     * one are closed straight away and borrowed ones when they are released, so each query runs
+     * entirely against one or the other.
+     */
+    public void switchReads(String newReadUrl) {
+        readUrl = newReadUrl;
+        readGeneration.incrementAndGet();
+
+        int count = idle.size();
+        for (int i = 0; i < count; i++) {
+            Connection connection = idle.poll();
+            if (connection == null) break;
+            if (isStale(connection) || !idle.offer(connection)) discard(connection);
+        }
+    }
+
+    /**
+     * Where read connections are currently opened
+     */
+    public String getReadUrl() {
+        return readUrl;
+    }
+
+    /**
+     * Takes the single writer connection, blocking while another thread holds it.
+     * Must be handed back with {@link #releaseWriter(Connection)}.
+     */
+    public Connection borrowWriter() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            if (writer == null || !isUsable(writer)) {
+                if (writer != null) discard(writer);
+                writer = open(false);
+            }
+            return writer;
+        } catch (SQLException e) {
+            writer = null;
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the writer so the next {@link #borrowWriter()} opens it again, e.g. on a database
+     * file that has replaced the one it had open. Waits while another thread holds the writer.
+     */
+    public void reopenWriter() {
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                discard(writer);
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Releases the writer connection. Any transaction left open by the caller is
+     * rolled back so the next writer starts clean.
+     */
+    public void releaseWriter(Connection connection) {
+        if (connection == null) return;
+
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error resetting writer connection: " + e.getMessage());
+            discard(connection);
+            writer = null;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a prepared statement for the shape with its parameters bound, reusing the one cached on
+     * this connection when the same SQL has been prepared before. The statement belongs to the cache:
+     * callers close the ResultSet but never the statement itself.
+     */
+    public PreparedStatement prepare(Connection connection, QueryShape shape) throws SQLException {
+        String sql = shape.getSql();
+        Map<String, PreparedStatement> cache = statementCaches.computeIfAbsent(connection, c -> newStatementCache());
+        ShapeStats stats = shapeStats.computeIfAbsent(shape.getKey(), k -> new ShapeStats());
+        registeredShapes.put(shape.getKey(), shape);
+
+        // Only the thread holding the connection touches its cache, so no locking is needed here
+        PreparedStatement statement = cache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            stats.misses.increment();
+            statement = connection.prepareStatement(sql);
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            cache.put(sql, statement);
+        } else {
+            stats.hits.increment();
+            statement.clearParameters();
+        }
+
+        shape.bind(statement);
+        return statement;
+    }
+
+    /**
+     * Records a query shape for the query plan report without running it, so queries normally
+     * answered from memory still show up there
+     */
+    public void register(QueryShape shape) {
+        registeredShapes.putIfAbsent(shape.getKey(), shape);
+    }
+
+    /**
+     * Every query shape registered or prepared so far, keyed by shape, with the values last bound to it
+     */
+    public Map<String, QueryShape> getRegisteredShapes() {
+        return Collections.unmodifiableMap(registeredShapes);
+    }
+
+    /**
+     * Statement cache hit/miss counts keyed by query shape
+     */
+    public Map<String, ShapeStats> getShapeStats() {
+        return Collections.unmodifiableMap(shapeStats);
+    }
+
+    /**
+     * Closes every idle connection and the writer. Connections still borrowed are
+     * closed when they are released.
+     */
+    public void close() {
+        closed = true;
+
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            discard(connection);
+        }
+
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                discard(writer);
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getDiscardedCount() {
+        return discardedCount.sum();
+    }
+
+    public double getTotalWaitMillis() {
+        return totalWaitNanos.sum() / 1_000_000.0;
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0 : totalWaitNanos.sum() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    private Connection open(boolean readOnly) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(readOnly);
+        if (!readOnly) {
+            // The journal mode is stored in the file, so readers opened later follow it
+            config.setJournalMode(SQLiteConfig.JournalMode.valueOf(JOURNAL_MODE.toUpperCase()));
+            return DriverManager.getConnection(url, config.toProperties());
+        }
+
+        // Read the generation first, so a switch in between marks the connection stale, not current
+        int generation = readGeneration.get();
+        Connection connection = DriverManager.getConnection(readUrl, config.toProperties());
+        try (Statement statement = connection.createStatement()) {
+            // Shared in-memory databases ignore the read-only open flag
+            statement.execute("PRAGMA query_only = 1");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        generations.put(connection, generation);
+        return connection;
+    }
+
+    /**
+     * True for a read connection opened before the last switch
+     */
+    private boolean isStale(Connection connection) {
+        Integer generation = generations.get(connection);
+        return generation != null && generation != readGeneration.get();
+    }
+
+    private boolean isUsable(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        discardedCount.increment();
+        statementCaches.remove(connection);
+        generations.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, PreparedStatement> newStatementCache() {
+        // Access-ordered so the least recently used statement is closed once the cache is full
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) return false;
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing cached statement: " + e.getMessage());
+                }
+                return true;
+            }
+        };
+    }
+
+    private void recordWait(long nanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Hit and miss counters for one query shape
+     */
+    public static class ShapeStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes CSV straight to an output stream, one line at a time.
+ * <p>
+ * Each line is assembled in a reused buffer and numbers are written digit by digit, so a row
+ * costs no garbage beyond the strings it prints. Numbers come out exactly as
+ * {@code String.format("%.Nf")} would print them; the rare value that cannot be written on the
+ * fast path falls back to String.format itself.
+ */
+public class CsvWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Largest scaled value the fast path handles, well inside the range doubles hold exactly
+    private static final double MAX_EXACT = 1e15;
+
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public CsvWriter(OutputStream stream, Charset charset) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, charset), BUFFER_SIZE);
+    }
+
+    /**
+     * Appends text as-is, for headings and separators
+     */
+    public CsvWriter text(String value) {
+        line.append(value);
+        return this;
+    }
+
+    public CsvWriter comma() {
+        line.append(',');
+        return this;
+    }
+
+    /**
+     * Appends a value, quoting it when it contains a comma, quote or newline
+     */
+    public CsvWriter field(String value) {
+        if (value == null) return this;
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n';
+        }
+        if (!quote) {
+            line.append(value);
+            return this;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+        return this;
+    }
+
+    public CsvWriter number(long value) {
+        line.append(value);
+        return this;
+    }
+
+    /**
+     * Appends the value with a fixed number of decimals (0 to 6), rounding half up like %.Nf
+     */
+    public CsvWriter number(double value, int decimals) {
+        if (!appendFast(value, decimals)) {
+            line.append(String.format("%." + decimals + "f", value));
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current line and hands it to the output buffer
+     */
+    public CsvWriter endLine() throws IOException {
+        line.append('\n');
+        out.append(line);
+        line.setLength(0);
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.append(line);
+        line.setLength(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    /**
+     * Writes values that need no decimal rounding, plus whole-number rounding. Returns false for
+     * anything else (negative, huge, non-finite, or more decimals than requested).
+     */
+    private boolean appendFast(double value, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) return false;
+        if (!(value >= 0) || Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(-0.0)) return false;
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = value * scale;
+        if (scaled >= MAX_EXACT) return false;
+
+        long units;
+        if (decimals == 0) {
+            // Below 2^52 the fraction is exact, and %.0f rounds a fraction of one half up
+            double whole = Math.floor(value);
+            units = (long) whole + (value - whole >= 0.5 ? 1 : 0);
+        } else {
+            // Only when the value is exactly what its N-decimal text parses back to, so the shortest
+            // decimal form has at most N decimals and no rounding can differ from String.format
+            units = (long) Math.rint(scaled);
+            if ((double) units / scale != value) return false;
+        }
+
+        line.append(units / scale);
+        if (decimals > 0) {
+            line.append('.');
+            long fraction = units % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                line.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+        return true;
+    }
+}
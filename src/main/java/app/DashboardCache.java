@@ -0,0 +1,208 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the aggregates shown on the home page so the landing page renders from memory.
+ * <p>
+ * The aggregates are computed once at startup and recomputed only when the database changes
+ * or the entry is older than {@code dashboard.ttlMs}. While one thread recomputes, other
+ * requests keep getting the previous dashboard instead of queueing behind the queries.
+ * <p>
+ * The five queries are independent, so they run side by side through {@link FanOut}. A query
+ * that fails or does not finish in time leaves its part of the dashboard marked unavailable, and
+ * such a partial dashboard is recomputed on the next request.
+ */
+public class DashboardCache {
+
+    // Tables the aggregates are computed from
+    static final String[] TABLES = {
+        "Country", "Region", "Antigen", "Economy", "Vaccination", "InfectionData", "Infection_Type"
+    };
+
+    // Longest a dashboard is served before it is recomputed even if the data looks unchanged
+    private static final long TTL_MS = Long.getLong("dashboard.ttlMs", 10 * 60_000L);
+
+    private final JDBCConnection connection;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Dashboard current;
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public DashboardCache(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the cached dashboard, recomputing it first if it is missing, expired or out of date
+     */
+    public Dashboard get() {
+        Dashboard dashboard = current;
+        if (dashboard != null && !isStale(dashboard)) {
+            hits.increment();
+            return dashboard;
+        }
+
+        if (dashboard == null) {
+            // Nothing to serve yet, so wait for whoever is computing it
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            // Someone else is already refreshing - the previous dashboard is good enough meanwhile
+            hits.increment();
+            return dashboard;
+        }
+
+        try {
+            dashboard = current;
+            if (dashboard == null || isStale(dashboard)) {
+                dashboard = compute();
+                current = dashboard;
+            }
+            return dashboard;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Recomputes the dashboard now regardless of its age - used by the admin refresh endpoint
+     */
+    public Dashboard refresh() {
+        refreshLock.lock();
+        try {
+            Dashboard dashboard = compute();
+            current = dashboard;
+            return dashboard;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Milliseconds since the current dashboard was computed, or -1 if there is none yet
+     */
+    public long getAgeMillis() {
+        Dashboard dashboard = current;
+        return dashboard == null ? -1 : System.currentTimeMillis() - dashboard.computedAt;
+    }
+
+    private boolean isStale(Dashboard dashboard) {
+        return System.currentTimeMillis() - dashboard.computedAt >= TTL_MS
+            || dashboard.version != connection.dataVersion(TABLES)
+            || !dashboard.unavailable.isEmpty();
+    }
+
+    private Dashboard compute() {
+        refreshes.increment();
+        // Read the version first so a change made while the queries run triggers another refresh
+        long version = connection.dataVersion(TABLES);
+
+        FanOut fanOut = connection.getFanOut();
+        FanOut.Pending<HashMap<String, String>> summary = fanOut.submit("getDashboardSummary", connection::getDashboardSummary);
+        FanOut.Pending<ArrayList<HashMap<String, String>>> topVaccinations = fanOut.submit("getVaccinationCoverage", connection::getVaccinationCoverage);
+        FanOut.Pending<ArrayList<HashMap<String, String>>> economySnapshot = fanOut.submit("getEconomySnapshot", connection::getEconomySnapshot);
+        FanOut.Pending<ArrayList<HashMap<String, String>>> improvedRegions = fanOut.submit("getRegions", connection::getRegions);
+        FanOut.Pending<ArrayList<HashMap<String, String>>> topInfections = fanOut.submit("getTopInfections", connection::getTopInfections);
+
+        Set<String> unavailable = new HashSet<>();
+        HashMap<String, String> summaryRow = summary.await();
+        if (summaryRow == null) unavailable.add("summary");
+
+        return new Dashboard(
+            version,
+            summaryRow == null ? Collections.emptyMap() : Collections.unmodifiableMap(summaryRow),
+            freeze("topVaccinations", topVaccinations.await(), unavailable),
+            freeze("economySnapshot", economySnapshot.await(), unavailable),
+            freeze("improvedRegions", improvedRegions.await(), unavailable),
+            freeze("topInfections", topInfections.await(), unavailable),
+            Collections.unmodifiableSet(unavailable));
+    }
+
+    /**
+     * Read-only copy of the rows, or an empty list with the part recorded as unavailable if its
+     * query did not complete
+     */
+    private static List<Map<String, String>> freeze(String part, ArrayList<HashMap<String, String>> rows, Set<String> unavailable) {
+        if (rows == null) {
+            unavailable.add(part);
+            return Collections.emptyList();
+        }
+        ArrayList<Map<String, String>> frozen = new ArrayList<>(rows.size());
+        for (HashMap<String, String> row : rows) {
+            frozen.add(Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+
+    /**
+     * One immutable set of home page aggregates
+     */
+    public static final class Dashboard {
+        private final long version;
+        private final long computedAt = System.currentTimeMillis();
+        private final Map<String, String> summary;
+        private final List<Map<String, String>> topVaccinations;
+        private final List<Map<String, String>> economySnapshot;
+        private final List<Map<String, String>> improvedRegions;
+        private final List<Map<String, String>> topInfections;
+        private final Set<String> unavailable;
+
+        private Dashboard(long version, Map<String, String> summary, List<Map<String, String>> topVaccinations,
+                          List<Map<String, String>> economySnapshot, List<Map<String, String>> improvedRegions,
+                          List<Map<String, String>> topInfections, Set<String> unavailable) {
+            this.version = version;
+            this.summary = summary;
+            this.topVaccinations = topVaccinations;
+            this.economySnapshot = economySnapshot;
+            this.improvedRegions = improvedRegions;
+            this.topInfections = topInfections;
+            this.unavailable = unavailable;
+        }
+
+        public Map<String, String> getSummary() {
+            return summary;
+        }
+
+        public List<Map<String, String>> getTopVaccinations() {
+            return topVaccinations;
+        }
+
+        public List<Map<String, String>> getEconomySnapshot() {
+            return economySnapshot;
+        }
+
+        public List<Map<String, String>> getImprovedRegions() {
+            return improvedRegions;
+        }
+
+        public List<Map<String, String>> getTopInfections() {
+            return topInfections;
+        }
+
+        /**
+         * Parts whose query did not complete - any of summary, topVaccinations, economySnapshot,
+         * improvedRegions and topInfections
+         */
+        public Set<String> getUnavailable() {
+            return unavailable;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tells the in-memory caches when who.db has changed, and which tables changed.
+ * <p>
+ * Every {@code db.versionCheckMs} a background thread reads {@code PRAGMA data_version} on a
+ * connection of its own, which moves whenever any other connection commits. Each tracked table
+ * has a version number that goes up when a change touching it is seen; caches remember the
+ * versions of the tables they were built from and compare them on use.
+ * <p>
+ * A refreshed who.db is dropped in by renaming it over the old one ({@code mv}), which the check
+ * sees as a new file key (device and inode). Connections still have the old file open, so the
+ * service reopens its own, installs the ChangeLog in the new file, bumps every table and runs
+ * the replacement preparers so the pool reopens too. Copying over the open file in place is not
+ * safe with SQLite and is not looked for. The file's modification time and size are
+ * only used when data_version cannot be read: in WAL mode a checkpoint rewrites the file
+ * without any new data.
+ * <p>
+ * Triggers count inserts, updates and deletes per table in a ChangeLog table, so a commit only
+ * bumps the tables it touched - new Feedback rows, including the application's own, leave the
+ * data snapshots alone. The triggers run once per row, which slows bulk loads a little. With
+ * {@code -Ddb.changeLog=false}, or when the log cannot be read, every table is bumped on any change.
+ * <p>
+ * Subscribers are told about changes to the tables they listen to, on the checking thread, so
+ * they can drop or rebuild exactly the structures that depend on them.
+ */
+public class DataVersionService {
+
+    // How often the database is checked for changes
+    private static final long CHECK_INTERVAL_MS = Long.getLong("db.versionCheckMs", 5_000L);
+
+    // Installs the per-table change triggers unless turned off
+    private static final boolean CHANGE_LOG = Boolean.parseBoolean(System.getProperty("db.changeLog", "true"));
+
+    // Tables whose versions are tracked
+    static final String[] TABLES = {
+        "Antigen", "Attributes", "Country", "CountryPopulation", "Economy", "Feedback", "InfectionData",
+        "Infection_Type", "Personas", "Region", "TeamMembers", "Vaccination", "YearDate"
+    };
+
+    /**
+     * Called with the tables that changed, limited to those the subscriber listens to
+     */
+    public interface Listener {
+        void changed(Set<String> tables);
+    }
+
+    private final String url;
+    private final File file;
+
+    // Per-table versions, replaced as a whole on every change
+    private volatile Map<String, Long> versions;
+
+    // What the last check saw - only touched under the lock
+    private Connection connection;
+    private long dataVersion = -1;
+    private long fileStamp;
+    private Object fileKey;
+    private Map<String, Long> changeCounts;
+
+    private final List<Runnable> replacementPreparers = new CopyOnWriteArrayList<>();
+    private final List<Subscription> preparers = new CopyOnWriteArrayList<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService checker;
+
+    // Metrics
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+
+    public DataVersionService(String url, File file) {
+        this.url = url;
+        this.file = file;
+        HashMap<String, Long> initial = new HashMap<>();
+        for (String table : TABLES) initial.put(table, 1L);
+        this.versions = initial;
+    }
+
+    public static boolean isChangeLogEnabled() {
+        return CHANGE_LOG;
+    }
+
+    /**
+     * Creates the ChangeLog table and its triggers if they are missing - run on the writer
+     * connection when the change log is enabled
+     */
+    public static void installChangeLog(Connection writer) throws SQLException {
+        try (Statement statement = writer.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS ChangeLog (table_name TEXT PRIMARY KEY, changes INTEGER NOT NULL DEFAULT 0)");
+            for (String table : TABLES) {
+                // Table names are our own constants, so they are safe to splice in
+                statement.execute("INSERT OR IGNORE INTO ChangeLog (table_name) VALUES ('" + table + "')");
+                for (String event : new String[] { "INSERT", "UPDATE", "DELETE" }) {
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS changelog_" + table + "_" + event.toLowerCase() +
+                        " AFTER " + event + " ON " + table +
+                        " BEGIN UPDATE ChangeLog SET changes = changes + 1 WHERE table_name = '" + table + "'; END");
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the current state as the starting point and starts checking in the background.
+     * Call after the schema migration so its own changes are not reported.
+     */
+    public synchronized void start() {
+        if (checker != null) return;
+        dataVersion = readDataVersion();
+        fileStamp = readFileStamp();
+        fileKey = readFileKey();
+        changeCounts = CHANGE_LOG ? readChangeCounts() : null;
+
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-version-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Current version of one table, or 0 for a table that is not tracked
+     */
+    public long version(String table) {
+        return versions.getOrDefault(table, 0L);
+    }
+
+    /**
+     * Combined version of several tables, which goes up whenever any of them changes
+     */
+    public long version(String... tables) {
+        Map<String, Long> current = versions;
+        long combined = 0;
+        for (String table : tables) combined += current.getOrDefault(table, 0L);
+        return combined;
+    }
+
+    /**
+     * Every tracked table with its version, by name
+     */
+    public Map<String, Long> getVersions() {
+        return Collections.unmodifiableMap(new TreeMap<>(versions));
+    }
+
+    /**
+     * Calls the listener after any of the tables changes
+     */
+    public void subscribe(Listener listener, String... tables) {
+        subscriptions.add(new Subscription(listener, new HashSet<>(Arrays.asList(tables))));
+    }
+
+    /**
+     * Calls the listener when any of the tables changes, before the new versions are published,
+     * so a copy of the data the caches read from can catch up first. Runs with the checks held
+     * off, so it should be quick.
+     */
+    public void addPreparer(Listener listener, String... tables) {
+        preparers.add(new Subscription(listener, new HashSet<>(Arrays.asList(tables))));
+    }
+
+    /**
+     * Runs the action when the database file has been replaced, before the service reopens the
+     * file and before the other preparers and the new versions - for closing connections that
+     * still have the old file open
+     */
+    public void addReplacementPreparer(Runnable action) {
+        replacementPreparers.add(action);
+    }
+
+    /**
+     * Looks for changes now rather than waiting for the next scheduled check, and tells the
+     * subscribers about any before returning
+     */
+    public void check() {
+        Set<String> changed;
+        synchronized (this) {
+            checks.increment();
+            long currentDataVersion = readDataVersion();
+            long currentFileStamp = readFileStamp();
+            Object currentFileKey = readFileKey();
+            boolean replaced = currentFileKey != null && !currentFileKey.equals(fileKey);
+            boolean committed = currentDataVersion != dataVersion;
+            // Without data_version the stamp is all there is, checkpoints included
+            boolean stamped = currentDataVersion < 0 && currentFileStamp != fileStamp;
+            if (!replaced && !committed && !stamped) return;
+
+            changed = null;
+            if (replaced) {
+                currentDataVersion = reopen();
+            } else if (committed && CHANGE_LOG) {
+                Map<String, Long> counts = readChangeCounts();
+                if (counts != null && changeCounts != null) changed = changedTables(changeCounts, counts);
+                changeCounts = counts;
+            }
+            // A new file, no log, or a change the log does not explain affects everything
+            if (changed == null || changed.isEmpty()) {
+                changed = new HashSet<>(Arrays.asList(TABLES));
+            }
+
+            dataVersion = currentDataVersion;
+            fileStamp = currentFileStamp;
+            if (currentFileKey != null) fileKey = currentFileKey;
+            for (Subscription preparer : preparers) {
+                preparer.notify(changed);
+            }
+            HashMap<String, Long> next = new HashMap<>(versions);
+            for (String table : changed) next.merge(table, 1L, Long::sum);
+            versions = next;
+            changes.increment();
+        }
+
+        for (Subscription subscription : subscriptions) {
+            subscription.notify(changed);
+        }
+    }
+
+    public long getCheckCount() {
+        return checks.sum();
+    }
+
+    /**
+     * Checks that found the database changed
+     */
+    public long getChangeCount() {
+        return changes.sum();
+    }
+
+    /**
+     * Stops checking and closes the connection - called when the application shuts down
+     */
+    public synchronized void close() {
+        if (checker != null) checker.shutdownNow();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing data version connection: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Moves the service's own connection to the file now at the path, gives that file the
+     * ChangeLog and its triggers, and returns its data_version as the new starting point. The
+     * replacement preparers close the other connections to the old file first, so none is left
+     * open beside the new ones sharing the -wal and -shm files by name.
+     */
+    private long reopen() {
+        closeQuietly();
+        for (Runnable preparer : replacementPreparers) {
+            try {
+                preparer.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error reopening the replaced database: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        long version = readDataVersion();
+        if (CHANGE_LOG && connection != null) {
+            try {
+                installChangeLog(connection);
+            } catch (SQLException e) {
+                System.err.println("Error installing ChangeLog in the replaced database: " + e.getMessage());
+            }
+            changeCounts = readChangeCounts();
+        }
+        return version;
+    }
+
+    private long readFileStamp() {
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * What identifies the file itself rather than its path - device and inode on Linux - or null
+     * when the file cannot be read or the platform has no such key
+     */
+    private Object readFileKey() {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * PRAGMA data_version on the service's own connection, or -1 if it cannot be read, in which
+     * case the file stamp alone decides
+     */
+    private long readDataVersion() {
+        try {
+            if (connection == null) connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("PRAGMA data_version")) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading database data version: " + e.getMessage());
+            closeQuietly();
+            return -1;
+        }
+    }
+
+    /**
+     * Change counts per table from the ChangeLog, or null if it cannot be read
+     */
+    private Map<String, Long> readChangeCounts() {
+        if (connection == null) return null;
+        HashMap<String, Long> counts = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT table_name, changes FROM ChangeLog")) {
+            while (rs.next()) {
+                counts.put(rs.getString("table_name"), rs.getLong("changes"));
+            }
+            return counts;
+        } catch (SQLException e) {
+            System.err.println("Error reading ChangeLog: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Set<String> changedTables(Map<String, Long> before, Map<String, Long> after) {
+        Set<String> changed = new HashSet<>();
+        for (String table : TABLES) {
+            if (!after.getOrDefault(table, 0L).equals(before.getOrDefault(table, 0L))) changed.add(table);
+        }
+        return changed;
+    }
+
+    private void closeQuietly() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already failing; a new connection is opened on the next check
+        }
+        connection = null;
+    }
+
+    private static final class Subscription {
+        private final Listener listener;
+        private final Set<String> tables;
+
+        private Subscription(Listener listener, Set<String> tables) {
+            this.listener = listener;
+            this.tables = tables;
+        }
+
+        private void notify(Set<String> changed) {
+            Set<String> relevant = new HashSet<>(changed);
+            relevant.retainAll(tables);
+            if (relevant.isEmpty()) return;
+            try {
+                listener.changed(relevant);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling data change in " + relevant + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the small lookup tables behind the filter dropdowns - Country, Region,
+ * Antigen, Economy, Infection_Type and YearDate - shared by every page handler.
+ * <p>
+ * The tables are read side by side on pooled connections through {@link FanOut}. JDBCConnection
+ * swaps in a freshly loaded instance when the database changes or an admin refresh is
+ * requested, so no restart is needed.
+ */
+public final class DimensionCache {
+
+    // Tables the lookups are read from
+    static final String[] TABLES = {
+        "Country", "Region", "Antigen", "Economy", "Infection_Type", "YearDate", "Vaccination"
+    };
+
+    // Used until the first successful load so pages render with empty dropdowns rather than fail
+    static final DimensionCache EMPTY = new DimensionCache(0);
+
+    private final Lookup countries;
+    private final Lookup regions;
+    private final Lookup antigens;
+    private final Lookup economies;
+    private final Lookup infectionTypes;
+    private final List<String> years;
+    private final List<String> vaccinationYears;
+    private final Map<String, List<String>> countriesByEconomy;
+
+    // Identifies the database state the cache was built from
+    private final long version;
+
+    private DimensionCache(long version) {
+        this(Lookup.EMPTY, Lookup.EMPTY, Lookup.EMPTY, Lookup.EMPTY, Lookup.EMPTY,
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), version);
+    }
+
+    private DimensionCache(Lookup countries, Lookup regions, Lookup antigens, Lookup economies, Lookup infectionTypes,
+                           List<String> years, List<String> vaccinationYears,
+                           Map<String, List<String>> countriesByEconomy, long version) {
+        this.countries = countries;
+        this.regions = regions;
+        this.antigens = antigens;
+        this.economies = economies;
+        this.infectionTypes = infectionTypes;
+        this.years = years;
+        this.vaccinationYears = vaccinationYears;
+        this.countriesByEconomy = countriesByEconomy;
+        this.version = version;
+    }
+
+    /**
+     * Reads every lookup table into a new cache, each on its own pooled connection. Fails if any
+     * table cannot be read in time, so the caller keeps its previous copy.
+     */
+    public static DimensionCache load(FanOut fanOut, ConnectionPool pool, long version) throws SQLException {
+        FanOut.Pending<Lookup> countries = fanOut.submit("dimension countries", () -> read(pool,
+            statement -> Lookup.load(statement, "SELECT CountryID AS id, name FROM Country ORDER BY name")));
+        FanOut.Pending<Lookup> regions = fanOut.submit("dimension regions", () -> read(pool,
+            statement -> Lookup.load(statement, "SELECT RegionID AS id, region AS name FROM Region ORDER BY region")));
+        FanOut.Pending<Lookup> antigens = fanOut.submit("dimension antigens", () -> read(pool,
+            statement -> Lookup.load(statement, "SELECT AntigenID AS id, name FROM Antigen ORDER BY name")));
+        FanOut.Pending<Lookup> economies = fanOut.submit("dimension economies", () -> read(pool,
+            statement -> Lookup.load(statement, "SELECT economyID AS id, phase AS name FROM Economy ORDER BY phase")));
+        FanOut.Pending<Lookup> infectionTypes = fanOut.submit("dimension infection types", () -> read(pool,
+            statement -> Lookup.load(statement, "SELECT id, description AS name FROM Infection_Type ORDER BY description")));
+
+        FanOut.Pending<List<String>> years = fanOut.submit("dimension years", () -> read(pool,
+            statement -> loadColumn(statement, "SELECT YearID FROM YearDate ORDER BY YearID")));
+        // The insights page only offers years that have vaccination data
+        FanOut.Pending<List<String>> vaccinationYears = fanOut.submit("dimension vaccination years", () -> read(pool,
+            statement -> loadColumn(statement, "SELECT DISTINCT year FROM Vaccination ORDER BY year")));
+
+        FanOut.Pending<Map<String, List<String>>> countriesByEconomy = fanOut.submit("dimension countries by economy",
+            () -> read(pool, DimensionCache::loadCountriesByEconomy));
+
+        return new DimensionCache(required(countries), required(regions), required(antigens), required(economies),
+            required(infectionTypes), required(years), required(vaccinationYears), required(countriesByEconomy), version);
+    }
+
+    private static Map<String, List<String>> loadCountriesByEconomy(Statement statement) throws SQLException {
+        HashMap<String, List<String>> countriesByEconomy = new HashMap<>();
+        String query = "SELECT e.phase AS economic_status, c.name AS country " +
+                       "FROM Country c JOIN Economy e ON c.economy = e.economyID " +
+                       "ORDER BY e.phase, c.name";
+        try (ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                String economicStatus = rs.getString("economic_status");
+                List<String> names = countriesByEconomy.get(economicStatus);
+                if (names == null) {
+                    names = new ArrayList<>();
+                    countriesByEconomy.put(economicStatus, names);
+                }
+                names.add(rs.getString("country"));
+            }
+        }
+        countriesByEconomy.replaceAll((phase, names) -> Collections.unmodifiableList(names));
+        return Collections.unmodifiableMap(countriesByEconomy);
+    }
+
+    /**
+     * Runs one lookup query on a connection borrowed for just that query
+     */
+    private static <T> T read(ConnectionPool pool, StatementReader<T> reader) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = pool.borrow();
+            try (Statement statement = connection.createStatement()) {
+                return reader.read(statement);
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static <T> T required(FanOut.Pending<T> pending) throws SQLException {
+        T value = pending.await();
+        if (value == null) {
+            throw new SQLException("Lookup table query did not complete");
+        }
+        return value;
+    }
+
+    private interface StatementReader<T> {
+        T read(Statement statement) throws SQLException;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Lookup getCountries() {
+        return countries;
+    }
+
+    public Lookup getRegions() {
+        return regions;
+    }
+
+    public Lookup getAntigens() {
+        return antigens;
+    }
+
+    public Lookup getEconomies() {
+        return economies;
+    }
+
+    public Lookup getInfectionTypes() {
+        return infectionTypes;
+    }
+
+    /**
+     * Every year in YearDate, in order
+     */
+    public List<String> getYears() {
+        return years;
+    }
+
+    /**
+     * Years that have at least one vaccination record, in order
+     */
+    public List<String> getVaccinationYears() {
+        return vaccinationYears;
+    }
+
+    /**
+     * Country names grouped by economy phase, each list sorted by name
+     */
+    public Map<String, List<String>> getCountriesByEconomy() {
+        return countriesByEconomy;
+    }
+
+    private static List<String> loadColumn(Statement statement, String query) throws SQLException {
+        ArrayList<String> values = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * One lookup table: names in display order plus id to name maps in both directions
+     */
+    public static final class Lookup {
+        private static final Lookup EMPTY =
+            new Lookup(Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+
+        private final List<String> names;
+        private final Map<String, String> nameById;
+        private final Map<String, String> idByName;
+
+        private Lookup(List<String> names, Map<String, String> nameById, Map<String, String> idByName) {
+            this.names = names;
+            this.nameById = nameById;
+            this.idByName = idByName;
+        }
+
+        private static Lookup load(Statement statement, String query) throws SQLException {
+            ArrayList<String> names = new ArrayList<>();
+            HashMap<String, String> nameById = new HashMap<>();
+            HashMap<String, String> idByName = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery(query)) {
+                while (rs.next()) {
+                    String id = rs.getString("id");
+                    String name = rs.getString("name");
+                    nameById.put(id, name);
+                    // Dropdowns list each name once, like SELECT DISTINCT
+                    if (idByName.putIfAbsent(name, id) == null) {
+                        names.add(name);
+                    }
+                }
+            }
+            return new Lookup(Collections.unmodifiableList(names), Collections.unmodifiableMap(nameById),
+                Collections.unmodifiableMap(idByName));
+        }
+
+        /**
+         * Names sorted for display in a dropdown
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * Name for an id, or null if the id is unknown
+         */
+        public String nameOf(String id) {
+            return nameById.get(id);
+        }
+
+        /**
+         * Id for a name, or null if the name is unknown
+         */
+        public String idOf(String name) {
+            return idByName.get(name);
+        }
+    }
+}
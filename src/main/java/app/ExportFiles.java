@@ -0,0 +1,61 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Temp files for exports.
+ * <p>
+ * They are kept in one directory ({@code export.tmpDir}, by default "who-exports" in the system
+ * temp directory) and named after the process that made them. Each owner deletes its files when
+ * it is done with them; {@link #sweep(boolean)} catches the ones left by a process that was
+ * killed, without touching the files of another instance that is still running.
+ */
+final class ExportFiles {
+
+    private static final File DIRECTORY = new File(System.getProperty("export.tmpDir",
+        new File(System.getProperty("java.io.tmpdir"), "who-exports").getPath()));
+
+    private static final long PID = ProcessHandle.current().pid();
+    private static final String PREFIX = "export-";
+
+    private ExportFiles() {
+    }
+
+    /**
+     * A new empty file for one export
+     */
+    static File create() throws IOException {
+        if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs() && !DIRECTORY.isDirectory()) {
+            throw new IOException("Could not create export directory " + DIRECTORY);
+        }
+        return File.createTempFile(PREFIX + PID + "-", ".tmp", DIRECTORY);
+    }
+
+    /**
+     * Deletes export files whose process is no longer running, and this process's own as well
+     * when includeOwn is set - at startup and shutdown respectively
+     */
+    static void sweep(boolean includeOwn) {
+        File[] files = DIRECTORY.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(".tmp"));
+        if (files == null) return;
+        for (File file : files) {
+            long owner = owner(file.getName());
+            boolean orphaned = owner < 0 || (owner != PID && ProcessHandle.of(owner).isEmpty());
+            if ((orphaned || (includeOwn && owner == PID)) && !file.delete() && file.exists()) {
+                System.err.println("Could not delete export file " + file);
+            }
+        }
+    }
+
+    // "export-<pid>-<random>.tmp", or -1 if the name has no readable pid
+    private static long owner(String name) {
+        int end = name.indexOf('-', PREFIX.length());
+        if (end < 0) return -1;
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package app;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Status and download of a background export.
+ * <p>
+ * Answers 202 while the export is still queued or running, 500 if it failed, 404 for unknown
+ * or expired jobs, and the file itself once it is done.
+ */
+public class ExportJobPage implements Handler {
+
+    public static final String URL = "/export/jobs/:id";
+
+    private final ExportJobs exportJobs;
+
+    public ExportJobPage(ExportJobs exportJobs) {
+        this.exportJobs = exportJobs;
+    }
+
+    /**
+     * Where the status of the given job can be polled
+     */
+    public static String urlFor(ExportJobs.Job job) {
+        return URL.replace(":id", job.getId());
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        ExportJobs.Job job = exportJobs.get(context.pathParam("id"));
+        context.contentType("text/plain");
+
+        if (job == null) {
+            context.status(404).result("Unknown or expired export job\n");
+            return;
+        }
+
+        switch (job.getStatus()) {
+            case QUEUED:
+            case RUNNING:
+                context.header("Retry-After", "2");
+                context.status(202).result("Export " + job.getStatus().name().toLowerCase() + "\n");
+                break;
+            case FAILED:
+                context.status(500).result("Export failed: " + job.getError() + "\n");
+                break;
+            default:
+                File file = job.getFile();
+                context.contentType(job.getContentType());
+                context.header("Content-Disposition", "attachment; filename=\"" + job.getFileName() + "\"");
+                context.header("Content-Length", String.valueOf(file.length()));
+                // Javalin closes the stream once it has been sent
+                context.result(new FileInputStream(file));
+                break;
+        }
+    }
+}
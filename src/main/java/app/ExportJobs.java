@@ -0,0 +1,169 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs large exports in the background and keeps the finished files until they are collected.
+ * <p>
+ * A request submits an export and gets a job id back straight away; the file is written to a
+ * temp file by a small worker pool and downloaded later from {@link ExportJobPage}. Finished
+ * jobs are removed, and their files deleted, once they are older than the retention period.
+ */
+public class ExportJobs {
+
+    private static final int WORKERS = Integer.getInteger("export.jobs.threads", 2);
+    private static final int MAX_QUEUED = Integer.getInteger("export.jobs.maxQueued", 20);
+    private static final long RETENTION_MS = Long.getLong("export.jobs.retentionMs", 30 * 60_000L);
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * Writes the export to the given stream - run on a worker thread
+     */
+    public interface ExportTask {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ExportJobs() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED), runnable -> {
+                Thread thread = new Thread(runnable, "export-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Queues an export, returning its job, or null if too many exports are already waiting
+     */
+    public Job submit(String fileName, String contentType, ExportTask task) {
+        purgeExpired();
+
+        Job job = new Job(UUID.randomUUID().toString(), fileName, contentType);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * The job with this id, or null if it is unknown or has expired
+     */
+    public Job get(String id) {
+        purgeExpired();
+        return id == null ? null : jobs.get(id);
+    }
+
+    /**
+     * Stops the workers and deletes every export file - called when the application shuts down
+     */
+    public void close() {
+        executor.shutdownNow();
+        for (Job job : jobs.values()) {
+            job.deleteFile();
+        }
+        jobs.clear();
+    }
+
+    private void run(Job job, ExportTask task) {
+        job.status = Status.RUNNING;
+        try {
+            File file = ExportFiles.create();
+            job.file = file;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                task.writeTo(out);
+            }
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            System.err.println("Error running export job " + job.id + ": " + e.getMessage());
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            job.deleteFile();
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt > 0 && now - job.finishedAt > RETENTION_MS;
+            if (expired) job.deleteFile();
+            return expired;
+        });
+    }
+
+    /**
+     * One background export and where its output ended up
+     */
+    public static final class Job {
+        private final String id;
+        private final String fileName;
+        private final String contentType;
+        private volatile Status status = Status.QUEUED;
+        private volatile File file;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        private Job(String id, String fileName, String contentType) {
+            this.id = id;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The finished export, only set once the status is DONE
+         */
+        public File getFile() {
+            return status == Status.DONE ? file : null;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        private void deleteFile() {
+            File current = file;
+            if (current != null && !current.delete() && current.exists()) {
+                System.err.println("Could not delete export file " + current);
+            }
+        }
+    }
+}
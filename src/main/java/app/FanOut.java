@@ -0,0 +1,114 @@
+package app;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs independent read-only queries side by side on a small bounded pool, so a page that
+ * needs several of them waits for the slowest rather than for their sum.
+ * <p>
+ * Each submitted query has {@code fanout.timeoutMs} to finish, counted from when it was
+ * submitted. A query that fails or runs out of time yields null and the caller shows that part
+ * as unavailable; a late query is left to finish in the background. When every worker is busy
+ * and the queue is full the submitting thread runs the query itself.
+ */
+public class FanOut {
+
+    private static final int THREADS = Integer.getInteger("fanout.threads", 4);
+    private static final int MAX_QUEUED = Integer.getInteger("fanout.maxQueued", 64);
+    private static final long TIMEOUT_MS = Long.getLong("fanout.timeoutMs", 5_000L);
+
+    /**
+     * One query to run on a worker
+     */
+    public interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    private final ExecutorService executor;
+
+    // Metrics
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public FanOut() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED), runnable -> {
+                Thread thread = new Thread(runnable, "fanout-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Starts the query on a worker; collect its result with {@link Pending#await()}
+     */
+    public <T> Pending<T> submit(String name, Query<T> query) {
+        submitted.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        return new Pending<>(name, deadline, executor.submit(query::run));
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Stops the workers - called when the application shuts down
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A submitted query whose result has not been collected yet
+     */
+    public final class Pending<T> {
+        private final String name;
+        private final long deadline;
+        private final Future<T> future;
+
+        private Pending(String name, long deadline, Future<T> future) {
+            this.name = name;
+            this.deadline = deadline;
+            this.future = future;
+        }
+
+        /**
+         * Waits until the query's deadline for its result. Returns null (and logs why) if it
+         * failed or is still running.
+         */
+        public T await() {
+            try {
+                return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timeouts.increment();
+                System.err.println("Query " + name + " did not finish within " + TIMEOUT_MS + "ms");
+            } catch (ExecutionException e) {
+                failures.increment();
+                System.err.println("Error running query " + name + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+}
@@ -32,17 +32,24 @@ public class Feedback implements Handler {
                 name.isEmpty() || email.isEmpty() || feedback.isEmpty()) {
                 model.put("error", "All fields are required!");
             } else {
-                // Insert feedback into the database
-                String sql = "INSERT INTO Feedback (name, email, feedback) VALUES (?, ?, ?)";
-                connection.executeUpdate(sql, name, email, feedback);
-
-                // Set success flags for the page
-                model.put("submitted", true);
-                model.put("name", name);
+                // Queue the feedback - it is written to the database in the background
+                if (connection.getFeedbackWriter().submit(name, email, feedback)) {
+                    // Set success flags for the page
+                    model.put("submitted", true);
+                    model.put("name", name);
+                } else {
+                    // Queue full - ask the visitor to try again rather than wait
+                    ctx.status(503);
+                    ctx.header("Retry-After", "5");
+                    model.put("error", "We are receiving a lot of feedback right now. Please try again in a moment.");
+                }
             }
         }
 
+        RequestTiming.mark(ctx, RequestTiming.Phase.MODEL);
+
         // Render the page (GET or POST)
         ctx.render(TEMPLATE, model);
+        RequestTiming.mark(ctx, RequestTiming.Phase.RENDER);
     }
 }
@@ -0,0 +1,194 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues feedback submissions and writes them on a single background thread.
+ * <p>
+ * A POST only adds its entry to a bounded queue, so the response does not wait for SQLite to
+ * commit. The writer takes whatever has queued up - up to {@code feedback.maxBatch} entries -
+ * and inserts it in one transaction, so a burst of submissions costs one commit rather than one
+ * each. When {@code feedback.queueSize} entries are already waiting, new ones are refused and
+ * the caller answers 503.
+ * <p>
+ * {@link #close()} stops taking entries and waits for the queue to be written, so nothing
+ * accepted is lost when the application shuts down normally.
+ */
+public class FeedbackWriter {
+
+    private static final int QUEUE_SIZE = Integer.getInteger("feedback.queueSize", 1_000);
+    private static final int MAX_BATCH = Integer.getInteger("feedback.maxBatch", 100);
+
+    // Attempts per batch before its entries are given up on, e.g. while another process holds the lock
+    private static final int ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 200;
+
+    // Longest close() waits for the queue to be written
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private static final String INSERT = "INSERT INTO Feedback (name, email, feedback) VALUES (?, ?, ?)";
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public FeedbackWriter(ConnectionPool pool) {
+        this.pool = pool;
+        this.thread = new Thread(this::run, "feedback-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues one submission. Returns false, without queueing it, if the queue is full or the
+     * writer has been closed.
+     */
+    public boolean submit(String name, String email, String feedback) {
+        if (closed || !queue.offer(new Entry(name, email, feedback))) {
+            rejected.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return QUEUE_SIZE;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * Submissions turned away because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Transactions committed - below the written count when submissions were grouped
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Submissions dropped after their batch could not be written
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Stops taking submissions and writes what is queued - called when the application shuts down
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            System.err.println(queue.size() + " feedback submissions were not written before shutdown");
+        }
+    }
+
+    private void run() {
+        ArrayList<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // Woken by close(), or interrupted by something else - either way only the loop
+                // condition stops the writer, so nothing queued is left without a thread to write it
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            if (!batch.isEmpty()) write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(ArrayList<Entry> batch) {
+        for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+            try {
+                insert(batch);
+                written.add(batch.size());
+                batches.increment();
+                return;
+            } catch (SQLException e) {
+                System.err.println("Error writing " + batch.size() + " feedback submissions (attempt " +
+                    attempt + " of " + ATTEMPTS + "): " + e.getMessage());
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                // Shutting down - still use the remaining attempts
+            }
+        }
+        failed.add(batch.size());
+    }
+
+    private void insert(ArrayList<Entry> batch) throws SQLException {
+        Connection connection = null;
+        try {
+            // Writes are serialised through the pool's single writer connection
+            connection = pool.borrowWriter();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (Entry entry : batch) {
+                    statement.setString(1, entry.name);
+                    statement.setString(2, entry.email);
+                    statement.setString(3, entry.feedback);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        } finally {
+            // Rolls back anything left uncommitted
+            pool.releaseWriter(connection);
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final String email;
+        private final String feedback;
+
+        private Entry(String name, String email, String feedback) {
+            this.name = name;
+            this.email = email;
+            this.feedback = feedback;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package app;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import app.model.VaccinationImprovement;
+
+/**
+ * Vaccination coverage improvements between two years as JSON, for the insights page map.
+ * <p>
+ * Takes the same start_year, end_year, antigen and country parameters as the page and answers
+ * an array of {@code {country, geo_country, initial_coverage, final_coverage, improvement}}
+ * objects, best improvement first. geo_country is the name Google's GeoChart recognises.
+ * An optional {@code top} parameter limits the answer to that many countries.
+ */
+public class ImprovementApi implements Handler {
+
+    public static final String URL = "/api/improvements";
+
+    // Database country names that Google Geo Chart knows under a different name
+    private static final Map<String, String> GEO_CHART_NAMES = new HashMap<>();
+
+    static {
+        GEO_CHART_NAMES.put("Russian Federation", "Russia");
+        GEO_CHART_NAMES.put("United States of America", "United States");
+        GEO_CHART_NAMES.put("USA", "United States");
+        GEO_CHART_NAMES.put("United Kingdom of Great Britain and Northern Ireland", "United Kingdom");
+        GEO_CHART_NAMES.put("UK", "United Kingdom");
+        GEO_CHART_NAMES.put("Korea, Republic of", "South Korea");
+        GEO_CHART_NAMES.put("Korea, Democratic People's Republic of", "North Korea");
+        GEO_CHART_NAMES.put("Iran, Islamic Republic of", "Iran");
+        GEO_CHART_NAMES.put("Viet Nam", "Vietnam");
+        GEO_CHART_NAMES.put("Bolivia, Plurinational State of", "Bolivia");
+        GEO_CHART_NAMES.put("Venezuela, Bolivarian Republic of", "Venezuela");
+        GEO_CHART_NAMES.put("Tanzania, United Republic of", "Tanzania");
+        GEO_CHART_NAMES.put("Syrian Arab Republic", "Syria");
+        GEO_CHART_NAMES.put("Moldova, Republic of", "Moldova");
+        GEO_CHART_NAMES.put("Lao People's Democratic Republic", "Laos");
+        GEO_CHART_NAMES.put("Congo, Democratic Republic of the", "Congo (Kinshasa)");
+        GEO_CHART_NAMES.put("Democratic Republic of Congo", "Congo (Kinshasa)");
+        GEO_CHART_NAMES.put("Congo", "Congo (Brazzaville)");
+        GEO_CHART_NAMES.put("Republic of Congo", "Congo (Brazzaville)");
+        GEO_CHART_NAMES.put("St. Vincent and Grenadines", "Saint Vincent and the Grenadines");
+        GEO_CHART_NAMES.put("St. Lucia", "Saint Lucia");
+        GEO_CHART_NAMES.put("St. Kitts and Nevis", "Saint Kitts and Nevis");
+        GEO_CHART_NAMES.put("Czechia", "Czech Republic");
+        GEO_CHART_NAMES.put("Brunei Darussalam", "Brunei");
+        GEO_CHART_NAMES.put("Côte d'Ivoire", "Ivory Coast");
+    }
+
+    private final JDBCConnection connection;
+
+    public ImprovementApi(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        String startYear = context.queryParam("start_year");
+        String endYear = context.queryParam("end_year");
+        String antigen = context.queryParam("antigen");
+        String country = context.queryParam("country");
+        int limit = parseLimit(context.queryParam("top"));
+
+        try {
+            List<VaccinationImprovement> improvements = connection.getImprovements(startYear, endYear, antigen, country, limit);
+            RequestTiming.mark(context, RequestTiming.Phase.QUERY);
+            context.contentType("application/json");
+            RequestTiming.streaming(context, RequestTiming.Phase.JSON);
+            try (JsonWriter json = new JsonWriter(context.res.getOutputStream())) {
+                json.beginArray();
+                for (VaccinationImprovement improvement : improvements) {
+                    String name = improvement.getCountryName();
+                    json.beginObject()
+                        .name("country").value(name)
+                        .name("geo_country").value(GEO_CHART_NAMES.getOrDefault(name, name))
+                        .name("initial_coverage").value(improvement.getInitialCoverage())
+                        .name("final_coverage").value(improvement.getFinalCoverage())
+                        .name("improvement").value(improvement.getImprovement())
+                        .endObject();
+                }
+                json.endArray();
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error loading vaccination improvements: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Number of countries asked for, or no limit when the parameter is missing or not a positive number
+     */
+    private static int parseLimit(String value) {
+        if (value == null) return Integer.MAX_VALUE;
+        try {
+            int limit = Integer.parseInt(value.trim());
+            return limit > 0 ? limit : Integer.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
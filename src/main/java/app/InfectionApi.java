@@ -0,0 +1,56 @@
+package app;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Infection rows as JSON, with the same filters as the infection and trending pages.
+ * <p>
+ * Answers an array of {@code {year, country, economic_status, infection_type, cases}} objects,
+ * streamed from the cursor as it is read. The charts on both pages load their data from here.
+ */
+public class InfectionApi implements Handler {
+
+    public static final String URL = "/api/infection";
+
+    private final JDBCConnection connection;
+
+    public InfectionApi(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        String country = context.queryParam("country");
+        String economicStatus = context.queryParam("economicStatus");
+        String infectionType = context.queryParam("infectionType");
+        String yearStart = context.queryParam("yearStart");
+        String yearEnd = context.queryParam("yearEnd");
+
+        try (InfectionCursor cursor = connection.openInfectionCursor(infectionType, economicStatus, country, yearStart, yearEnd)) {
+            RequestTiming.mark(context, RequestTiming.Phase.QUERY);
+            context.contentType("application/json");
+            RequestTiming.streaming(context, RequestTiming.Phase.JSON);
+            try (JsonWriter json = new JsonWriter(context.res.getOutputStream())) {
+                json.beginArray();
+                while (cursor.next()) {
+                    json.beginObject()
+                        .name("year").value(cursor.getYear())
+                        .name("country").value(cursor.getCountry())
+                        .name("economic_status").value(cursor.getEconomicStatus())
+                        .name("infection_type").value(cursor.getInfectionType())
+                        .name("cases").value(cursor.getCases())
+                        .endObject();
+                }
+                json.endArray();
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Once rows have been sent the status can no longer change; the client sees cut-off JSON
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error loading infection data: " + e.getMessage());
+            }
+        }
+    }
+}
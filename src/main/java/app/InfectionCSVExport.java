@@ -3,7 +3,7 @@ import app.model.InfectionData;
 import io.javalin.http.Handler;
 import io.javalin.http.Context;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -28,29 +28,36 @@ public class InfectionCSVExport implements Handler {
             String yearStart = context.queryParam("yearStart");
             String yearEnd = context.queryParam("yearEnd");
             
-            // Get filtered infection data
-            ArrayList<InfectionData> infectionData = connection.getInfectionData(
-                infectionType, economicStatus, country, yearStart, yearEnd);
-            
-            // Generate CSV
-            byte[] csvBytes = generateCSV(infectionData, country, economicStatus, infectionType, yearStart, yearEnd);
-            
             // Set response headers
             String fileName = generateFileName(country, economicStatus, infectionType, yearStart, yearEnd, "csv");
             context.contentType("text/csv");
             context.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-            context.result(csvBytes);
+
+            // Identical exports requested at the same time share one pass over the data
+            connection.writeExport(URL, context.res.getOutputStream(), out -> {
+                // Get filtered infection data
+                ArrayList<InfectionData> infectionData = connection.getInfectionData(
+                    infectionType, economicStatus, country, yearStart, yearEnd);
+
+                // Generate CSV
+                generateCSV(out, infectionData, country, economicStatus, infectionType, yearStart, yearEnd);
+            }, country, economicStatus, infectionType, yearStart, yearEnd);
             
         } catch (Exception e) {
             e.printStackTrace();
-            context.status(500).result("Error generating CSV: " + e.getMessage());
+            // Once the file has started going out the status can no longer change
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error generating CSV: " + e.getMessage());
+            }
         }
     }
     
-    private byte[] generateCSV(ArrayList<InfectionData> data, String country, String economicStatus, 
-                             String infectionType, String yearStart, String yearEnd) throws Exception {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-             OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream);
+    /**
+     * Writes the export for rows already read, closing the stream when done
+     */
+    public static void generateCSV(OutputStream outputStream, ArrayList<InfectionData> data, String country, String economicStatus, 
+                                   String infectionType, String yearStart, String yearEnd) throws Exception {
+        try (OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream);
              PrintWriter writer = new PrintWriter(outputStreamWriter)) {
             
             // Write CSV header
@@ -73,11 +80,10 @@ public class InfectionCSVExport implements Handler {
             writer.println("Filters Applied," + buildFilterInfo(country, economicStatus, infectionType, yearStart, yearEnd));
             
             writer.flush();
-            return outputStream.toByteArray();
         }
     }
     
-    private String escapeCsvField(String field) {
+    private static String escapeCsvField(String field) {
         if (field == null) return "";
         // Escape fields that contain commas, quotes, or newlines
         if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
@@ -86,7 +92,7 @@ public class InfectionCSVExport implements Handler {
         return field;
     }
     
-    private String buildFilterInfo(String country, String economicStatus, String infectionType, 
+    private static String buildFilterInfo(String country, String economicStatus, String infectionType, 
                                  String yearStart, String yearEnd) {
         StringBuilder filterInfo = new StringBuilder();
         if (country != null && !country.isEmpty()) filterInfo.append("Country: ").append(country).append("; ");
@@ -0,0 +1,31 @@
+package app;
+
+import java.sql.SQLException;
+
+/**
+ * Forward-only view over infection rows, one row at a time.
+ * <p>
+ * Lets exports write rows as they are read instead of collecting them into a list first.
+ * Missing case counts read as 0, the same as ResultSet.getDouble. Always close the cursor -
+ * a database-backed cursor holds a pooled connection until then.
+ */
+public interface InfectionCursor extends AutoCloseable {
+
+    /**
+     * Moves to the next row, returning false once there are no more
+     */
+    boolean next() throws SQLException;
+
+    int getYear() throws SQLException;
+
+    String getCountry() throws SQLException;
+
+    String getEconomicStatus() throws SQLException;
+
+    String getInfectionType() throws SQLException;
+
+    double getCases() throws SQLException;
+
+    @Override
+    void close();
+}
@@ -1,29 +1,22 @@
 package app;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
-import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
-import app.model.InfectionData;
 import io.javalin.http.Handler;
 import io.javalin.http.Context;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
 
 public class InfectionPDFExport implements Handler {
-    
+
     private JDBCConnection connection;
-    
-    public InfectionPDFExport(JDBCConnection connection) {
+    private ExportJobs exportJobs;
+
+    public InfectionPDFExport(JDBCConnection connection, ExportJobs exportJobs) {
         this.connection = connection;
+        this.exportJobs = exportJobs;
     }
-    
+
     public static final String URL = "/export/infection/pdf";
-    
+
     @Override
     public void handle(Context context) throws Exception {
         try {
@@ -33,229 +26,117 @@ public class InfectionPDFExport implements Handler {
             String infectionType = context.queryParam("infectionType");
             String yearStart = context.queryParam("yearStart");
             String yearEnd = context.queryParam("yearEnd");
-            
-            // Get filtered infection data
-            ArrayList<InfectionData> infectionData = connection.getInfectionData(
-                infectionType, economicStatus, country, yearStart, yearEnd);
-            
-            // Generate PDF
-            byte[] pdfBytes = generatePDF(infectionData, country, economicStatus, infectionType, yearStart, yearEnd);
-            
-            // Set response headers
+
             String fileName = generateFileName(country, economicStatus, infectionType, yearStart, yearEnd, "pdf");
+
+            // Huge reports can be built in the background and collected from the job URL
+            if ("background".equals(context.queryParam("mode"))) {
+                ExportJobs.Job job = exportJobs.submit(fileName, "application/pdf",
+                    out -> generatePDF(out, PdfTableWriter.BACKGROUND_MAX_ROWS, country, economicStatus, infectionType, yearStart, yearEnd));
+                if (job == null) {
+                    context.status(503).result("Too many exports in progress, please try again later");
+                    return;
+                }
+                context.status(202);
+                context.header("Location", ExportJobPage.urlFor(job));
+                context.result("Export started. Download it from " + ExportJobPage.urlFor(job) + " when ready.");
+                return;
+            }
+
+            // Set response headers
             context.contentType("application/pdf");
             context.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-            context.result(pdfBytes);
-            
+
+            // Pages are laid out from the cursor and the document is written straight to the response
+            generatePDF(context.res.getOutputStream(), PdfTableWriter.MAX_ROWS,
+                country, economicStatus, infectionType, yearStart, yearEnd);
+
         } catch (Exception e) {
             e.printStackTrace();
-            context.status(500).result("Error generating PDF: " + e.getMessage());
+            // Once the document has started going out the status can no longer change
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error generating PDF: " + e.getMessage());
+            }
         }
     }
-    
-    private byte[] generatePDF(ArrayList<InfectionData> data, String country, String economicStatus, 
+
+    private void generatePDF(OutputStream out, int maxRows, String country, String economicStatus,
                              String infectionType, String yearStart, String yearEnd) throws Exception {
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage(PDRectangle.A4);
-            document.addPage(page);
-            
-            float margin = 50;
-            float yStart = page.getMediaBox().getHeight() - margin;
-            float yPosition = yStart;
-            
-            // Colors
-            PDColor grayColor = new PDColor(new float[]{0.78f, 0.78f, 0.78f}, PDDeviceRGB.INSTANCE);
-            PDColor blackColor = new PDColor(new float[]{0f, 0f, 0f}, PDDeviceRGB.INSTANCE);
-            
-            // Create first content stream with try-with-resources
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                
-                // Title
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 16);
-                contentStream.newLineAtOffset(margin, yPosition);
-                contentStream.showText("Infection Data Export");
-                contentStream.endText();
-                yPosition -= 30;
-                
-                // Filter information
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_OBLIQUE, 10);
-                contentStream.newLineAtOffset(margin, yPosition);
-                StringBuilder filterInfo = new StringBuilder("Filters Applied: ");
-                if (country != null && !country.isEmpty()) filterInfo.append("Country: ").append(country).append("; ");
-                if (economicStatus != null && !economicStatus.isEmpty()) filterInfo.append("Economic Status: ").append(economicStatus).append("; ");
-                if (infectionType != null && !infectionType.isEmpty()) filterInfo.append("Infection Type: ").append(infectionType).append("; ");
-                if (yearStart != null && !yearStart.isEmpty()) filterInfo.append("From: ").append(yearStart).append(" ");
-                if (yearEnd != null && !yearEnd.isEmpty()) filterInfo.append("To: ").append(yearEnd).append("; ");
-                contentStream.showText(filterInfo.toString());
-                contentStream.endText();
-                yPosition -= 30;
-                
-                // Table headers
-                String[] headers = {"Year", "Country", "Economic Status", "Infection Type", "Cases"};
-                float[] columnWidths = {40, 80, 100, 100, 60};
-                float tableWidth = 0;
-                for (float width : columnWidths) tableWidth += width;
-                
-                // Draw header background
-                contentStream.setNonStrokingColor(grayColor);
-                contentStream.addRect(margin, yPosition - 15, tableWidth, 20);
-                contentStream.fill();
-                contentStream.setNonStrokingColor(blackColor);
-                
-                // Header text
-                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                float xPosition = margin + 5;
-                for (int i = 0; i < headers.length; i++) {
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(xPosition, yPosition - 10);
-                    contentStream.showText(headers[i]);
-                    xPosition += columnWidths[i];
-                    contentStream.endText();
-                }
-                yPosition -= 25;
-                
-                // Table data
-                contentStream.setFont(PDType1Font.HELVETICA, 8);
-                
-                for (int i = 0; i < data.size(); i++) {
-                    InfectionData infection = data.get(i);
-                    
-                    // Check if we need a new page
-                    if (yPosition < margin + 50) {
-                        // Close current content stream before creating a new one
-                       
-                        
-                        // Create new page and content stream
-                        page = new PDPage(PDRectangle.A4);
-                        document.addPage(page);
-                        
-                        // Create new content stream for the new page
-                        try (PDPageContentStream newContentStream = new PDPageContentStream(document, page)) {
-                            // Set up the new content stream
-                            newContentStream.setFont(PDType1Font.HELVETICA, 8);
-                            newContentStream.setNonStrokingColor(blackColor);
-                            yPosition = yStart - 60;
-                            
-                            // Continue processing remaining data with the new content stream
-                            for (int j = i; j < data.size(); j++) {
-                                InfectionData remainingInfection = data.get(j);
-                                
-                                // Check if we need yet another page
-                                if (yPosition < margin + 50) {
-                                    break; // This would require additional pagination logic
-                                }
-                                
-                                newContentStream.beginText();
-                                float currentX = margin + 5;
-                                
-                                // Year
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                newContentStream.showText(String.valueOf(remainingInfection.getYear()));
-                                currentX += columnWidths[0];
-                                
-                                // Country
-                                newContentStream.newLineAtOffset(currentX - (margin + 5), 0);
-                                String countryText = remainingInfection.getCountry();
-                                if (countryText.length() > 12) countryText = countryText.substring(0, 12) + "...";
-                                newContentStream.showText(countryText);
-                                currentX += columnWidths[1];
-                                
-                                // Economic Status
-                                newContentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0]), 0);
-                                String economicText = remainingInfection.getEconomicStatus();
-                                if (economicText.length() > 15) economicText = economicText.substring(0, 15) + "...";
-                                newContentStream.showText(economicText);
-                                currentX += columnWidths[2];
-                                
-                                // Infection Type
-                                newContentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0] + columnWidths[1]), 0);
-                                String infectionText = remainingInfection.getInfType();
-                                if (infectionText.length() > 15) infectionText = infectionText.substring(0, 15) + "...";
-                                newContentStream.showText(infectionText);
-                                currentX += columnWidths[3];
-                                
-                                // Cases
-                                newContentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0] + columnWidths[1] + columnWidths[2]), 0);
-                                newContentStream.showText(String.format("%.0f", remainingInfection.getCases()));
-                                
-                                newContentStream.endText();
-                                
-                                yPosition -= 15;
-                                i = j; // Update the outer loop counter
-                            }
-                        }
-                        break; // Exit the outer loop since we processed remaining items
-                    }
-                    
-                    // Process current infection data
-                    contentStream.beginText();
-                    float currentX = margin + 5;
-                    
-                    // Year
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    contentStream.showText(String.valueOf(infection.getYear()));
-                    currentX += columnWidths[0];
-                    
-                    // Country
-                    contentStream.newLineAtOffset(currentX - (margin + 5), 0);
-                    String countryText = infection.getCountry();
-                    if (countryText.length() > 12) countryText = countryText.substring(0, 12) + "...";
-                    contentStream.showText(countryText);
-                    currentX += columnWidths[1];
-                    
-                    // Economic Status
-                    contentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0]), 0);
-                    String economicText = infection.getEconomicStatus();
-                    if (economicText.length() > 15) economicText = economicText.substring(0, 15) + "...";
-                    contentStream.showText(economicText);
-                    currentX += columnWidths[2];
-                    
-                    // Infection Type
-                    contentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0] + columnWidths[1]), 0);
-                    String infectionText = infection.getInfType();
-                    if (infectionText.length() > 15) infectionText = infectionText.substring(0, 15) + "...";
-                    contentStream.showText(infectionText);
-                    currentX += columnWidths[3];
-                    
-                    // Cases
-                    contentStream.newLineAtOffset(currentX - (margin + 5 + columnWidths[0] + columnWidths[1] + columnWidths[2]), 0);
-                    contentStream.showText(String.format("%.0f", infection.getCases()));
-                    
-                    contentStream.endText();
-                    
-                    yPosition -= 15;
-                }
-                
-                // Summary (only if we're still on the first page)
-                if (!data.isEmpty() && yPosition > margin + 50) {
-                    yPosition -= 20;
-                    contentStream.beginText();
-                    contentStream.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                    contentStream.newLineAtOffset(margin, yPosition);
-                    contentStream.showText("Total Records: " + data.size());
-                    contentStream.endText();
+        // Identical exports requested at the same time share one rendering
+        connection.writeExport(URL, out, shared -> renderPDF(shared, maxRows, country, economicStatus, infectionType, yearStart, yearEnd),
+            String.valueOf(maxRows), country, economicStatus, infectionType, yearStart, yearEnd);
+    }
+
+    private void renderPDF(OutputStream out, int maxRows, String country, String economicStatus,
+                           String infectionType, String yearStart, String yearEnd) throws Exception {
+        try (InfectionCursor cursor = connection.openInfectionCursor(infectionType, economicStatus, country, yearStart, yearEnd)) {
+            writePDF(cursor, out, maxRows, country, economicStatus, infectionType, yearStart, yearEnd);
+        }
+    }
+
+    /**
+     * Lays out up to maxRows rows from the cursor and writes the document to the stream
+     */
+    public static void writePDF(InfectionCursor cursor, OutputStream out, int maxRows, String country, String economicStatus,
+                                String infectionType, String yearStart, String yearEnd) throws Exception {
+        // Table headers
+        String[] headers = {"Year", "Country", "Economic Status", "Infection Type", "Cases"};
+        float[] columnWidths = {40, 80, 100, 100, 60};
+
+        try (PdfTableWriter pdf = new PdfTableWriter(headers, columnWidths, 8)) {
+
+            pdf.title("Infection Data Export");
+
+            // Filter information
+            StringBuilder filterInfo = new StringBuilder("Filters Applied: ");
+            if (country != null && !country.isEmpty()) filterInfo.append("Country: ").append(country).append("; ");
+            if (economicStatus != null && !economicStatus.isEmpty()) filterInfo.append("Economic Status: ").append(economicStatus).append("; ");
+            if (infectionType != null && !infectionType.isEmpty()) filterInfo.append("Infection Type: ").append(infectionType).append("; ");
+            if (yearStart != null && !yearStart.isEmpty()) filterInfo.append("From: ").append(yearStart).append(" ");
+            if (yearEnd != null && !yearEnd.isEmpty()) filterInfo.append("To: ").append(yearEnd).append("; ");
+            pdf.note(filterInfo.toString());
+
+            // Table data
+            pdf.startTable();
+            int rows = 0;
+            boolean truncated = false;
+            while (cursor.next()) {
+                if (rows == maxRows) {
+                    truncated = true;
+                    break;
                 }
+                pdf.row(
+                    String.valueOf(cursor.getYear()),
+                    PdfTableWriter.clip(cursor.getCountry(), 12),
+                    PdfTableWriter.clip(cursor.getEconomicStatus(), 15),
+                    PdfTableWriter.clip(cursor.getInfectionType(), 15),
+                    String.format("%.0f", cursor.getCases()));
+                rows++;
+            }
+
+            // Summary
+            if (truncated) {
+                pdf.note("Export limited to the first " + rows + " records - narrow the filters to see the rest.");
+            }
+            if (rows > 0) {
+                pdf.summary("Total Records: " + rows);
             }
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            document.save(outputStream);
-            return outputStream.toByteArray();
+
+            pdf.save(out);
         }
     }
-    
-    private String generateFileName(String country, String economicStatus, String infectionType, 
+
+    private String generateFileName(String country, String economicStatus, String infectionType,
                                   String yearStart, String yearEnd, String extension) {
         StringBuilder fileName = new StringBuilder("infection_data");
-        
+
         if (country != null && !country.isEmpty()) fileName.append("_").append(country.replace(" ", "_"));
         if (economicStatus != null && !economicStatus.isEmpty()) fileName.append("_").append(economicStatus.replace(" ", "_"));
         if (infectionType != null && !infectionType.isEmpty()) fileName.append("_").append(infectionType.replace(" ", "_"));
         if (yearStart != null && !yearStart.isEmpty()) fileName.append("_from_").append(yearStart);
         if (yearEnd != null && !yearEnd.isEmpty()) fileName.append("_to_").append(yearEnd);
-        
+
         fileName.append(".").append(extension);
         return fileName.toString();
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package app;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import app.model.InfectionData;
@@ -25,19 +26,21 @@ public class InfectionPage implements Handler {
         model.put("title", "Infection Data");
         
         try {
-            // Get filter data from database
-            ArrayList<String> infectionTypes = connection.getInfectionTypes();
-            ArrayList<String> economicStatuses = connection.getEconomicStatuses();
-            ArrayList<String> countries = connection.getCountries();
-            ArrayList<String> years = connection.getYears();
+            // Get filter data from the shared lookup cache
+            DimensionCache dimensions = connection.getDimensions();
+            List<String> infectionTypes = dimensions.getInfectionTypes().getNames();
+            List<String> economicStatuses = dimensions.getEconomies().getNames();
+            List<String> countries = dimensions.getCountries().getNames();
+            List<String> years = dimensions.getYears();
 
-            HashMap<String, ArrayList<String>> economicStatusCountries = connection.getEconomicStatusForCountry();
+            Map<String, List<String>> economicStatusCountries = dimensions.getCountriesByEconomy();
 
             model.put("infectionTypes", infectionTypes);
             model.put("economicStatuses", economicStatuses);
             model.put("countries", countries);
             model.put("years", years);
             model.put("economicStatusCountries", economicStatusCountries);
+            RequestTiming.mark(context, RequestTiming.Phase.FILTERS);
 
             // Get filter parameters from request
             String country = context.queryParam("country");
@@ -101,6 +104,7 @@ public class InfectionPage implements Handler {
                 model.put("selectedYearEnd", yearEnd);
 
                 context.render(TEMPLATE, model);
+                RequestTiming.mark(context, RequestTiming.Phase.RENDER);
                 return; // Stop processing to prevent wrong data
             }
 
@@ -116,6 +120,7 @@ public class InfectionPage implements Handler {
                     (yearEnd != null && !yearEnd.isEmpty());
 
             model.put("hasFilters", hasFilters);
+            RequestTiming.mark(context, RequestTiming.Phase.MODEL);
 
             if (hasFilters) {
                 // Get filtered infection data - NOW WITH 5 PARAMETERS
@@ -123,6 +128,7 @@ public class InfectionPage implements Handler {
                     infectionType, economicStatus, country, yearStart, yearEnd
                 );
                 model.put("infectionData", infectionData);
+                RequestTiming.mark(context, RequestTiming.Phase.QUERY);
 
                 // Keep form selections
                 model.put("selectedCountry", country);
@@ -131,42 +137,18 @@ public class InfectionPage implements Handler {
                 model.put("selectedYearStart", yearStart);
                 model.put("selectedYearEnd", yearEnd);
 
-                // Prepare chart data
-                if (!infectionData.isEmpty()) {
-                    StringBuilder chartDataJson = new StringBuilder("[");
-                    int validDataCount = 0;
-
-                    for (InfectionData data : infectionData) {
-                        int year = data.getYear();
-                        double cases = data.getCases();
-
-                        // Only include valid cases
-                        if (cases >= 0) {
-                            if (validDataCount > 0) {
-                                chartDataJson.append(",");
-                            }
-
-                            // Create label with year and infection type as requested
-                            String label = year + " - " + data.getInfType();
-                            chartDataJson.append("[\"")
-                                        .append(label)
-                                        .append("\", ")
-                                        .append(cases)
-                                        .append("]");
-                            validDataCount++;
-                        }
+                // The chart loads its points from InfectionApi once the page is showing
+                boolean hasChartData = false;
+                for (InfectionData data : infectionData) {
+                    if (data.getCases() >= 0) {
+                        hasChartData = true;
+                        break;
                     }
-
-                    chartDataJson.append("]");
-                    model.put("chartDataJson", chartDataJson.toString());
-                    model.put("hasChartData", validDataCount > 0);
-                } else {
-                    model.put("hasChartData", false);
-                    model.put("chartDataJson", "[]");
                 }
+                model.put("hasChartData", hasChartData);
+                RequestTiming.mark(context, RequestTiming.Phase.MODEL);
             } else {
                 model.put("hasChartData", false);
-                model.put("chartDataJson", "[]");
             }
 
         } catch (Exception e) {
@@ -175,6 +157,7 @@ public class InfectionPage implements Handler {
         }
 
         context.render(TEMPLATE, model);
+        RequestTiming.mark(context, RequestTiming.Phase.RENDER);
     }
 
     private String determineChartTitle(String country, String economicStatus, String infectionType) {
@@ -0,0 +1,165 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import app.model.InfectionSummary;
+
+/**
+ * Infection cases rolled up per (economy phase, infection type) group, answering the Trending
+ * summary without touching the rows.
+ * <p>
+ * Each group keeps running totals by year - cases, non-NULL case counts and rows - so the
+ * totals for any year range are one subtraction. The countries seen in each year are kept as a
+ * bitset, and the distinct countries over a range are the OR of its years' bitsets, a few words
+ * per year.
+ * <p>
+ * Groups are formed by phase and description text, the same as the SQL GROUP BY. Sums of
+ * whole-number cases are exact in a long, so totals and averages match SQLite's floating point
+ * SUM and AVG only while every value is a whole number and the grand total stays within 2^53;
+ * when the data breaks that the rollup is not built and callers stay on SQL.
+ */
+final class InfectionRollup {
+
+    // Largest magnitude a double still counts in steps of one
+    private static final double EXACT_LIMIT = 9007199254740992.0;
+
+    // Largest total first, NULL totals last, equal totals by phase then description
+    private static final Comparator<Group> TOTAL_ORDER = (a, b) -> {
+        if (a.empty != b.empty) return a.empty ? 1 : -1;
+        if (a.total != b.total) return Long.compare(b.total, a.total);
+        if (a.phase != b.phase) return Integer.compare(a.phase, b.phase);
+        return Integer.compare(a.type, b.type);
+    };
+
+    private final String[] phaseNames;      // distinct phases, sorted as GROUP BY returns them
+    private final String[] typeNames;       // distinct descriptions, sorted likewise
+    private final int minYear;
+    private final int years;
+    private final int words;                // longs per country bitset
+
+    // Indexed [phase * typeNames.length + type][y - minYear + 1], 0 at [.][0]
+    private final long[][] caseSums;
+    private final int[][] caseCounts;
+    private final int[][] rowCounts;
+
+    // Indexed [phase * typeNames.length + type][y - minYear], one bit per country id
+    private final long[][][] countries;
+
+    private InfectionRollup(String[] phaseNames, String[] typeNames, int minYear, int years, int countryCount) {
+        this.phaseNames = phaseNames;
+        this.typeNames = typeNames;
+        this.minYear = minYear;
+        this.years = years;
+        this.words = (countryCount + 63) / 64;
+
+        int groups = phaseNames.length * typeNames.length;
+        this.caseSums = new long[groups][years + 1];
+        this.caseCounts = new int[groups][years + 1];
+        this.rowCounts = new int[groups][years + 1];
+        this.countries = new long[groups][years][words];
+    }
+
+    /**
+     * Builds the rollup from the snapshot's rows, or returns null if the cases cannot be summed
+     * exactly. {@code rowGroups} gives each row's (phase, type) group as phase * types + type.
+     */
+    static InfectionRollup build(String[] phaseNames, String[] typeNames, int minYear, int maxYear,
+                                 int countryCount, int[] rowGroups, short[] rowCountry, short[] rowYear,
+                                 double[] rowCases) {
+        int years = Math.max(0, maxYear - minYear + 1);
+        InfectionRollup rollup = new InfectionRollup(phaseNames, typeNames, minYear, years, countryCount);
+
+        double magnitude = 0;
+        for (int i = 0; i < rowGroups.length; i++) {
+            int g = rowGroups[i];
+            if (g < 0) continue;
+
+            int y = rowYear[i] - minYear;
+            double value = rowCases[i];
+            rollup.rowCounts[g][y + 1]++;
+            rollup.countries[g][y][rowCountry[i] >>> 6] |= 1L << rowCountry[i];
+            if (Double.isNaN(value)) continue;
+
+            magnitude += Math.abs(value);
+            if (value != Math.rint(value) || magnitude > EXACT_LIMIT) return null;
+            rollup.caseSums[g][y + 1] += (long) value;
+            rollup.caseCounts[g][y + 1]++;
+        }
+
+        // Per-year figures become running totals
+        for (int g = 0; g < rollup.caseSums.length; g++) {
+            for (int y = 1; y <= years; y++) {
+                rollup.caseSums[g][y] += rollup.caseSums[g][y - 1];
+                rollup.caseCounts[g][y] += rollup.caseCounts[g][y - 1];
+                rollup.rowCounts[g][y] += rollup.rowCounts[g][y - 1];
+            }
+        }
+        return rollup;
+    }
+
+    /**
+     * Same rows, in the same order, as the SQL behind JDBCConnection.getInfectionSummary, for
+     * an optional infection type and an inclusive year range
+     */
+    ArrayList<InfectionSummary> summarise(String infType, int firstYear, int lastYear) {
+        boolean filterType = infType != null && !infType.trim().isEmpty();
+        int from = Math.max(firstYear, minYear) - minYear;
+        int to = Math.min(lastYear, minYear + years - 1) - minYear;
+
+        ArrayList<Group> groups = new ArrayList<>();
+        if (from <= to) {
+            for (int p = 0; p < phaseNames.length; p++) {
+                for (int t = 0; t < typeNames.length; t++) {
+                    if (filterType && !InfectionSnapshot.sqlTrim(typeNames[t]).equals(infType.trim())) continue;
+                    int g = p * typeNames.length + t;
+                    if (rowCounts[g][to + 1] == rowCounts[g][from]) continue;
+                    groups.add(new Group(p, t,
+                        caseSums[g][to + 1] - caseSums[g][from],
+                        caseCounts[g][to + 1] - caseCounts[g][from],
+                        countCountries(g, from, to)));
+                }
+            }
+        }
+        groups.sort(TOTAL_ORDER);
+
+        ArrayList<InfectionSummary> results = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            // SUM and AVG over only NULLs are NULL, which ResultSet.getDouble reads as 0
+            double total = group.empty ? 0 : group.total;
+            double average = group.empty ? 0 : (double) group.total / group.caseCount;
+            results.add(new InfectionSummary(phaseNames[group.phase], typeNames[group.type],
+                group.countryCount, total, average));
+        }
+        return results;
+    }
+
+    private int countCountries(int g, int from, int to) {
+        int count = 0;
+        long[] seen = new long[words];
+        for (int y = from; y <= to; y++) {
+            long[] bits = countries[g][y];
+            for (int w = 0; w < words; w++) seen[w] |= bits[w];
+        }
+        for (long word : seen) count += Long.bitCount(word);
+        return count;
+    }
+
+    private static final class Group {
+        private final int phase;
+        private final int type;
+        private final long total;
+        private final int caseCount;
+        private final int countryCount;
+        private final boolean empty;
+
+        private Group(int phase, int type, long total, int caseCount, int countryCount) {
+            this.phase = phase;
+            this.type = type;
+            this.total = total;
+            this.caseCount = caseCount;
+            this.countryCount = countryCount;
+            this.empty = caseCount == 0;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import app.model.InfectionSummary;
+
+/**
+ * Immutable, column-oriented copy of the InfectionData table held in memory.
+ * <p>
+ * Each row is pre-joined with its country, economy phase and infection type, stored as small
+ * integer codes in parallel arrays. Rows are sorted by infection type, then year, then cases
+ * (largest first), and {@code offsets[type][year - minYear]} marks where each type/year group
+ * starts - so any type and year range filter is a handful of contiguous slices.
+ * <p>
+ * Rows with equal cases keep their table order, as the SQL query's "ORDER BY year, cases DESC,
+ * rowid" returns them, so results match the SQL query row for row.
+ * <p>
+ * Case totals per economy phase and infection type are rolled up by year when the snapshot is
+ * built (see {@link InfectionRollup}), so the Trending summary never scans the rows.
+ */
+public final class InfectionSnapshot {
+
+    // Tables the snapshot is built from
+    static final String[] TABLES = { "InfectionData", "Country", "Economy", "Infection_Type", "YearDate" };
+
+    // Dictionaries - index is the dense id used in the row arrays
+    private final String[] countryNames;
+    private final short[] countryEconomy;   // economy id per country, -1 when the country has none
+    private final String[] economyNames;
+    private final String[] typeNames;
+
+    // Row columns, sorted by type, year, cases descending, then rowid
+    private final int size;
+    private final short[] country;
+    private final short[] year;
+    private final double[] cases;           // NaN when cases is NULL
+    private final int[] rowid;
+
+    // offsets[type][y - minYear] is the first row of that type and year, [y - minYear + 1] the end
+    private final int minYear;
+    private final int maxYear;
+    private final int[][] offsets;
+
+    // Running totals for the economy summary, null when they could not be built exactly
+    private final InfectionRollup rollup;
+
+    // Identifies the database state the snapshot was built from
+    private final long version;
+
+    private InfectionSnapshot(Builder builder, long version) {
+        this.countryNames = builder.countryNames.toArray(new String[0]);
+        this.economyNames = builder.economyNames.toArray(new String[0]);
+        this.typeNames = builder.typeNames.toArray(new String[0]);
+        this.countryEconomy = new short[builder.countryEconomy.size()];
+        for (int i = 0; i < countryEconomy.length; i++) {
+            countryEconomy[i] = builder.countryEconomy.get(i);
+        }
+
+        this.size = builder.size;
+        int[] order = builder.sortedOrder();
+        short[] type = new short[size];
+        this.country = new short[size];
+        this.year = new short[size];
+        this.cases = new double[size];
+        this.rowid = new int[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            type[i] = builder.type[from];
+            country[i] = builder.country[from];
+            year[i] = builder.year[from];
+            cases[i] = builder.cases[from];
+            rowid[i] = builder.rowid[from];
+        }
+
+        int lowest = Integer.MAX_VALUE;
+        int highest = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            lowest = Math.min(lowest, year[i]);
+            highest = Math.max(highest, year[i]);
+        }
+        if (size == 0) {
+            lowest = 0;
+            highest = -1;
+        }
+        this.minYear = lowest;
+        this.maxYear = highest;
+
+        // Rows are grouped by type then year, so each offset table is a single pass
+        int years = highest - lowest + 1;
+        this.offsets = new int[typeNames.length][years + 1];
+        int row = 0;
+        for (int t = 0; t < typeNames.length; t++) {
+            for (int y = 0; y <= years; y++) {
+                while (row < size && type[row] == t && year[row] - lowest < y) row++;
+                offsets[t][y] = row;
+            }
+        }
+
+        this.rollup = buildRollup(type);
+        this.version = version;
+    }
+
+    /**
+     * Reads the InfectionData table and its dimensions into a new snapshot
+     */
+    public static InfectionSnapshot load(Connection connection, long version) throws SQLException {
+        Builder builder = new Builder();
+
+        try (Statement statement = connection.createStatement()) {
+            HashMap<Long, Short> economyIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT economyID, phase FROM Economy")) {
+                while (rs.next()) {
+                    economyIds.put(rs.getLong("economyID"), (short) builder.economyNames.size());
+                    builder.economyNames.add(rs.getString("phase"));
+                }
+            }
+
+            HashMap<String, Short> countryIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT CountryID, name, economy FROM Country")) {
+                while (rs.next()) {
+                    countryIds.put(rs.getString("CountryID"), (short) builder.countryNames.size());
+                    builder.countryNames.add(rs.getString("name"));
+                    long economy = rs.getLong("economy");
+                    Short economyId = rs.wasNull() ? null : economyIds.get(economy);
+                    builder.countryEconomy.add(economyId == null ? (short) -1 : economyId);
+                }
+            }
+
+            HashMap<String, Short> typeIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT id, description FROM Infection_Type")) {
+                while (rs.next()) {
+                    typeIds.put(rs.getString("id"), (short) builder.typeNames.size());
+                    builder.typeNames.add(rs.getString("description"));
+                }
+            }
+
+            // Same joins as getInfectionData, so only rows the SQL query could return are kept
+            String query = """
+                SELECT id.rowid AS row_id, id.inf_type, id.country, id.year, id.cases
+                FROM InfectionData id
+                JOIN Country c ON id.country = c.CountryID
+                JOIN Economy e ON c.economy = e.economyID
+                JOIN Infection_Type it ON id.inf_type = it.id
+                JOIN YearDate yd ON id.year = yd.YearID
+            """;
+            try (ResultSet rs = statement.executeQuery(query)) {
+                while (rs.next()) {
+                    double value = rs.getDouble("cases");
+                    builder.add(rs.getInt("row_id"), typeIds.get(rs.getString("inf_type")),
+                        countryIds.get(rs.getString("country")), rs.getInt("year"), rs.wasNull() ? Double.NaN : value);
+                }
+            }
+        }
+
+        return new InfectionSnapshot(builder, version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Same rows, in the same order, as the SQL behind JDBCConnection.getInfectionData, read lazily
+     * from the arrays. Rows come back ordered by year, then cases largest first.
+     */
+    public InfectionCursor cursor(String infType, String economicStatus, String countryName,
+                                  String yearStart, String yearEnd) {
+        int[] types = matchTypes(infType);
+        boolean[] countryOk = matchCountries(countryName, economicStatus);
+        int from = isPresent(yearStart) ? parseYear(yearStart) : minYear;
+        int to = isPresent(yearEnd) ? parseYear(yearEnd) : maxYear;
+        if (types.length == 0 || countryOk == null || from == Integer.MIN_VALUE || to == Integer.MIN_VALUE) {
+            return new SnapshotCursor(new int[0], null, 1, 0);
+        }
+        return new SnapshotCursor(types, countryOk, Math.max(from, minYear), Math.min(to, maxYear));
+    }
+
+    /**
+     * Same rows, in the same order, as the SQL behind JDBCConnection.getInfectionSummary, or
+     * null when the rollup cannot answer it and the query has to run instead
+     */
+    public ArrayList<InfectionSummary> summary(String infType, String yearStart, String yearEnd) {
+        if (rollup == null) return null;
+        int from = isPresent(yearStart) ? parseYear(yearStart) : Integer.MIN_VALUE + 1;
+        int to = isPresent(yearEnd) ? parseYear(yearEnd) : Integer.MAX_VALUE;
+        // A year that is not a number is bound as NULL, so the query returns no rows
+        if (from == Integer.MIN_VALUE || to == Integer.MIN_VALUE) return new ArrayList<>();
+        return rollup.summarise(infType, from, to);
+    }
+
+    /**
+     * Groups the rows by phase and description text, as the summary query's GROUP BY does
+     */
+    private InfectionRollup buildRollup(short[] type) {
+        // A NULL phase or description is a group of its own; rare enough to leave to SQL
+        if (Arrays.asList(economyNames).contains(null) || Arrays.asList(typeNames).contains(null)) return null;
+
+        TreeMap<String, Integer> phases = new TreeMap<>();
+        TreeMap<String, Integer> descriptions = new TreeMap<>();
+        for (String name : economyNames) phases.put(name, 0);
+        for (String name : typeNames) descriptions.put(name, 0);
+        String[] phaseNames = number(phases);
+        String[] descriptionNames = number(descriptions);
+
+        int[] rowGroups = new int[size];
+        for (int i = 0; i < size; i++) {
+            short economy = countryEconomy[country[i]];
+            rowGroups[i] = economy < 0 ? -1
+                : phases.get(economyNames[economy]) * descriptionNames.length + descriptions.get(typeNames[type[i]]);
+        }
+        return InfectionRollup.build(phaseNames, descriptionNames, minYear, maxYear, countryNames.length,
+            rowGroups, country, year, cases);
+    }
+
+    /**
+     * Gives each key its position in sorted order and returns the keys in that order
+     */
+    private static String[] number(TreeMap<String, Integer> names) {
+        String[] sorted = names.keySet().toArray(new String[0]);
+        for (int i = 0; i < sorted.length; i++) names.put(sorted[i], i);
+        return sorted;
+    }
+
+    /**
+     * True when row a sorts ahead of row b within a year: more cases first, NULLs last, ties in table order
+     */
+    private boolean comesBefore(int a, int b) {
+        return compareRows(cases[a], rowid[a], cases[b], rowid[b]) < 0;
+    }
+
+    private static int compareRows(double casesA, int rowidA, double casesB, int rowidB) {
+        boolean missingA = Double.isNaN(casesA);
+        boolean missingB = Double.isNaN(casesB);
+        if (missingA != missingB) return missingA ? 1 : -1;
+        if (!missingA && casesA != casesB) return casesA > casesB ? -1 : 1;
+        return Integer.compare(rowidA, rowidB);
+    }
+
+    /**
+     * Type ids whose description matches the filter (all types when there is no filter) - several
+     * types can share a description once trimmed
+     */
+    private int[] matchTypes(String infType) {
+        boolean filter = isPresent(infType);
+        int[] matched = new int[typeNames.length];
+        int count = 0;
+        for (int t = 0; t < typeNames.length; t++) {
+            if (!filter || matches(typeNames[t], infType)) matched[count++] = t;
+        }
+        return Arrays.copyOf(matched, count);
+    }
+
+    /**
+     * Marks which country ids pass the country and economy filters, or null if nothing can match
+     */
+    private boolean[] matchCountries(String countryName, String economicStatus) {
+        boolean[] ok = new boolean[countryNames.length];
+        boolean filterCountry = isPresent(countryName);
+        boolean filterEconomy = isPresent(economicStatus);
+        boolean any = false;
+
+        for (int c = 0; c < countryNames.length; c++) {
+            short economy = countryEconomy[c];
+            if (economy < 0) continue;
+            if (filterCountry && !matches(countryNames[c], countryName)) continue;
+            if (filterEconomy && !matches(economyNames[economy], economicStatus)) continue;
+            ok[c] = true;
+            any = true;
+        }
+        return any ? ok : null;
+    }
+
+    /**
+     * "TRIM(column) = ?" with the trimmed filter bound - a NULL name never matches
+     */
+    private static boolean matches(String name, String filter) {
+        return name != null && sqlTrim(name).equals(filter.trim());
+    }
+
+    /**
+     * SQLite's TRIM(x), which only strips spaces
+     */
+    static String sqlTrim(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) == ' ') start++;
+        while (end > start && value.charAt(end - 1) == ' ') end--;
+        return value.substring(start, end);
+    }
+
+    private static int parseYear(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * Walks the years in order. Within a year there is one slice per type, already sorted by
+     * cases, so with several types the slices are merged by cases.
+     */
+    private final class SnapshotCursor implements InfectionCursor {
+        private final int[] types;
+        private final boolean[] countryOk;
+        private final int lastYear;
+        private final int[] next;
+        private final int[] end;
+        private int currentYear;
+        private int row = -1;
+        private int rowType;
+
+        private SnapshotCursor(int[] types, boolean[] countryOk, int firstYear, int lastYear) {
+            this.types = types;
+            this.countryOk = countryOk;
+            this.lastYear = lastYear;
+            this.next = new int[types.length];
+            this.end = new int[types.length];
+            // Slices start empty, so the first call to next() moves on to firstYear
+            this.currentYear = firstYear - 1;
+        }
+
+        @Override
+        public boolean next() {
+            while (true) {
+                int best = -1;
+                for (int t = 0; t < types.length; t++) {
+                    if (next[t] < end[t] && (best < 0 || comesBefore(next[t], next[best]))) {
+                        best = t;
+                    }
+                }
+
+                if (best < 0) {
+                    if (++currentYear > lastYear) return false;
+                    for (int t = 0; t < types.length; t++) {
+                        next[t] = offsets[types[t]][currentYear - minYear];
+                        end[t] = offsets[types[t]][currentYear - minYear + 1];
+                    }
+                    continue;
+                }
+
+                int i = next[best]++;
+                if (countryOk[country[i]]) {
+                    row = i;
+                    rowType = types[best];
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public int getYear() {
+            return year[row];
+        }
+
+        @Override
+        public String getCountry() {
+            return countryNames[country[row]];
+        }
+
+        @Override
+        public String getEconomicStatus() {
+            return economyNames[countryEconomy[country[row]]];
+        }
+
+        @Override
+        public String getInfectionType() {
+            return typeNames[rowType];
+        }
+
+        @Override
+        public double getCases() {
+            // ResultSet.getDouble returns 0 for NULL, so keep the same behaviour
+            return Double.isNaN(cases[row]) ? 0 : cases[row];
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release - the snapshot stays in memory
+        }
+    }
+
+    /**
+     * Growable column buffers used while reading rows
+     */
+    private static final class Builder {
+        private final ArrayList<String> countryNames = new ArrayList<>();
+        private final ArrayList<Short> countryEconomy = new ArrayList<>();
+        private final ArrayList<String> economyNames = new ArrayList<>();
+        private final ArrayList<String> typeNames = new ArrayList<>();
+
+        private int size = 0;
+        private int[] rowid = new int[1024];
+        private short[] type = new short[1024];
+        private short[] country = new short[1024];
+        private short[] year = new short[1024];
+        private double[] cases = new double[1024];
+
+        private void add(int rowId, short typeId, short countryId, int rowYear, double value) {
+            if (size == rowid.length) {
+                int capacity = size * 2;
+                rowid = Arrays.copyOf(rowid, capacity);
+                type = Arrays.copyOf(type, capacity);
+                country = Arrays.copyOf(country, capacity);
+                year = Arrays.copyOf(year, capacity);
+                cases = Arrays.copyOf(cases, capacity);
+            }
+            rowid[size] = rowId;
+            type[size] = typeId;
+            country[size] = countryId;
+            year[size] = (short) rowYear;
+            cases[size] = value;
+            size++;
+        }
+
+        /**
+         * Row indices sorted by type, year, then the same order the SQL query uses within a year
+         */
+        private int[] sortedOrder() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> {
+                if (type[a] != type[b]) return Integer.compare(type[a], type[b]);
+                if (year[a] != year[b]) return Integer.compare(year[a], year[b]);
+                return compareRows(cases[a], rowid[a], cases[b], rowid[b]);
+            });
+
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) result[i] = order[i];
+            return result;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package app;
+
+import java.util.List;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import app.model.InfectionSummary;
+
+/**
+ * Infection cases per economic status as JSON, for the trending page charts.
+ * <p>
+ * Answers an array of {@code {economic_status, infection_type, country_count, total_cases,
+ * avg_cases}} objects, largest total first. Case figures are whole numbers, as the charts show them.
+ */
+public class InfectionSummaryApi implements Handler {
+
+    public static final String URL = "/api/infection/summary";
+
+    private final JDBCConnection connection;
+
+    public InfectionSummaryApi(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        String infectionType = context.queryParam("infectionType");
+        String yearStart = context.queryParam("yearStart");
+        String yearEnd = context.queryParam("yearEnd");
+
+        try {
+            List<InfectionSummary> summaries = connection.getInfectionSummary(infectionType, yearStart, yearEnd);
+            RequestTiming.mark(context, RequestTiming.Phase.QUERY);
+            context.contentType("application/json");
+            RequestTiming.streaming(context, RequestTiming.Phase.JSON);
+            try (JsonWriter json = new JsonWriter(context.res.getOutputStream())) {
+                json.beginArray();
+                for (InfectionSummary summary : summaries) {
+                    // rint rounds halves to even, like the table's DecimalFormat
+                    json.beginObject()
+                        .name("economic_status").value(summary.getEconomicStatus())
+                        .name("infection_type").value(summary.getInfectionType())
+                        .name("country_count").value(summary.getCountryCount())
+                        .name("total_cases").value(Math.rint(summary.getTotalCases()))
+                        .name("avg_cases").value(Math.rint(summary.getAvgCases()))
+                        .endObject();
+                }
+                json.endArray();
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error loading infection summary: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,197 +1,658 @@
 package app;
 
+import java.io.File;
+import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import app.model.InfectionData;
+import app.model.InfectionSummary;
 import app.model.Persona;
 import app.model.Vaccination;
+import app.model.VaccinationImprovement;
 
 public class JDBCConnection {
 
-    // Database connection path - points to the WHO health database
-    private static final String DATABASE = "jdbc:sqlite:database/who.db";
+    // Database connection path - points to the WHO health database, or a copy of it with -Ddb.path=FILE
+    private static final File DATABASE_FILE = new File(System.getProperty("db.path", "database/who.db"));
+    private static final String DATABASE = "jdbc:sqlite:" + DATABASE_FILE.getPath();
+
+    // Pool settings - override with -Ddb.pool.size=N and -Ddb.pool.timeoutMs=N
+    private static final int POOL_SIZE = Integer.getInteger("db.pool.size", 4);
+    private static final long POOL_TIMEOUT_MS = Long.getLong("db.pool.timeoutMs", 30_000L);
+
+    // Estimated heap cost of one cached row (object header, fields and list slot) for the result cache
+    private static final int CACHED_ROW_BYTES = 64;
+
+    // Tables the in-memory replica is recopied for - Feedback changes with every submission, so it is read from the file
+    private static final String[] REPLICA_TABLES = Arrays.stream(DataVersionService.TABLES)
+        .filter(table -> !table.equals("Feedback"))
+        .toArray(String[]::new);
+
+    // Tables the exports read, so an identical export is only shared while they are unchanged
+    private static final String[] EXPORT_TABLES = {
+        "Vaccination", "InfectionData", "Country", "Region", "Antigen", "Economy", "Infection_Type", "YearDate"
+    };
+
+    // Shared by every query method so connections are opened once and reused
+    private final ConnectionPool pool;
+
+    // Phase timings per query shape, and the slow query log
+    private final QueryStats queryStats = new QueryStats();
+
+    // In-memory copies of the Vaccination and InfectionData tables, each replaced as a whole when the database changes
+    private volatile VaccinationSnapshot vaccinationSnapshot;
+    private volatile InfectionSnapshot infectionSnapshot;
+    private final Object snapshotLock = new Object();
+
+    // Lookup tables behind the filter dropdowns
+    private volatile DimensionCache dimensions;
+
+    // Per-table data versions the caches below are checked against
+    private final DataVersionService dataVersions = new DataVersionService(DATABASE, DATABASE_FILE);
+
+    // In-memory copy of the database that reads are served from when enabled
+    private final MemoryReplica replica = new MemoryReplica(DATABASE_FILE);
+
+    // Home page aggregates, recomputed when the data changes
+    private final DashboardCache dashboardCache;
+
+    // Filtered query results, keyed by method and filters and emptied when the data changes
+    private final ResultCache resultCache = new ResultCache();
+
+    // Exports being rendered, so identical concurrent exports are only rendered once
+    private final SharedExports sharedExports = new SharedExports();
+
+    // Runs independent queries side by side, e.g. the home page aggregates
+    private final FanOut fanOut = new FanOut();
+
+    // Writes feedback submissions in batches on its own thread
+    private final FeedbackWriter feedbackWriter;
 
     public JDBCConnection() {
+        this(POOL_SIZE);
     }
 
-    public ArrayList<HashMap<String, String>> executeQuery(String query) {
-        ArrayList<HashMap<String, String>> results = new ArrayList<>();
+    public JDBCConnection(int poolSize) {
+        this.pool = new ConnectionPool(DATABASE, poolSize, POOL_TIMEOUT_MS);
+        this.feedbackWriter = new FeedbackWriter(pool);
+        this.dashboardCache = new DashboardCache(this);
+        registerQueryShapes();
+        subscribeToChanges();
+    }
+
+    /**
+     * Drops and rebuilds only what reads the tables that changed, on the version checking
+     * thread, so requests rarely find a structure out of date
+     */
+    private void subscribeToChanges() {
+        // A file renamed over who.db is not seen by connections opened before; the memory
+        // replica is recopied from the new file anyway, as every table has changed
+        dataVersions.addReplacementPreparer(() -> {
+            pool.reopenWriter();
+            if (!MemoryReplica.isEnabled()) pool.switchReads(DATABASE);
+        });
+        dataVersions.subscribe(tables -> {
+            resultCache.invalidate("getImprovements");
+            vaccinationSnapshot();
+        }, VaccinationSnapshot.TABLES);
+        dataVersions.subscribe(tables -> {
+            resultCache.invalidate("getInfectionData");
+            resultCache.invalidate("getInfectionSummary");
+            infectionSnapshot();
+        }, InfectionSnapshot.TABLES);
+        dataVersions.subscribe(tables -> getDimensions(), DimensionCache.TABLES);
+        dataVersions.subscribe(tables -> dashboardCache.get(), DashboardCache.TABLES);
+    }
+
+    /**
+     * Applies pending schema changes (indexes, planner statistics) on the writer connection.
+     * Failures are logged and the application carries on with the schema as it is.
+     */
+    public void migrateSchema() {
+        Connection connection = null;
+        try {
+            connection = pool.borrowWriter();
+            new SchemaMigration(connection).migrate();
+            if (DataVersionService.isChangeLogEnabled()) {
+                DataVersionService.installChangeLog(connection);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error migrating database schema: " + e.getMessage());
+        } finally {
+            pool.releaseWriter(connection);
+        }
+    }
+
+    /**
+     * Lines of SQLite's EXPLAIN QUERY PLAN for the shape, with its bound values, indented by depth
+     */
+    public ArrayList<String> explainQueryPlan(QueryShape shape) throws SQLException {
         Connection connection = null;
 
         try {
-            // Connect to JDBC database
-            connection = DriverManager.getConnection(DATABASE);
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30); // Set 30-second timeout
-            
-            // Execute the query and get results
-            ResultSet resultSet = statement.executeQuery(query);
-
-            // Get metadata to know column names for dynamic result handling
-            int columnCount = resultSet.getMetaData().getColumnCount();
-
-            // Process all rows in the result set
-            while (resultSet.next()) {
-                HashMap<String, String> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = resultSet.getMetaData().getColumnName(i);
-                    String columnValue = resultSet.getString(i);
-                    row.put(columnName, columnValue);
+            connection = pool.borrow();
+            return explainQueryPlan(connection, shape);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static ArrayList<String> explainQueryPlan(Connection connection, QueryShape shape) throws SQLException {
+        ArrayList<String> plan = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + shape.getSql())) {
+            shape.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // Rows come parent first, so each row sits one level below its parent
+                HashMap<Integer, Integer> depths = new HashMap<>();
+                while (resultSet.next()) {
+                    int depth = depths.getOrDefault(resultSet.getInt("parent"), -1) + 1;
+                    depths.put(resultSet.getInt("id"), depth);
+                    plan.add("  ".repeat(depth) + resultSet.getString("detail"));
                 }
-                results.add(row);
             }
+        }
+
+        return plan;
+    }
 
-            statement.close();
+    /**
+     * Records a query's timings once its rows are read; a slow one is logged with its plan,
+     * read on the connection it ran on
+     */
+    private void finishTiming(QueryStats.Timer timer, Connection connection, QueryShape shape) {
+        timer.finish(() -> explainQueryPlan(connection, shape));
+    }
+
+    /**
+     * Registers the filtered queries with every filter set, so the query plan report covers
+     * them even while they are answered from the in-memory snapshots
+     */
+    private void registerQueryShapes() {
+        pool.register(vaccinationDataQuery("India", "South-East Asia", "BCG", "2010", "2020"));
+        pool.register(improvementsQuery("2010", "2020", "BCG", "India"));
+        pool.register(infectionDataQuery("Measles", "Low Income", "India", "2010", "2020"));
+        pool.register(infectionSummaryQuery("Measles", "2010", "2020"));
+    }
+
+    /**
+     * With {@code -Ddb.replica=memory}, copies the database into memory and serves every read
+     * from the copy, recopying it whenever a data table changes; feedback is read from the file.
+     * Call after the schema migration and watchForChanges, so the copy has the indexes and no
+     * change is missed.
+     */
+    public void openReplica() {
+        if (!MemoryReplica.isEnabled()) return;
+        reloadReplica();
+        // Before the new versions are published, so nothing is rebuilt from the old copy
+        dataVersions.addPreparer(tables -> reloadReplica(), REPLICA_TABLES);
+    }
+
+    private void reloadReplica() {
+        try {
+            pool.switchReads(replica.load());
+            replica.releasePrevious();
         } catch (SQLException e) {
-            System.err.println("Database error: " + e.getMessage());
+            // Reading the file is slower but never stale
+            System.err.println("Error loading in-memory replica, reading from disk: " + e.getMessage());
+            pool.switchReads(DATABASE);
+            replica.releasePrevious();
+        }
+    }
+
+    public MemoryReplica getReplica() {
+        return replica;
+    }
+
+    /**
+     * Starts watching the database for changes - after the migration, so its own changes are
+     * not mistaken for new data
+     */
+    public void watchForChanges() {
+        dataVersions.start();
+    }
+
+    /**
+     * Combined version of the tables, see {@link DataVersionService#version(String...)}
+     */
+    long dataVersion(String... tables) {
+        return dataVersions.version(tables);
+    }
+
+    public DataVersionService getDataVersions() {
+        return dataVersions;
+    }
+
+    /**
+     * Gives access to the pool for metrics reporting
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public QueryStats getQueryStats() {
+        return queryStats;
+    }
+
+    /**
+     * Builds the in-memory snapshots up front so the first requests don't pay for it
+     */
+    public void warmCaches() {
+        vaccinationSnapshot();
+        infectionSnapshot();
+        getDimensions();
+        dashboardCache.get();
+    }
+
+    /**
+     * Dropdown lookup tables, reloaded first if the database has changed since they were read.
+     * Falls back to the last good copy (or an empty one) if they cannot be loaded.
+     */
+    public DimensionCache getDimensions() {
+        long version = dataVersion(DimensionCache.TABLES);
+        DimensionCache cache = dimensions;
+        if (cache != null && cache.getVersion() == version) {
+            return cache;
+        }
+
+        synchronized (snapshotLock) {
+            cache = dimensions;
+            if (cache == null || cache.getVersion() != version) {
+                refreshDimensions(version);
+            }
+        }
+        return dimensions != null ? dimensions : DimensionCache.EMPTY;
+    }
+
+    /**
+     * Reloads the dropdown lookup tables now - used by the admin refresh endpoint
+     */
+    public void refreshDimensions() {
+        synchronized (snapshotLock) {
+            refreshDimensions(dataVersion(DimensionCache.TABLES));
+        }
+    }
+
+    private void refreshDimensions(long version) {
+        try {
+            dimensions = DimensionCache.load(fanOut, pool, version);
+        } catch (SQLException e) {
+            System.err.println("Error building dimension snapshot: " + e.getMessage());
+        }
+    }
+
+    public DashboardCache getDashboardCache() {
+        return dashboardCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public FanOut getFanOut() {
+        return fanOut;
+    }
+
+    public SharedExports getSharedExports() {
+        return sharedExports;
+    }
+
+    public FeedbackWriter getFeedbackWriter() {
+        return feedbackWriter;
+    }
+
+    /**
+     * Writes an export to out with the task, or copies the output of an identical export (same
+     * name, filter values and data version) that is already being rendered
+     */
+    public void writeExport(String name, OutputStream out, ExportJobs.ExportTask task, String... filters) throws Exception {
+        // Filters are used as given, since exports print them in their headers
+        StringBuilder key = new StringBuilder(name).append('\u0000').append(dataVersion(EXPORT_TABLES));
+        for (String filter : filters) {
+            key.append('\u0000');
+            if (filter != null) key.append(filter);
+        }
+        sharedExports.write(key.toString(), out, task);
+    }
+
+    /**
+     * Home page aggregates from the dashboard cache
+     */
+    public DashboardCache.Dashboard getDashboard() {
+        return dashboardCache.get();
+    }
+
+    /**
+     * Current Vaccination snapshot, rebuilt first if the database has changed since it was taken.
+     * Returns null if it cannot be built, in which case callers fall back to SQL.
+     */
+    public VaccinationSnapshot vaccinationSnapshot() {
+        long version = dataVersion(VaccinationSnapshot.TABLES);
+        VaccinationSnapshot snapshot = vaccinationSnapshot;
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+
+        synchronized (snapshotLock) {
+            // Another thread may have rebuilt it while we waited
+            snapshot = vaccinationSnapshot;
+            if (snapshot != null && snapshot.getVersion() == version) {
+                return snapshot;
+            }
+
+            snapshot = loadSnapshot("vaccination", connection -> VaccinationSnapshot.load(connection, version));
+            if (snapshot != null) {
+                // Readers switch to the new snapshot in one step; old readers finish on the old one
+                vaccinationSnapshot = snapshot;
+            }
+            return vaccinationSnapshot;
+        }
+    }
+
+    /**
+     * Current InfectionData snapshot, rebuilt first if the database has changed since it was taken.
+     * Returns null if it cannot be built, in which case callers fall back to SQL.
+     */
+    public InfectionSnapshot infectionSnapshot() {
+        long version = dataVersion(InfectionSnapshot.TABLES);
+        InfectionSnapshot snapshot = infectionSnapshot;
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+
+        synchronized (snapshotLock) {
+            snapshot = infectionSnapshot;
+            if (snapshot != null && snapshot.getVersion() == version) {
+                return snapshot;
+            }
+
+            snapshot = loadSnapshot("infection", connection -> InfectionSnapshot.load(connection, version));
+            if (snapshot != null) {
+                infectionSnapshot = snapshot;
+            }
+            return infectionSnapshot;
+        }
+    }
+
+    /**
+     * Builds a snapshot on a pooled connection, returning null (and logging) if it fails
+     */
+    private <T> T loadSnapshot(String name, SnapshotLoader<T> loader) {
+        Connection connection = null;
+        try {
+            connection = pool.borrow();
+            return loader.load(connection);
+        } catch (SQLException e) {
+            System.err.println("Error building " + name + " snapshot: " + e.getMessage());
+            return null;
         } finally {
-            // Always close connection to prevent resource leaks
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+            pool.release(connection);
+        }
+    }
+
+    private interface SnapshotLoader<T> {
+        T load(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Stops the version checks and query workers, writes any queued feedback and closes all
+     * pooled connections - called when the application shuts down
+     */
+    public void close() {
+        dataVersions.close();
+        feedbackWriter.close();
+        fanOut.close();
+        pool.close();
+        replica.close();
+    }
+
+    public ArrayList<HashMap<String, String>> executeQuery(String query) {
+        return executeQuery("executeQuery", query);
+    }
+
+    /**
+     * Runs a fixed query as a named shape, so its statement is cached and it shows up in the
+     * statistics and query plan report under that name
+     */
+    public ArrayList<HashMap<String, String>> executeQuery(String name, String query) {
+        try {
+            return queryRows(name, query);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as executeQuery, but a failure is thrown rather than answered with no rows
+     */
+    private ArrayList<HashMap<String, String>> queryRows(String name, String query) throws SQLException {
+        ArrayList<HashMap<String, String>> results = new ArrayList<>();
+        QueryShape shape = new QueryShape(name, query);
+        QueryStats.Timer timer = queryStats.start(shape);
+        Connection connection = null;
+
+        try {
+            // Borrow a pooled connection to the database
+            connection = pool.borrow();
+            timer.connected();
+            PreparedStatement statement = pool.prepare(connection, shape);
+            timer.prepared();
+
+            // Execute the query and get results
+            try (ResultSet resultSet = statement.executeQuery()) {
+                timer.executed();
+                // Get metadata to know column names for dynamic result handling
+                int columnCount = resultSet.getMetaData().getColumnCount();
+
+                // Process all rows in the result set
+                while (resultSet.next()) {
+                    HashMap<String, String> row = new HashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        String columnName = resultSet.getMetaData().getColumnName(i);
+                        String columnValue = resultSet.getString(i);
+                        row.put(columnName, columnValue);
+                    }
+                    results.add(row);
+                }
             }
+            finishTiming(timer, connection, shape);
+        } finally {
+            // Always hand the connection back so other requests can reuse it
+            pool.release(connection);
         }
 
         return results;
     }
 
     //Gets summary statistics for the dashboard highlight cards
-    public HashMap<String, String> getDashboardSummary() {
+    //Throws on failure, like the other dashboard queries, so the card shows as unavailable and is retried
+    public HashMap<String, String> getDashboardSummary() throws SQLException {
         HashMap<String, String> summary = new HashMap<>();
         Connection connection = null;
 
         try {
-            connection = DriverManager.getConnection(DATABASE);
-            Statement statement = connection.createStatement();
+            // The first query's timer also covers borrowing the connection all four share
+            QueryShape countries = new QueryShape("getDashboardSummary.countries", "SELECT COUNT(DISTINCT CountryID) AS total FROM Country");
+            QueryStats.Timer timer = queryStats.start(countries);
+            connection = pool.borrow();
 
             // Get total countries
-            ResultSet rs1 = statement.executeQuery("SELECT COUNT(DISTINCT CountryID) AS total FROM Country");
-            if (rs1.next()) {
-                summary.put("totalCountries", String.valueOf(rs1.getInt("total")));
+            Long totalCountries = summaryTotal(connection, countries, timer);
+            if (totalCountries != null) {
+                summary.put("totalCountries", String.valueOf(totalCountries));
             }
 
             // Get total regions
-            ResultSet rs2 = statement.executeQuery("SELECT COUNT(DISTINCT RegionID) AS total FROM Region");
-            if (rs2.next()) {
-                summary.put("totalRegions", String.valueOf(rs2.getInt("total")));
+            Long totalRegions = summaryTotal(connection, new QueryShape("getDashboardSummary.regions", "SELECT COUNT(DISTINCT RegionID) AS total FROM Region"));
+            if (totalRegions != null) {
+                summary.put("totalRegions", String.valueOf(totalRegions));
             }
 
             // Get total vaccine types (Antigens)
-            ResultSet rs3 = statement.executeQuery("SELECT COUNT(DISTINCT AntigenID) AS total FROM Antigen");
-            if (rs3.next()) {
-                summary.put("totalVaccines", String.valueOf(rs3.getInt("total")));
+            Long totalVaccines = summaryTotal(connection, new QueryShape("getDashboardSummary.vaccines", "SELECT COUNT(DISTINCT AntigenID) AS total FROM Antigen"));
+            if (totalVaccines != null) {
+                summary.put("totalVaccines", String.valueOf(totalVaccines));
             }
 
             // Get total infection cases
-            ResultSet rs4 = statement.executeQuery("SELECT SUM(cases) AS total FROM InfectionData");
-            if (rs4.next()) {
-                long totalCases = rs4.getLong("total");
+            Long totalCases = summaryTotal(connection, new QueryShape("getDashboardSummary.cases", "SELECT SUM(cases) AS total FROM InfectionData"));
+            if (totalCases != null) {
                 summary.put("totalInfectionCases", String.format("%,d", totalCases));
             }
-
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting dashboard summary: " + e.getMessage());
         } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+            pool.release(connection);
         }
 
         return summary;
     }
 
+    private Long summaryTotal(Connection connection, QueryShape shape) throws SQLException {
+        return summaryTotal(connection, shape, queryStats.start(shape));
+    }
+
+    /**
+     * The "total" column of a one-row aggregate, or null if it returned no row
+     */
+    private Long summaryTotal(Connection connection, QueryShape shape, QueryStats.Timer timer) throws SQLException {
+        timer.connected();
+        PreparedStatement statement = pool.prepare(connection, shape);
+        timer.prepared();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            timer.executed();
+            Long total = resultSet.next() ? resultSet.getLong("total") : null;
+            finishTiming(timer, connection, shape);
+            return total;
+        }
+    }
+
+    /**
+     * Vaccination improvements as text, for the insights page table
+     */
     public ArrayList<HashMap<String, String>> getVaccinationImprovements(String startYear, String endYear, String antigen, String country) {
         ArrayList<HashMap<String, String>> results = new ArrayList<>();
-        Connection connection = null;
+        for (VaccinationImprovement improvement : getImprovements(startYear, endYear, antigen, country)) {
+            HashMap<String, String> row = new HashMap<>();
+            row.put("country_name", improvement.getCountryName());
+            row.put("initial_coverage", String.valueOf(improvement.getInitialCoverage()));
+            row.put("final_coverage", String.valueOf(improvement.getFinalCoverage()));
+            row.put("improvement", String.valueOf(improvement.getImprovement()));
+            results.add(row);
+        }
+        return results;
+    }
+
+    /**
+     * Per country, the average coverage in the start and end years (rounded to 2 decimals) and
+     * the change between them, best improvement first
+     */
+    public ArrayList<VaccinationImprovement> getImprovements(String startYear, String endYear, String antigen, String country) {
+        return getImprovements(startYear, endYear, antigen, country, Integer.MAX_VALUE);
+    }
 
+    /**
+     * Only the limit best improvements, for callers that show a top-K ranking
+     */
+    public ArrayList<VaccinationImprovement> getImprovements(String startYear, String endYear, String antigen, String country, int limit) {
         try {
-            connection = DriverManager.getConnection(DATABASE);
+            return resultCache.get(ResultCache.key("getImprovements", startYear, endYear, antigen, country, String.valueOf(limit)),
+                dataVersion(VaccinationSnapshot.TABLES), CACHED_ROW_BYTES, () -> loadImprovements(startYear, endYear, antigen, country, limit));
+        } catch (SQLException e) {
+            System.err.println("Error getting vaccination improvements: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-            // Build query to calculate improvements
-            String query = """
-                SELECT
-                    c.name AS country_name,
-                    ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS initial_coverage,
-                    ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS final_coverage,
-                    ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END) -
-                          AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS improvement
-                FROM Vaccination v
-                JOIN Country c ON v.country = c.CountryID
-            """;
+    private ArrayList<VaccinationImprovement> loadImprovements(String startYear, String endYear, String antigen, String country, int limit) throws SQLException {
+        // Answer from the in-memory snapshot's coverage cube when it is available
+        VaccinationSnapshot snapshot = vaccinationSnapshot();
+        if (snapshot != null) {
+            return snapshot.getImprovements(startYear, endYear, antigen, country, limit);
+        }
 
-            // Add antigen filter if specified
-            if (antigen != null && !antigen.isEmpty() && !antigen.equals("All Vaccines")) {
-                query += " JOIN Antigen a ON v.antigen = a.AntigenID WHERE a.name = ?";
-            } else {
-                query += " WHERE 1=1";
-            }
+        ArrayList<VaccinationImprovement> results = new ArrayList<>();
+        QueryShape shape = improvementsQuery(startYear, endYear, antigen, country);
+        QueryStats.Timer timer = queryStats.start(shape);
+        Connection connection = null;
 
-            // Add country filter if specified
-            if (country != null && !country.isEmpty()) {
-                query += " AND c.name = ?";
+        try {
+            connection = pool.borrow();
+            timer.connected();
+
+            PreparedStatement stmt = pool.prepare(connection, shape);
+            timer.prepared();
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                timer.executed();
+                while (resultSet.next()) {
+                    results.add(new VaccinationImprovement(
+                        resultSet.getString("country_name"),
+                        resultSet.getDouble("initial_coverage"),
+                        resultSet.getDouble("final_coverage"),
+                        resultSet.getDouble("improvement")
+                    ));
+                }
             }
+            finishTiming(timer, connection, shape);
+        } finally {
+            pool.release(connection);
+        }
 
-            query += """
-                GROUP BY c.name
-                HAVING initial_coverage IS NOT NULL AND final_coverage IS NOT NULL
-                ORDER BY improvement DESC;
-            """;
-
-            PreparedStatement stmt = connection.prepareStatement(query);
-            stmt.setString(1, startYear);
-            stmt.setString(2, endYear);
-            stmt.setString(3, endYear);
-            stmt.setString(4, startYear);
-
-            int paramIndex = 5;
-            if (antigen != null && !antigen.isEmpty() && !antigen.equals("All Vaccines")) {
-                stmt.setString(paramIndex++, antigen);
-            }
-            if (country != null && !country.isEmpty()) {
-                stmt.setString(paramIndex, country);
-            }
+        // Rows arrive best first, so the top-K is the head of the list
+        if (results.size() > limit) {
+            results.subList(limit, results.size()).clear();
+        }
+        return results;
+    }
 
-            ResultSet resultSet = stmt.executeQuery();
+    static QueryShape improvementsQuery(String startYear, String endYear, String antigen, String country) {
+        // Build query to calculate improvements
+        QueryShape shape = new QueryShape("getVaccinationImprovements", """
+            SELECT
+                c.name AS country_name,
+                ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS initial_coverage,
+                ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS final_coverage,
+                ROUND(AVG(CASE WHEN v.year = ? THEN v.coverage END) -
+                      AVG(CASE WHEN v.year = ? THEN v.coverage END), 2) AS improvement
+            FROM Vaccination v
+            JOIN Country c ON v.country = c.CountryID
+        """);
+        shape.param(QueryShape.yearParam(startYear))
+             .param(QueryShape.yearParam(endYear))
+             .param(QueryShape.yearParam(endYear))
+             .param(QueryShape.yearParam(startYear));
+
+        // Add antigen filter if specified
+        boolean filterAntigen = antigen != null && !antigen.isEmpty() && !antigen.equals("All Vaccines");
+        if (filterAntigen) {
+            shape.append(" JOIN Antigen a ON v.antigen = a.AntigenID");
+        }
+        shape.append(" WHERE 1=1");
+        shape.filter("antigen", "a.name = ?", filterAntigen ? antigen : null);
 
-            while (resultSet.next()) {
-                HashMap<String, String> row = new HashMap<>();
-                row.put("country_name", resultSet.getString("country_name"));
-                row.put("initial_coverage", resultSet.getString("initial_coverage"));
-                row.put("final_coverage", resultSet.getString("final_coverage"));
-                row.put("improvement", resultSet.getString("improvement"));
-                results.add(row);
-            }
+        // Add country filter if specified
+        shape.filter("country", "c.name = ?", country);
 
-            stmt.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting vaccination improvements: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
-        }
+        // Ties broken by name, or their order would depend on the plan SQLite picks
+        shape.append("""
+            GROUP BY c.name
+            HAVING initial_coverage IS NOT NULL AND final_coverage IS NOT NULL
+            ORDER BY improvement DESC, c.name;
+        """);
 
-        return results;
+        return shape;
     }
 
     /**
      * Gets top 5 countries by overall average vaccination coverage for snapshot display
      */
-    public ArrayList<HashMap<String, String>> getVaccinationCoverage() {
+    public ArrayList<HashMap<String, String>> getVaccinationCoverage() throws SQLException {
         String query = """
         SELECT
             c.name AS country_name,
@@ -206,13 +667,13 @@ public class JDBCConnection {
         ORDER BY coverage_percentage DESC
         LIMIT 5;
         """;
-        return executeQuery(query);
+        return queryRows("getVaccinationCoverage", query);
     }
 
     /**
      * Gets economic snapshot data showing vaccination coverage by economic phase
      */
-    public ArrayList<HashMap<String, String>> getEconomySnapshot() {
+    public ArrayList<HashMap<String, String>> getEconomySnapshot() throws SQLException {
         String query = """
             SELECT
                 e.phase AS economy,
@@ -224,13 +685,13 @@ public class JDBCConnection {
             GROUP BY e.phase
             ORDER BY e.phase;
         """;
-        return executeQuery(query);
+        return queryRows("getEconomySnapshot", query);
     }
 
     /**
      * Gets region data with vaccination coverage for snapshot display
      */
-    public ArrayList<HashMap<String, String>> getRegions() {
+    public ArrayList<HashMap<String, String>> getRegions() throws SQLException {
         String query = """
             SELECT
                 r.region,
@@ -244,13 +705,13 @@ public class JDBCConnection {
             ORDER BY avg_coverage DESC
             LIMIT 6;
         """;
-        return executeQuery(query);
+        return queryRows("getRegions", query);
     }
 
     /**
      * Gets top infection types by total cases for snapshot display
      */
-    public ArrayList<HashMap<String, String>> getTopInfections() {
+    public ArrayList<HashMap<String, String>> getTopInfections() throws SQLException {
         String query = """
             SELECT
                 it.description AS infection_type,
@@ -261,7 +722,7 @@ public class JDBCConnection {
             ORDER BY total_cases DESC
             LIMIT 10;
         """;
-        ArrayList<HashMap<String, String>> results = executeQuery(query);
+        ArrayList<HashMap<String, String>> results = queryRows("getTopInfections", query);
 
         // Format total_cases with commas
         DecimalFormat formatter = new DecimalFormat("#,###");
@@ -280,104 +741,111 @@ public class JDBCConnection {
         return results;
     }
     
-    /**
-     * Gets all unique countries for the country filter dropdown
-     */
-    public ArrayList<HashMap<String, String>> getAllCountries() {
-        return executeQuery("SELECT DISTINCT name AS country FROM Country ORDER BY name;");
-    }
-
     /**
      * Gets all unique regions for the region filter dropdown
      */
     public ArrayList<HashMap<String, String>> getAllRegions() {
-        return executeQuery("SELECT DISTINCT region AS region FROM Region ORDER BY region;");
+        return executeQuery("getAllRegions", "SELECT DISTINCT region AS region FROM Region ORDER BY region;");
     }
 
-    /**
-     * Gets all unique antigens for the antigen filter dropdown
-     */
-    public ArrayList<HashMap<String, String>> getAllAntigens() {
-        return executeQuery("SELECT DISTINCT name AS antigen FROM Antigen ORDER BY name;");
-    }
-
-    /**
-     * Gets all unique years for the year filter dropdown
-     */
-    public ArrayList<HashMap<String, String>> getAllYears() {
-        return executeQuery("SELECT DISTINCT year AS year FROM Vaccination ORDER BY year;");
-    }
-    
     /**
      * Gets all personas from the database for the mission statement page
      */
     public ArrayList<Persona> getAllPersonas() {
         ArrayList<Persona> list = new ArrayList<>();
-        String query = "SELECT * FROM Personas ORDER BY persona_id;";
-
-        try (Connection conn = DriverManager.getConnection(DATABASE);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            while (rs.next()) {
-                Persona p = new Persona(
-                    rs.getInt("persona_id"),
-                    rs.getString("title"),
-                    rs.getString("name"),
-                    rs.getInt("age"),
-                    rs.getString("occupation"),
-                    rs.getString("education"),
-                    rs.getString("location"),
-                    rs.getString("language"),
-                    rs.getString("disability"),
-                    rs.getString("needs"),
-                    rs.getString("goals"),
-                    rs.getString("skills"),
-                    rs.getString("image"),
-                    rs.getString("image_credit")
-                );
-                list.add(p);
+        QueryShape shape = new QueryShape("getAllPersonas", "SELECT * FROM Personas ORDER BY persona_id;");
+        QueryStats.Timer timer = queryStats.start(shape);
+
+        Connection conn = null;
+
+        try {
+            conn = pool.borrow();
+            timer.connected();
+            PreparedStatement stmt = pool.prepare(conn, shape);
+            timer.prepared();
+            try (ResultSet rs = stmt.executeQuery()) {
+                timer.executed();
+
+                while (rs.next()) {
+                    Persona p = new Persona(
+                        rs.getInt("persona_id"),
+                        rs.getString("title"),
+                        rs.getString("name"),
+                        rs.getInt("age"),
+                        rs.getString("occupation"),
+                        rs.getString("education"),
+                        rs.getString("location"),
+                        rs.getString("language"),
+                        rs.getString("disability"),
+                        rs.getString("needs"),
+                        rs.getString("goals"),
+                        rs.getString("skills"),
+                        rs.getString("image"),
+                        rs.getString("image_credit")
+                    );
+                    list.add(p);
+                }
             }
+            finishTiming(timer, conn, shape);
 
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            pool.release(conn);
         }
 
         return list;
     }
 
     /**
-     * Executes database updates - used for feedback form submissions
+     * Gets filtered vaccination data based on user selections
      */
-    public void executeUpdate(String sql, Object... params) {
-        try (Connection conn = DriverManager.getConnection(DATABASE);
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+    public ArrayList<Vaccination> getVaccinationData(String country, String region, String antigen, String yearStart, String yearEnd) {
+        ArrayList<Vaccination> results = new ArrayList<>();
 
-            // Set parameters for prepared statement to prevent SQL injection
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
+        try (VaccinationCursor cursor = openVaccinationCursor(country, region, antigen, yearStart, yearEnd)) {
+            while (cursor.next()) {
+                results.add(new Vaccination("", cursor.getAntigen(), cursor.getCountry(), cursor.getYear(),
+                    cursor.getTargetNum(), cursor.getDoses(), cursor.getCoverage()));
             }
-
-            stmt.executeUpdate();
-
         } catch (SQLException e) {
-            e.printStackTrace();
+            System.err.println("Error getting vaccination data: " + e.getMessage());
         }
+
+        return results;
     }
-    
+
     /**
-     * Gets filtered vaccination data based on user selections
+     * Opens a cursor over filtered vaccination data so callers can stream rows instead of
+     * collecting them. Reads from the in-memory snapshot when available, otherwise from a query
+     * that holds a pooled connection until the cursor is closed.
      */
-    public ArrayList<Vaccination> getVaccinationData(String country, String region, String antigen, String yearStart, String yearEnd) {
-        ArrayList<Vaccination> results = new ArrayList<>();
-        Connection connection = null;
+    public VaccinationCursor openVaccinationCursor(String country, String region, String antigen, String yearStart, String yearEnd) throws SQLException {
+        VaccinationSnapshot snapshot = vaccinationSnapshot();
+        if (snapshot != null) {
+            return snapshot.cursor(country, region, antigen, yearStart, yearEnd);
+        }
 
+        QueryShape shape = vaccinationDataQuery(country, region, antigen, yearStart, yearEnd);
+        QueryStats.Timer timer = queryStats.start(shape);
+        Connection connection = pool.borrow();
         try {
-            connection = DriverManager.getConnection(DATABASE);
+            timer.connected();
+            PreparedStatement statement = pool.prepare(connection, shape);
+            timer.prepared();
+            ResultSet resultSet = statement.executeQuery();
+            timer.executed();
+            return new ResultSetVaccinationCursor(connection, resultSet, shape, timer);
+        } catch (SQLException e) {
+            pool.release(connection);
+            throw e;
+        }
+    }
 
-            // Build dynamic SQL query based on filters
-            String query = """
-                SELECT 
+    static QueryShape vaccinationDataQuery(String country, String region, String antigen, String yearStart, String yearEnd) {
+        // Build parameterised SQL query based on filters
+        QueryShape shape = new QueryShape("getVaccinationData", """
+                SELECT
                     c.name AS country_name,
                     r.region AS region_name,
                     a.name AS antigen_name,
@@ -390,56 +858,16 @@ public class JDBCConnection {
                 JOIN Region r ON c.region = r.RegionID
                 JOIN Antigen a ON v.antigen = a.AntigenID
                 WHERE 1=1
-            """;
-
-            // Add filters to query based on user input
-            if (country != null && !country.isEmpty()) {
-                query += " AND c.name = '" + country + "'";
-            }
-            if (region != null && !region.isEmpty()) {
-                query += " AND r.region = '" + region + "'";
-            }
-            if (antigen != null && !antigen.isEmpty()) {
-                query += " AND a.name = '" + antigen + "'";
-            }
-            if (yearStart != null && !yearStart.isEmpty()) {
-                query += " AND v.year >= " + yearStart;
-            }
-            if (yearEnd != null && !yearEnd.isEmpty()) {
-                query += " AND v.year <= " + yearEnd;
-            }
-
-            query += " ORDER BY v.year;";
-
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            // Convert result set to Vaccination objects
-            while (resultSet.next()) {
-                String countryName = resultSet.getString("country_name");
-                String antigenName = resultSet.getString("antigen_name");
-                int year = resultSet.getInt("year");
-                double targetNum = resultSet.getDouble("target_num");
-                double doses = resultSet.getDouble("doses");
-                double coverage = resultSet.getDouble("coverage");
-
-                Vaccination vaccination = new Vaccination("", antigenName, countryName, year, targetNum, doses, coverage);
-                results.add(vaccination);
-            }
-
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting vaccination data: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
-        }
-
-        return results;
+            """);
+
+        // Add filters to query based on user input
+        return shape.filter("country", "c.name = ?", country)
+                    .filter("region", "r.region = ?", region)
+                    .filter("antigen", "a.name = ?", antigen)
+                    .yearFilter("yearStart", "v.year >= ?", yearStart)
+                    .yearFilter("yearEnd", "v.year <= ?", yearEnd)
+                    // Ties broken by primary key, or their order would depend on the index SQLite picks
+                    .append(" ORDER BY v.year, v.inf_type, v.antigen, v.country;");
     }
 
     /**
@@ -450,21 +878,66 @@ public class JDBCConnection {
                     "FROM Country c " +
                     "JOIN Region r ON c.region = r.RegionID " +
                     "ORDER BY r.region, c.name";
-        return executeQuery(query);
+        return executeQuery("getRegionCountryMappings", query);
     }
 
     /**
      * Gets filtered infection data based on user selections
      */
     public ArrayList<InfectionData> getInfectionData(String infType, String economicStatus, String country, String yearStart, String yearEnd) {
+        try {
+            return resultCache.get(ResultCache.key("getInfectionData", infType, economicStatus, country, yearStart, yearEnd),
+                dataVersion(InfectionSnapshot.TABLES), CACHED_ROW_BYTES, () -> loadInfectionData(infType, economicStatus, country, yearStart, yearEnd));
+        } catch (SQLException e) {
+            System.err.println("Error getting infection data: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private ArrayList<InfectionData> loadInfectionData(String infType, String economicStatus, String country, String yearStart, String yearEnd) throws SQLException {
         ArrayList<InfectionData> results = new ArrayList<>();
-        Connection connection = null;
 
+        try (InfectionCursor cursor = openInfectionCursor(infType, economicStatus, country, yearStart, yearEnd)) {
+            while (cursor.next()) {
+                // Use the constructor that includes economic status
+                results.add(new InfectionData(cursor.getInfectionType(), cursor.getCountry(),
+                    cursor.getEconomicStatus(), cursor.getYear(), cursor.getCases()));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Opens a cursor over filtered infection data so callers can stream rows instead of
+     * collecting them. Reads from the in-memory snapshot when available, otherwise from a query
+     * that holds a pooled connection until the cursor is closed.
+     */
+    public InfectionCursor openInfectionCursor(String infType, String economicStatus, String country, String yearStart, String yearEnd) throws SQLException {
+        InfectionSnapshot snapshot = infectionSnapshot();
+        if (snapshot != null) {
+            return snapshot.cursor(infType, economicStatus, country, yearStart, yearEnd);
+        }
+
+        QueryShape shape = infectionDataQuery(infType, economicStatus, country, yearStart, yearEnd);
+        QueryStats.Timer timer = queryStats.start(shape);
+        Connection connection = pool.borrow();
         try {
-            connection = DriverManager.getConnection(DATABASE);
+            timer.connected();
+            PreparedStatement statement = pool.prepare(connection, shape);
+            timer.prepared();
+            ResultSet resultSet = statement.executeQuery();
+            timer.executed();
+            return new ResultSetInfectionCursor(connection, resultSet, shape, timer);
+        } catch (SQLException e) {
+            pool.release(connection);
+            throw e;
+        }
+    }
 
-            // Build dynamic SQL query for infection data - MATCHING YOUR SQL STRUCTURE
-            String query = """
+    static QueryShape infectionDataQuery(String infType, String economicStatus, String country, String yearStart, String yearEnd) {
+        // Build parameterised SQL query for infection data - MATCHING YOUR SQL STRUCTURE
+        QueryShape shape = new QueryShape("getInfectionData", """
                 SELECT
                     c.name AS country,
                     e.phase AS economic_status,
@@ -477,326 +950,282 @@ public class JDBCConnection {
                 JOIN Infection_Type it ON id.inf_type = it.id
                 JOIN YearDate yd ON id.year = yd.YearID
                 WHERE 1=1
-            """;
-
-            // Add filters to query - trim whitespace and handle case
-            if (infType != null && !infType.trim().isEmpty()) {
-                query += " AND TRIM(it.description) = '" + infType.trim() + "'";
-            }
-            if (economicStatus != null && !economicStatus.trim().isEmpty()) {
-                query += " AND TRIM(e.phase) = '" + economicStatus.trim() + "'";
-            }
-            if (country != null && !country.trim().isEmpty()) {
-                query += " AND TRIM(c.name) = '" + country.trim() + "'";
-            }
-            if (yearStart != null && !yearStart.trim().isEmpty()) {
-                query += " AND yd.YearID >= " + yearStart.trim();
-            }
-            if (yearEnd != null && !yearEnd.trim().isEmpty()) {
-                query += " AND yd.YearID <= " + yearEnd.trim();
-            }
-
-            query += " ORDER BY yd.YearID, id.cases DESC;";
-
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            // Convert result set to InfectionData objects
-            while (resultSet.next()) {
-                String countryName = resultSet.getString("country");
-                String economicStatusResult = resultSet.getString("economic_status");
-                String infectionType = resultSet.getString("infection_type");
-                int year = resultSet.getInt("year");
-                double cases = resultSet.getDouble("cases");
+            """);
+
+        // Add filters to query - values are trimmed before binding
+        return shape.filter("infType", "TRIM(it.description) = ?", infType)
+                    .filter("economicStatus", "TRIM(e.phase) = ?", economicStatus)
+                    .filter("country", "TRIM(c.name) = ?", country)
+                    .yearFilter("yearStart", "yd.YearID >= ?", yearStart)
+                    .yearFilter("yearEnd", "yd.YearID <= ?", yearEnd)
+                    // Ties broken by rowid, or their order would depend on the plan SQLite picks
+                    .append(" ORDER BY yd.YearID, id.cases DESC, id.rowid;");
+    }
 
-                // Use the constructor that includes economic status
-                results.add(new InfectionData(infectionType, countryName, economicStatusResult, year, cases));
-            }
+    /**
+     * Gets aggregated infection data by economic status, with the case figures formatted for display
+     * Used for trending page to show summary by economic phase
+     */
+    public ArrayList<HashMap<String, String>> getInfectionDataByEconomicStatus(String infType, String yearStart, String yearEnd) {
+        ArrayList<HashMap<String, String>> results = new ArrayList<>();
+        DecimalFormat formatter = new DecimalFormat("#,###");
 
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting infection data: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+        for (InfectionSummary summary : getInfectionSummary(infType, yearStart, yearEnd)) {
+            HashMap<String, String> row = new HashMap<>();
+            row.put("economic_status", summary.getEconomicStatus());
+            row.put("infection_type", summary.getInfectionType());
+            row.put("country_count", String.valueOf(summary.getCountryCount()));
+            row.put("total_cases", formatter.format(summary.getTotalCases()));
+            row.put("avg_cases", formatter.format(summary.getAvgCases()));
+            results.add(row);
         }
 
         return results;
     }
 
     /**
-     * Gets all economic statuses for the dropdown filter
+     * Gets infection cases totalled and averaged per economic status, largest total first
      */
-    public ArrayList<String> getEconomicStatuses() {
-        ArrayList<String> economicStatuses = new ArrayList<>();
-        Connection connection = null;
-
+    public ArrayList<InfectionSummary> getInfectionSummary(String infType, String yearStart, String yearEnd) {
         try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT DISTINCT phase FROM Economy ORDER BY phase;";
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            while (resultSet.next()) {
-                economicStatuses.add(resultSet.getString("phase"));
-            }
-
-            statement.close();
+            return resultCache.get(ResultCache.key("getInfectionSummary", infType, yearStart, yearEnd),
+                dataVersion(InfectionSnapshot.TABLES), CACHED_ROW_BYTES, () -> loadInfectionSummary(infType, yearStart, yearEnd));
         } catch (SQLException e) {
-            System.err.println("Error getting economic statuses: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+            System.err.println("Error getting aggregated infection data: " + e.getMessage());
+            return new ArrayList<>();
         }
-
-        return economicStatuses;
     }
 
-    /*Get all the country that filter by the economic status */
-        public HashMap<String, ArrayList<String>> getEconomicStatusForCountry() {
-        HashMap<String, ArrayList<String>> mappings = new HashMap<>();
+    private ArrayList<InfectionSummary> loadInfectionSummary(String infType, String yearStart, String yearEnd) throws SQLException {
+        // The snapshot's rollup answers from running totals when it can
+        InfectionSnapshot snapshot = infectionSnapshot();
+        if (snapshot != null) {
+            ArrayList<InfectionSummary> summary = snapshot.summary(infType, yearStart, yearEnd);
+            if (summary != null) return summary;
+        }
+
+        ArrayList<InfectionSummary> results = new ArrayList<>();
+        QueryShape shape = infectionSummaryQuery(infType, yearStart, yearEnd);
+        QueryStats.Timer timer = queryStats.start(shape);
         Connection connection = null;
 
         try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT e.phase AS economic_status, c.name AS country " +
-                          "FROM Country c JOIN Economy e ON c.economy = e.economyID " +
-                          "ORDER BY e.phase, c.name";
-            
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(query);
-
-            while (resultSet.next()) {
-                String economicStatus = resultSet.getString("economic_status");
-                String country = resultSet.getString("country");
-                
-                if (!mappings.containsKey(economicStatus)) {
-                    mappings.put(economicStatus, new ArrayList<>());
+            connection = pool.borrow();
+            timer.connected();
+
+            PreparedStatement statement = pool.prepare(connection, shape);
+            timer.prepared();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                timer.executed();
+                while (resultSet.next()) {
+                    results.add(new InfectionSummary(
+                        resultSet.getString("economic_status"),
+                        resultSet.getString("infection_type"),
+                        resultSet.getInt("country_count"),
+                        resultSet.getDouble("total_cases"),
+                        resultSet.getDouble("avg_cases")
+                    ));
                 }
-                mappings.get(economicStatus).add(country);
             }
-
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting economic status-country mappings: " + e.getMessage());
+            finishTiming(timer, connection, shape);
         } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+            pool.release(connection);
         }
 
-        return mappings;
+        return results;
+    }
+
+    static QueryShape infectionSummaryQuery(String infType, String yearStart, String yearEnd) {
+        QueryShape shape = new QueryShape("getInfectionDataByEconomicStatus", """
+            SELECT
+                e.phase AS economic_status,
+                it.description AS infection_type,
+                COUNT(DISTINCT c.CountryID) AS country_count,
+                SUM(id.cases) AS total_cases,
+                AVG(id.cases) AS avg_cases
+            FROM InfectionData id
+            JOIN Country c ON id.country = c.CountryID
+            JOIN Economy e ON c.economy = e.economyID
+            JOIN Infection_Type it ON id.inf_type = it.id
+            JOIN YearDate yd ON id.year = yd.YearID
+            WHERE 1=1
+        """);
+
+        return shape.filter("infType", "TRIM(it.description) = ?", infType)
+                    .yearFilter("yearStart", "yd.YearID >= ?", yearStart)
+                    .yearFilter("yearEnd", "yd.YearID <= ?", yearEnd)
+                    // Ties in group order, or their order would depend on the plan SQLite picks
+                    .append(" GROUP BY e.phase, it.description ORDER BY total_cases DESC, e.phase, it.description;");
     }
 
     /**
-     * Gets all countries for the dropdown filter
+     * Retrieves all feedback messages from the database
+     * @return ArrayList of HashMaps containing feedback data (name, email, feedback, submitted_at)
      */
-    public ArrayList<String> getCountries() {
-        ArrayList<String> countries = new ArrayList<>();
+    public ArrayList<HashMap<String, String>> getAllFeedback() {
+        ArrayList<HashMap<String, String>> results = new ArrayList<>();
+        QueryShape shape = new QueryShape("getAllFeedback", "SELECT name, email, feedback, submitted_at FROM Feedback ORDER BY submitted_at DESC");
+        QueryStats.Timer timer = queryStats.start(shape);
+        // The in-memory replica is not recopied for new feedback, so with one it is read from the file
+        boolean fromFile = MemoryReplica.isEnabled();
         Connection connection = null;
 
         try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT DISTINCT name FROM Country ORDER BY name;";
-            Statement statement = connection.createStatement();
+            connection = fromFile ? pool.borrowWriter() : pool.borrow();
+            timer.connected();
+            PreparedStatement statement = pool.prepare(connection, shape);
+            timer.prepared();
             statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            while (resultSet.next()) {
-                countries.add(resultSet.getString("name"));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                timer.executed();
+
+                while (resultSet.next()) {
+                    HashMap<String, String> row = new HashMap<>();
+                    row.put("name", resultSet.getString("name"));
+                    row.put("email", resultSet.getString("email"));
+                    row.put("feedback", resultSet.getString("feedback"));
+                    row.put("submitted_at", resultSet.getString("submitted_at"));
+                    results.add(row);
+                }
             }
-
-            statement.close();
+            finishTiming(timer, connection, shape);
         } catch (SQLException e) {
-            System.err.println("Error getting countries: " + e.getMessage());
+            System.err.println("Error retrieving feedback: " + e.getMessage());
         } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+            if (fromFile) {
+                pool.releaseWriter(connection);
+            } else {
+                pool.release(connection);
             }
         }
 
-        return countries;
+        return results;
     }
 
     /**
-    * Gets all available years from YearDate table
-    */
-    public ArrayList<String> getYears() {
-        ArrayList<String> years = new ArrayList<>();
-        Connection connection = null;
+     * Vaccination cursor over a live query. Closing it closes the result set, records the query's
+     * timings - the map phase runs until then, so it includes the caller's work on each row - and
+     * hands the connection back to the pool.
+     */
+    private class ResultSetVaccinationCursor implements VaccinationCursor {
+        private final Connection connection;
+        private final ResultSet resultSet;
+        private final QueryShape shape;
+        private final QueryStats.Timer timer;
+
+        private ResultSetVaccinationCursor(Connection connection, ResultSet resultSet, QueryShape shape, QueryStats.Timer timer) {
+            this.connection = connection;
+            this.resultSet = resultSet;
+            this.shape = shape;
+            this.timer = timer;
+        }
 
-        try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT DISTINCT YearID FROM YearDate ORDER BY YearID;";
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
+        @Override
+        public boolean next() throws SQLException {
+            return resultSet.next();
+        }
 
-            while (resultSet.next()) {
-                years.add(String.valueOf(resultSet.getInt("YearID")));
-            }
+        @Override
+        public int getYear() throws SQLException {
+            return resultSet.getInt("year");
+        }
 
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting years: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+        @Override
+        public String getCountry() throws SQLException {
+            return resultSet.getString("country_name");
         }
 
-        return years;
-    }
+        @Override
+        public String getAntigen() throws SQLException {
+            return resultSet.getString("antigen_name");
+        }
 
-    /**
-     * Gets all infection types for the dropdown filter
-     */
-    public ArrayList<String> getInfectionTypes() {
-        ArrayList<String> infectionTypes = new ArrayList<>();
-        Connection connection = null;
+        @Override
+        public double getCoverage() throws SQLException {
+            return resultSet.getDouble("coverage");
+        }
 
-        try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT DISTINCT description FROM Infection_Type ORDER BY description;";
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
+        @Override
+        public double getTargetNum() throws SQLException {
+            return resultSet.getDouble("target_num");
+        }
 
-            while (resultSet.next()) {
-                infectionTypes.add(resultSet.getString("description"));
-            }
+        @Override
+        public double getDoses() throws SQLException {
+            return resultSet.getDouble("doses");
+        }
 
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting infection types: " + e.getMessage());
-        } finally {
+        @Override
+        public void close() {
             try {
-                if (connection != null) connection.close();
+                resultSet.close();
+                finishTiming(timer, connection, shape);
             } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+                System.err.println("Error closing vaccination cursor: " + e.getMessage());
+            } finally {
+                pool.release(connection);
             }
         }
-
-        return infectionTypes;
     }
 
     /**
-     * Gets aggregated infection data by economic status
-     * Used for trending page to show summary by economic phase
+     * Infection cursor over a live query. Closing it closes the result set, records the query's
+     * timings - the map phase runs until then, so it includes the caller's work on each row - and
+     * hands the connection back to the pool.
      */
-    public ArrayList<HashMap<String, String>> getInfectionDataByEconomicStatus(String infType, String yearStart, String yearEnd) {
-        ArrayList<HashMap<String, String>> results = new ArrayList<>();
-        Connection connection = null;
-
-        try {
-            connection = DriverManager.getConnection(DATABASE);
-
-            String query = """
-                SELECT
-                    e.phase AS economic_status,
-                    it.description AS infection_type,
-                    COUNT(DISTINCT c.CountryID) AS country_count,
-                    SUM(id.cases) AS total_cases,
-                    AVG(id.cases) AS avg_cases
-                FROM InfectionData id
-                JOIN Country c ON id.country = c.CountryID
-                JOIN Economy e ON c.economy = e.economyID
-                JOIN Infection_Type it ON id.inf_type = it.id
-                JOIN YearDate yd ON id.year = yd.YearID
-                WHERE 1=1
-            """;
-
-            if (infType != null && !infType.trim().isEmpty()) {
-                query += " AND TRIM(it.description) = '" + infType.trim() + "'";
-            }
-            if (yearStart != null && !yearStart.trim().isEmpty()) {
-                query += " AND yd.YearID >= " + yearStart.trim();
-            }
-            if (yearEnd != null && !yearEnd.trim().isEmpty()) {
-                query += " AND yd.YearID <= " + yearEnd.trim();
-            }
+    private class ResultSetInfectionCursor implements InfectionCursor {
+        private final Connection connection;
+        private final ResultSet resultSet;
+        private final QueryShape shape;
+        private final QueryStats.Timer timer;
+
+        private ResultSetInfectionCursor(Connection connection, ResultSet resultSet, QueryShape shape, QueryStats.Timer timer) {
+            this.connection = connection;
+            this.resultSet = resultSet;
+            this.shape = shape;
+            this.timer = timer;
+        }
 
-            query += " GROUP BY e.phase, it.description ORDER BY total_cases DESC;";
+        @Override
+        public boolean next() throws SQLException {
+            return resultSet.next();
+        }
 
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            DecimalFormat formatter = new DecimalFormat("#,###");
-
-            while (resultSet.next()) {
-                HashMap<String, String> row = new HashMap<>();
-                row.put("economic_status", resultSet.getString("economic_status"));
-                row.put("infection_type", resultSet.getString("infection_type"));
-                row.put("country_count", String.valueOf(resultSet.getInt("country_count")));
-                row.put("total_cases", formatter.format(resultSet.getDouble("total_cases")));
-                row.put("avg_cases", formatter.format(resultSet.getDouble("avg_cases")));
-                results.add(row);
-            }
+        @Override
+        public int getYear() throws SQLException {
+            return resultSet.getInt("year");
+        }
 
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error getting aggregated infection data: " + e.getMessage());
-        } finally {
-            try {
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
-            }
+        @Override
+        public String getCountry() throws SQLException {
+            return resultSet.getString("country");
         }
 
-        return results;
-    }
+        @Override
+        public String getEconomicStatus() throws SQLException {
+            return resultSet.getString("economic_status");
+        }
 
-    /**
-     * Retrieves all feedback messages from the database
-     * @return ArrayList of HashMaps containing feedback data (name, email, feedback, submitted_at)
-     */
-    public ArrayList<HashMap<String, String>> getAllFeedback() {
-        ArrayList<HashMap<String, String>> results = new ArrayList<>();
-        Connection connection = null;
+        @Override
+        public String getInfectionType() throws SQLException {
+            return resultSet.getString("infection_type");
+        }
 
-        try {
-            connection = DriverManager.getConnection(DATABASE);
-            String query = "SELECT name, email, feedback, submitted_at FROM Feedback ORDER BY submitted_at DESC";
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            ResultSet resultSet = statement.executeQuery(query);
-
-            while (resultSet.next()) {
-                HashMap<String, String> row = new HashMap<>();
-                row.put("name", resultSet.getString("name"));
-                row.put("email", resultSet.getString("email"));
-                row.put("feedback", resultSet.getString("feedback"));
-                row.put("submitted_at", resultSet.getString("submitted_at"));
-                results.add(row);
-            }
+        @Override
+        public double getCases() throws SQLException {
+            return resultSet.getDouble("cases");
+        }
 
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println("Error retrieving feedback: " + e.getMessage());
-        } finally {
+        @Override
+        public void close() {
             try {
-                if (connection != null) connection.close();
+                resultSet.close();
+                finishTiming(timer, connection, shape);
             } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+                System.err.println("Error closing infection cursor: " + e.getMessage());
+            } finally {
+                pool.release(connection);
             }
         }
-
-        return results;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON straight to an output stream.
+ * <p>
+ * Commas and nesting are tracked for the caller, strings are escaped as they are copied, and
+ * numbers are written digit by digit from the primitive value, so a long numeric series is
+ * never turned into strings first. Doubles come out in a form that parses back to exactly the
+ * same value; the rare one the fast path cannot handle falls back to Double.toString.
+ */
+public class JsonWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Deepest nesting supported - the API responses are never more than a few levels deep
+    private static final int MAX_DEPTH = 64;
+
+    // Largest scaled value the fast path handles, well inside the range doubles hold exactly
+    private static final double MAX_EXACT = 1e15;
+
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    // Whether the container at each depth already holds a value, so the next one needs a comma
+    private final boolean[] hasValue = new boolean[MAX_DEPTH];
+    private int depth = 0;
+
+    // Set after a name, so the value that follows is not preceded by a comma
+    private boolean afterName = false;
+
+    public JsonWriter(OutputStream stream) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Writes an object member's name; the value must follow
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a number, or null for NaN and infinity, which JSON cannot express
+     */
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.write("null");
+        } else if (!writeFast(value)) {
+            out.write(Double.toString(value));
+        }
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested deeper than " + MAX_DEPTH + " levels");
+        }
+        out.write(bracket);
+        hasValue[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("No open JSON array or object to close");
+        }
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+
+    /**
+     * Writes the comma between values, unless this value belongs to the name just written
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasValue[depth - 1]) out.write(',');
+            hasValue[depth - 1] = true;
+        }
+    }
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+
+            // Copy the plain run before this character in one go
+            out.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                case '\b': out.write("\\b"); break;
+                case '\f': out.write("\\f"); break;
+                default:
+                    out.write("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    /**
+     * Writes values with at most six decimals as plain digits. Returns false for anything else
+     * (huge, tiny or with a longer decimal expansion).
+     */
+    private boolean writeFast(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        if (magnitude >= MAX_EXACT) return false;
+
+        for (int decimals = 0; decimals < POWERS_OF_TEN.length; decimals++) {
+            long scale = POWERS_OF_TEN[decimals];
+            double scaled = magnitude * scale;
+            if (scaled >= MAX_EXACT) return false;
+            long units = (long) Math.rint(scaled);
+
+            // The text units / 10^decimals reads back as this exact double, so it can be written as is
+            if ((double) units / scale != magnitude) continue;
+
+            if (value < 0 && units != 0) out.write('-');
+            writeLong(units / scale);
+            if (decimals > 0) {
+                out.write('.');
+                long fraction = units % scale;
+                for (long digit = scale / 10; digit > 0; digit /= 10) {
+                    out.write((char) ('0' + fraction / digit % 10));
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+
+        // Digits from the most significant down, without building a string
+        long digit = 1;
+        while (digit <= value / 10) digit *= 10;
+        for (; digit > 0; digit /= 10) {
+            out.write((char) ('0' + value / digit % 10));
+        }
+    }
+}
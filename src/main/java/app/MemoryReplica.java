@@ -0,0 +1,123 @@
+package app;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A copy of who.db held in memory, so read queries never wait on the disk.
+ * <p>
+ * Enabled with {@code -Ddb.replica=memory}. The file is copied with SQLite's backup API into a
+ * named shared-cache in-memory database, which every read connection opened on its URL shares.
+ * A new copy is made under a new name each time the data changes and the pool's reads are
+ * switched over to it in one step; the old copy is freed once its last connection closes.
+ * Writes, and the checks for changes, still go to the file.
+ */
+public class MemoryReplica {
+
+    // "file" (default) or "memory"
+    private static final String MODE = System.getProperty("db.replica", "file");
+
+    private final File source;
+
+    // Keeps the current copy alive while no read connection is open on it
+    private Connection holder;
+    private Connection previousHolder;
+    private int generation = 0;
+
+    // Metrics
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastLoadMillis = -1;
+
+    public MemoryReplica(File source) {
+        this.source = source;
+    }
+
+    public static boolean isEnabled() {
+        return "memory".equals(MODE);
+    }
+
+    /**
+     * Copies the database file into a new in-memory database and returns its URL. The previous
+     * copy stays open until {@link #releasePrevious()}, so readers can be moved off it first.
+     */
+    public synchronized String load() throws SQLException {
+        long start = System.nanoTime();
+        String url = "jdbc:sqlite:file:who-replica-" + (++generation) + "?mode=memory&cache=shared";
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            // sqlite-jdbc runs this through sqlite3_backup, copying every page of the file
+            statement.executeUpdate("restore from " + quote(source.getPath()));
+        } catch (SQLException e) {
+            failures.increment();
+            connection.close();
+            throw e;
+        }
+
+        closeQuietly(previousHolder);
+        previousHolder = holder;
+        holder = connection;
+        loads.increment();
+        lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+        return url;
+    }
+
+    /**
+     * Lets go of the copy replaced by the last load
+     */
+    public synchronized void releasePrevious() {
+        closeQuietly(previousHolder);
+        previousHolder = null;
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * How long the last copy took, or -1 before the first
+     */
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    /**
+     * Frees the in-memory copies - called when the application shuts down
+     */
+    public synchronized void close() {
+        releasePrevious();
+        closeQuietly(holder);
+        holder = null;
+    }
+
+    /**
+     * The path quoted for sqlite-jdbc's restore command, which splits unquoted paths at spaces and
+     * has no escape for a quote inside a quoted one
+     */
+    private static String quote(String path) throws SQLException {
+        if (path.indexOf('"') < 0) return '"' + path + '"';
+        if (path.indexOf('\'') < 0) return '\'' + path + '\'';
+        throw new SQLException("Cannot copy " + path + " into memory: the path contains both kinds of quote");
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing replica connection: " + e.getMessage());
+        }
+    }
+}
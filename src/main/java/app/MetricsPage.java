@@ -0,0 +1,155 @@
+package app;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Runtime figures in the Prometheus text format, for scraping: requests per route and status,
+ * requests in flight and latency histograms from {@link RequestMetrics}, JVM memory, garbage
+ * collection and threads, and the connection pool.
+ * <p>
+ * Latency buckets are cumulative since the application started, as Prometheus expects, so
+ * percentiles over a time window come from rate() of the buckets in the query.
+ */
+public class MetricsPage implements Handler {
+
+    public static final String URL = "/metrics";
+
+    // Upper bounds of the latency buckets, in seconds
+    private static final double[] BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60 };
+
+    private final JDBCConnection connection;
+    private final RequestMetrics metrics;
+
+    public MetricsPage(JDBCConnection connection, RequestMetrics metrics) {
+        this.connection = connection;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        StringBuilder text = new StringBuilder();
+        writeRequests(text);
+        writeJvm(text);
+        writePool(text);
+
+        context.contentType("text/plain; version=0.0.4; charset=utf-8");
+        context.result(text.toString());
+    }
+
+    private void writeRequests(StringBuilder text) {
+        List<RequestMetrics.Route> routes = metrics.getRoutes();
+
+        family(text, "http_requests_total", "counter", "Finished requests by route and status code");
+        for (RequestMetrics.Route route : routes) {
+            for (Map.Entry<Integer, Long> status : route.getStatusCounts().entrySet()) {
+                sample(text, "http_requests_total", routeLabels(route) + ",status=\"" + status.getKey() + "\"", status.getValue());
+            }
+        }
+
+        family(text, "http_requests_in_flight", "gauge", "Requests being handled now");
+        for (RequestMetrics.Route route : routes) {
+            sample(text, "http_requests_in_flight", routeLabels(route), route.getInFlight());
+        }
+
+        family(text, "http_request_duration_seconds", "histogram", "Time from the first handler to the last, by route");
+        for (RequestMetrics.Route route : routes) {
+            Histogram latencies = route.getLatencies();
+            String labels = routeLabels(route);
+            for (double bound : BUCKETS) {
+                long count = latencies.getCountBetweenValues(0, (long) (bound * 1_000_000));
+                sample(text, "http_request_duration_seconds_bucket", labels + ",le=\"" + bound + "\"", count);
+            }
+            sample(text, "http_request_duration_seconds_bucket", labels + ",le=\"+Inf\"", latencies.getTotalCount());
+            sample(text, "http_request_duration_seconds_sum", labels, route.getTotalSeconds());
+            sample(text, "http_request_duration_seconds_count", labels, latencies.getTotalCount());
+        }
+    }
+
+    private void writeJvm(StringBuilder text) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        family(text, "jvm_memory_bytes_used", "gauge", "Memory in use by area");
+        sample(text, "jvm_memory_bytes_used", "area=\"heap\"", heap.getUsed());
+        sample(text, "jvm_memory_bytes_used", "area=\"nonheap\"", nonHeap.getUsed());
+        family(text, "jvm_memory_bytes_committed", "gauge", "Memory reserved from the operating system by area");
+        sample(text, "jvm_memory_bytes_committed", "area=\"heap\"", heap.getCommitted());
+        sample(text, "jvm_memory_bytes_committed", "area=\"nonheap\"", nonHeap.getCommitted());
+        family(text, "jvm_memory_bytes_max", "gauge", "Most memory the area can grow to, or -1 if unlimited");
+        sample(text, "jvm_memory_bytes_max", "area=\"heap\"", heap.getMax());
+        sample(text, "jvm_memory_bytes_max", "area=\"nonheap\"", nonHeap.getMax());
+
+        family(text, "jvm_memory_pool_bytes_used", "gauge", "Memory in use by pool");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            sample(text, "jvm_memory_pool_bytes_used", "pool=\"" + escape(pool.getName()) + "\"", pool.getUsage().getUsed());
+        }
+
+        family(text, "jvm_gc_collection_seconds", "summary", "Garbage collections and the time they took, by collector");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = "gc=\"" + escape(collector.getName()) + "\"";
+            sample(text, "jvm_gc_collection_seconds_count", labels, collector.getCollectionCount());
+            sample(text, "jvm_gc_collection_seconds_sum", labels, collector.getCollectionTime() / 1_000.0);
+        }
+
+        family(text, "jvm_threads_current", "gauge", "Live threads, including daemon threads");
+        sample(text, "jvm_threads_current", null, ManagementFactory.getThreadMXBean().getThreadCount());
+
+        family(text, "process_start_time_seconds", "gauge", "When the JVM started, in seconds since the epoch");
+        sample(text, "process_start_time_seconds", null, ManagementFactory.getRuntimeMXBean().getStartTime() / 1_000.0);
+    }
+
+    private void writePool(StringBuilder text) {
+        ConnectionPool pool = connection.getPool();
+
+        family(text, "db_pool_connections_max", "gauge", "Most read connections the pool opens");
+        sample(text, "db_pool_connections_max", null, pool.getMaxSize());
+        family(text, "db_pool_connections_active", "gauge", "Read connections borrowed now");
+        sample(text, "db_pool_connections_active", null, pool.getActiveCount());
+        family(text, "db_pool_connections_idle", "gauge", "Open read connections waiting to be borrowed");
+        sample(text, "db_pool_connections_idle", null, pool.getIdleCount());
+        family(text, "db_pool_borrows_total", "counter", "Read connections handed out");
+        sample(text, "db_pool_borrows_total", null, pool.getBorrowCount());
+        family(text, "db_pool_discarded_total", "counter", "Connections closed instead of returned to the pool");
+        sample(text, "db_pool_discarded_total", null, pool.getDiscardedCount());
+        family(text, "db_pool_wait_seconds_total", "counter", "Time spent waiting for a read connection");
+        sample(text, "db_pool_wait_seconds_total", null, pool.getTotalWaitMillis() / 1_000);
+        family(text, "db_pool_wait_seconds_max", "gauge", "Longest wait for a read connection");
+        sample(text, "db_pool_wait_seconds_max", null, pool.getMaxWaitMillis() / 1_000);
+    }
+
+    private static String routeLabels(RequestMetrics.Route route) {
+        return "method=\"" + escape(route.getMethod()) + "\",route=\"" + escape(route.getPath()) + "\"";
+    }
+
+    private static void family(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, long value) {
+        text.append(name);
+        if (labels != null) text.append('{').append(labels).append('}');
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (labels != null) text.append('{').append(labels).append('}');
+        text.append(' ').append(value).append('\n');
+    }
+
+    // Label values escape backslashes, quotes and newlines
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
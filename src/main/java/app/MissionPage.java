@@ -25,6 +25,7 @@ public class MissionPage implements Handler {
         try {
             // Fetch all personas as Persona objects
             ArrayList<Persona> personas = connection.getAllPersonas();
+            RequestTiming.mark(context, RequestTiming.Phase.QUERY);
 
             // Pass to Thymeleaf
             model.put("personas", personas);
@@ -36,5 +37,6 @@ public class MissionPage implements Handler {
 
         // Render the Thymeleaf template with model data
         context.render("mission.html", model);
+        RequestTiming.mark(context, RequestTiming.Phase.RENDER);
     }
 }
@@ -1,29 +1,22 @@
 package app;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
-import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
-import app.model.Vaccination;
 import io.javalin.http.Handler;
 import io.javalin.http.Context;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
 
 public class PDFExport implements Handler {
-    
+
     private JDBCConnection connection;
-    
-    public PDFExport(JDBCConnection connection) {
+    private ExportJobs exportJobs;
+
+    public PDFExport(JDBCConnection connection, ExportJobs exportJobs) {
         this.connection = connection;
+        this.exportJobs = exportJobs;
     }
-    
+
     public static final String URL = "/export/pdf";
-    
+
     @Override
     public void handle(Context context) throws Exception {
         try {
@@ -33,283 +26,122 @@ public class PDFExport implements Handler {
             String antigen = context.queryParam("antigen");
             String yearStart = context.queryParam("yearStart");
             String yearEnd = context.queryParam("yearEnd");
-            
-            // Get filtered data
-            ArrayList<Vaccination> vaccinationData = connection.getVaccinationData(
-                country, region, antigen, yearStart, yearEnd);
-            
-            // Generate PDF
-            byte[] pdfBytes = generatePDF(vaccinationData, country, region, antigen, yearStart, yearEnd);
-            
-            // Set response headers for PDF download
+
             String fileName = generateFileName(country, region, antigen, yearStart, yearEnd);
+
+            // Huge reports can be built in the background and collected from the job URL
+            if ("background".equals(context.queryParam("mode"))) {
+                ExportJobs.Job job = exportJobs.submit(fileName, "application/pdf",
+                    out -> generatePDF(out, PdfTableWriter.BACKGROUND_MAX_ROWS, country, region, antigen, yearStart, yearEnd));
+                if (job == null) {
+                    context.status(503).result("Too many exports in progress, please try again later");
+                    return;
+                }
+                context.status(202);
+                context.header("Location", ExportJobPage.urlFor(job));
+                context.result("Export started. Download it from " + ExportJobPage.urlFor(job) + " when ready.");
+                return;
+            }
+
+            // Set response headers for PDF download
             context.contentType("application/pdf");
             context.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-            context.result(pdfBytes);
-            
+
+            // Pages are laid out from the cursor and the document is written straight to the response
+            generatePDF(context.res.getOutputStream(), PdfTableWriter.MAX_ROWS, country, region, antigen, yearStart, yearEnd);
+
         } catch (Exception e) {
             e.printStackTrace();
-            context.status(500).result("Error generating PDF: " + e.getMessage());
+            // Once the document has started going out the status can no longer change
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error generating PDF: " + e.getMessage());
+            }
         }
     }
-    
-    private byte[] generatePDF(ArrayList<Vaccination> data, String country, String region, 
+
+    private void generatePDF(OutputStream out, int maxRows, String country, String region,
                              String antigen, String yearStart, String yearEnd) throws Exception {
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage(PDRectangle.A4);
-            document.addPage(page);
-            
-            float margin = 50;
-            float yStart = page.getMediaBox().getHeight() - margin;
-            float yPosition = yStart;
-            
-            // Colors
-            PDColor grayColor = new PDColor(new float[]{0.78f, 0.78f, 0.78f}, PDDeviceRGB.INSTANCE);
-            PDColor blackColor = new PDColor(new float[]{0f, 0f, 0f}, PDDeviceRGB.INSTANCE);
-            
-            // Table headers
-            String[] headers = {"Year", "Country", "Antigen", "Coverage%", "Target Pop", "Doses"};
-            float[] columnWidths = {60, 90, 120, 70, 85, 70};
-            float tableWidth = 0;
-            for (float width : columnWidths) tableWidth += width;
-            
-            // First page content
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                
-                // Title
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 16);
-                contentStream.newLineAtOffset(margin, yPosition);
-                contentStream.showText("Vaccination Data Export");
-                contentStream.endText();
-                yPosition -= 30;
-                
-                // Filter information
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_OBLIQUE, 10);
-                contentStream.newLineAtOffset(margin, yPosition);
-                StringBuilder filterInfo = new StringBuilder("Filters Applied: ");
-                if (country != null && !country.isEmpty()) filterInfo.append("Country: ").append(country).append("; ");
-                if (region != null && !region.isEmpty()) filterInfo.append("Region: ").append(region).append("; ");
-                if (antigen != null && !antigen.isEmpty()) filterInfo.append("Antigen: ").append(antigen).append("; ");
-                contentStream.showText(filterInfo.toString());
-                contentStream.endText();
-                yPosition -= 30;
+        // Identical exports requested at the same time share one rendering
+        connection.writeExport(URL, out, shared -> renderPDF(shared, maxRows, country, region, antigen, yearStart, yearEnd),
+            String.valueOf(maxRows), country, region, antigen, yearStart, yearEnd);
+    }
 
-                //seconds line for year filter
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_OBLIQUE, 10);
-                contentStream.newLineAtOffset(margin, yPosition);
-                StringBuilder yearInfo = new StringBuilder();
+    private void renderPDF(OutputStream out, int maxRows, String country, String region,
+                           String antigen, String yearStart, String yearEnd) throws Exception {
+        try (VaccinationCursor cursor = connection.openVaccinationCursor(country, region, antigen, yearStart, yearEnd)) {
+            writePDF(cursor, out, maxRows, country, region, antigen, yearStart, yearEnd);
+        }
+    }
 
-                if (yearStart != null && !yearStart.isEmpty()) yearInfo.append("From: ").append(yearStart).append(" ");
-                if (yearEnd != null && !yearEnd.isEmpty()) yearInfo.append("To: ").append(yearEnd).append("; ");
+    /**
+     * Lays out up to maxRows rows from the cursor and writes the document to the stream. The
+     * filters only label the report; the cursor has already applied them.
+     */
+    public static void writePDF(VaccinationCursor cursor, OutputStream out, int maxRows, String country, String region,
+                                String antigen, String yearStart, String yearEnd) throws Exception {
+        // Table headers
+        String[] headers = {"Year", "Country", "Antigen", "Coverage%", "Target Pop", "Doses"};
+        float[] columnWidths = {60, 90, 120, 70, 85, 70};
 
-                contentStream.showText(yearInfo.toString());
-                contentStream.endText();
-                yPosition -= 30;
+        try (PdfTableWriter pdf = new PdfTableWriter(headers, columnWidths, 9)) {
 
-                // Draw header background
-                contentStream.setNonStrokingColor(grayColor);
-                contentStream.addRect(margin, yPosition - 15, tableWidth, 20);
-                contentStream.fill();
-                contentStream.setNonStrokingColor(blackColor);
-                
-                // Header text - FIXED
-                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                float headerX = margin + 5;
-                for (int i = 0; i < headers.length; i++) {
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(headerX, yPosition - 10);
-                    contentStream.showText(headers[i]);
-                    contentStream.endText();
-                    headerX += columnWidths[i];
-                }
-                yPosition -= 25;
-                
-                // Table data
-                contentStream.setFont(PDType1Font.HELVETICA, 9);
-                
-                for (int i = 0; i < data.size(); i++) {
-                    Vaccination vaccination = data.get(i);
-                    
-                    // Check if we need a new page
-                    if (yPosition < margin + 50) {
-                        // Close current content stream
-                        contentStream.close();
-                        
-                        // Create new page
-                        page = new PDPage(PDRectangle.A4);
-                        document.addPage(page);
-                        
-                        // Create new content stream for the new page
-                        try (PDPageContentStream newContentStream = new PDPageContentStream(document, page)) {
-                            newContentStream.setFont(PDType1Font.HELVETICA, 9);
-                            newContentStream.setNonStrokingColor(blackColor);
-                            
-                            // Reset position for new page
-                            yPosition = yStart - 60;
-                            
-                            // Redraw header on new page
-                            newContentStream.setNonStrokingColor(grayColor);
-                            newContentStream.addRect(margin, yPosition - 15, tableWidth, 20);
-                            newContentStream.fill();
-                            newContentStream.setNonStrokingColor(blackColor);
-                            
-                            newContentStream.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                            headerX = margin + 5;
-                            for (int k = 0; k < headers.length; k++) {
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(headerX, yPosition - 10);
-                                newContentStream.showText(headers[k]);
-                                newContentStream.endText();
-                                headerX += columnWidths[k];
-                            }
-                            yPosition -= 25;
-                            newContentStream.setFont(PDType1Font.HELVETICA, 9);
-                            
-                            // Continue with remaining data
-                            for (int j = i; j < data.size(); j++) {
-                                Vaccination remainingVaccination = data.get(j);
-                                
-                                if (yPosition < margin + 50) {
-                                    break;
-                                }
-                                
-                                // Draw row on new page
-                                float currentX = margin + 5;
-                                
-                                // Year
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                newContentStream.showText(String.valueOf(remainingVaccination.getYear()));
-                                newContentStream.endText();
-                                currentX += columnWidths[0];
-                                
-                                // Country
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                String countryText = remainingVaccination.getCountry();
-                                if (countryText.length() > 10) countryText = countryText.substring(0, 10) + "...";
-                                newContentStream.showText(countryText);
-                                newContentStream.endText();
-                                currentX += columnWidths[1];
-                                
-                                // Antigen
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                String antigenText = remainingVaccination.getAntigen();
-                                if (antigenText.length() > 15) antigenText = antigenText.substring(0, 15) + "...";
-                                newContentStream.showText(antigenText);
-                                newContentStream.endText();
-                                currentX += columnWidths[2];
-                                
-                                // Coverage
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                newContentStream.showText(String.format("%.1f", remainingVaccination.getCoverage()));
-                                newContentStream.endText();
-                                currentX += columnWidths[3];
-                                
-                                // Target Population
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                newContentStream.showText(String.format("%,.0f", remainingVaccination.getTargetNum()));
-                                newContentStream.endText();
-                                currentX += columnWidths[4];
-                                
-                                // Doses
-                                newContentStream.beginText();
-                                newContentStream.newLineAtOffset(currentX, yPosition);
-                                newContentStream.showText(String.format("%,.0f", remainingVaccination.getDoses()));
-                                newContentStream.endText();
-                                
-                                yPosition -= 15;
-                                i = j;
-                            }
-                        }
-                        break;
-                    }
-                    
-                    // Draw row on current page
-                    float currentX = margin + 5;
-                    
-                    // Year
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    contentStream.showText(String.valueOf(vaccination.getYear()));
-                    contentStream.endText();
-                    currentX += columnWidths[0];
-                    
-                    // Country
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    String countryText = vaccination.getCountry();
-                    if (countryText.length() > 10) countryText = countryText.substring(0, 10) + "...";
-                    contentStream.showText(countryText);
-                    contentStream.endText();
-                    currentX += columnWidths[1];
-                    
-                    // Antigen
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    String antigenText = vaccination.getAntigen();
-                    if (antigenText.length() > 15) antigenText = antigenText.substring(0, 15) + "...";
-                    contentStream.showText(antigenText);
-                    contentStream.endText();
-                    currentX += columnWidths[2];
-                    
-                    // Coverage
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    contentStream.showText(String.format("%.1f", vaccination.getCoverage()));
-                    contentStream.endText();
-                    currentX += columnWidths[3];
-                    
-                    // Target Population
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    contentStream.showText(String.format("%,.0f", vaccination.getTargetNum()));
-                    contentStream.endText();
-                    currentX += columnWidths[4];
-                    
-                    // Doses
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(currentX, yPosition);
-                    contentStream.showText(String.format("%,.0f", vaccination.getDoses()));
-                    contentStream.endText();
-                    
-                    yPosition -= 15;
-                }
-                
-                // Summary
-                if (!data.isEmpty() && yPosition > margin + 50) {
-                    yPosition -= 20;
-                    contentStream.beginText();
-                    contentStream.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                    contentStream.newLineAtOffset(margin, yPosition);
-                    contentStream.showText("Total Records: " + data.size());
-                    contentStream.endText();
+            pdf.title("Vaccination Data Export");
+
+            // Filter information
+            StringBuilder filterInfo = new StringBuilder("Filters Applied: ");
+            if (country != null && !country.isEmpty()) filterInfo.append("Country: ").append(country).append("; ");
+            if (region != null && !region.isEmpty()) filterInfo.append("Region: ").append(region).append("; ");
+            if (antigen != null && !antigen.isEmpty()) filterInfo.append("Antigen: ").append(antigen).append("; ");
+            pdf.note(filterInfo.toString());
+
+            //seconds line for year filter
+            StringBuilder yearInfo = new StringBuilder();
+            if (yearStart != null && !yearStart.isEmpty()) yearInfo.append("From: ").append(yearStart).append(" ");
+            if (yearEnd != null && !yearEnd.isEmpty()) yearInfo.append("To: ").append(yearEnd).append("; ");
+            pdf.note(yearInfo.toString());
+
+            // Table data
+            pdf.startTable();
+            int rows = 0;
+            boolean truncated = false;
+            while (cursor.next()) {
+                if (rows == maxRows) {
+                    truncated = true;
+                    break;
                 }
+                pdf.row(
+                    String.valueOf(cursor.getYear()),
+                    PdfTableWriter.clip(cursor.getCountry(), 10),
+                    PdfTableWriter.clip(cursor.getAntigen(), 15),
+                    String.format("%.1f", cursor.getCoverage()),
+                    String.format("%,.0f", cursor.getTargetNum()),
+                    String.format("%,.0f", cursor.getDoses()));
+                rows++;
             }
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            document.save(outputStream);
-            return outputStream.toByteArray();
+
+            // Summary
+            if (truncated) {
+                pdf.note("Export limited to the first " + rows + " records - narrow the filters to see the rest.");
+            }
+            if (rows > 0) {
+                pdf.summary("Total Records: " + rows);
+            }
+
+            pdf.save(out);
         }
     }
-    
-    private String generateFileName(String country, String region, String antigen, 
+
+    private String generateFileName(String country, String region, String antigen,
                                   String yearStart, String yearEnd) {
         StringBuilder fileName = new StringBuilder("vaccination_data");
-        
+
         if (country != null && !country.isEmpty()) fileName.append("_").append(country.replace(" ", "_"));
         if (region != null && !region.isEmpty()) fileName.append("_").append(region.replace(" ", "_"));
         if (antigen != null && !antigen.isEmpty()) fileName.append("_").append(antigen.replace(" ", "_"));
         if (yearStart != null && !yearStart.isEmpty()) fileName.append("_from_").append(yearStart);
         if (yearEnd != null && !yearEnd.isEmpty()) fileName.append("_to_").append(yearEnd);
-        
+
         fileName.append(".pdf");
         return fileName.toString();
     }
-}
\ No newline at end of file
+}
@@ -35,16 +35,25 @@ public class PageIndex implements Handler {
         // Add page title
         model.put("title", "Global Health Dashboard");
 
+        // Aggregates come precomputed from the dashboard cache
+        DashboardCache.Dashboard dashboard = connection.getDashboard();
+        RequestTiming.mark(context, RequestTiming.Phase.QUERY);
+
         // Get summary statistics for highlight cards
-        model.put("summary", connection.getDashboardSummary());
+        model.put("summary", dashboard.getSummary());
 
         // Get data for snapshots
-        model.put("topVaccinations", connection.getVaccinationCoverage());
-        model.put("economySnapshot", connection.getEconomySnapshot());
-        model.put("improvedRegions", connection.getRegions());
-        model.put("topInfections", connection.getTopInfections());
+        model.put("topVaccinations", dashboard.getTopVaccinations());
+        model.put("economySnapshot", dashboard.getEconomySnapshot());
+        model.put("improvedRegions", dashboard.getImprovedRegions());
+        model.put("topInfections", dashboard.getTopInfections());
+
+        // Parts whose query timed out are shown as "data unavailable" cards
+        model.put("unavailable", dashboard.getUnavailable());
+        RequestTiming.mark(context, RequestTiming.Phase.MODEL);
 
         context.render(TEMPLATE, model);
+        RequestTiming.mark(context, RequestTiming.Phase.RENDER);
     }
 
 
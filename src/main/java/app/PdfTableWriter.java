@@ -0,0 +1,213 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+/**
+ * Lays out a titled table across as many A4 pages as the rows need, one row at a time.
+ * <p>
+ * Only the current page's content stream is open. The document is backed by PDFBox's scratch
+ * file, so once a page is finished its content sits in a temp file rather than on the heap,
+ * and the finished document is written straight to an output stream. Memory use therefore
+ * stays flat however many rows are exported.
+ */
+public class PdfTableWriter implements AutoCloseable {
+
+    // Most rows written by an export before it is cut short with a note
+    public static final int MAX_ROWS = Integer.getInteger("export.pdf.maxRows", 10_000);
+
+    // Higher limit for background exports, which are meant for reports too big to wait for
+    public static final int BACKGROUND_MAX_ROWS = Integer.getInteger("export.pdf.backgroundMaxRows", 250_000);
+
+    // Scratch data kept in memory before PDFBox spills it to a temp file
+    private static final long MAX_MAIN_MEMORY_BYTES = Long.getLong("export.pdf.memoryBytes", 1024 * 1024L);
+
+    private static final float MARGIN = 50;
+    private static final float ROW_HEIGHT = 15;
+    private static final float LINE_GAP = 30;
+    private static final float HEADER_HEIGHT = 25;
+
+    private static final PDColor GRAY = new PDColor(new float[]{0.78f, 0.78f, 0.78f}, PDDeviceRGB.INSTANCE);
+    private static final PDColor BLACK = new PDColor(new float[]{0f, 0f, 0f}, PDDeviceRGB.INSTANCE);
+
+    private final PDDocument document;
+    private final String[] headers;
+    private final float[] columnWidths;
+    private final float fontSize;
+    private final float tableWidth;
+    private final float pageTop;
+
+    private PDPageContentStream content;
+    private float yPosition;
+    private boolean tableStarted = false;
+
+    public PdfTableWriter(String[] headers, float[] columnWidths, float fontSize) throws IOException {
+        this.document = new PDDocument(MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES));
+        this.headers = headers;
+        this.columnWidths = columnWidths;
+        this.fontSize = fontSize;
+
+        float width = 0;
+        for (float column : columnWidths) width += column;
+        this.tableWidth = width;
+        this.pageTop = PDRectangle.A4.getHeight() - MARGIN;
+
+        newPage();
+        yPosition = pageTop;
+    }
+
+    /**
+     * Large bold heading at the top of the first page
+     */
+    public void title(String text) throws IOException {
+        line(text, PDType1Font.HELVETICA_BOLD, 16);
+    }
+
+    /**
+     * Line of italic text, e.g. the filters applied. Before the table starts it goes above the
+     * table header; afterwards it follows the last row.
+     */
+    public void note(String text) throws IOException {
+        if (tableStarted) {
+            ensureRoom(LINE_GAP);
+        }
+        line(text, PDType1Font.HELVETICA_OBLIQUE, 10);
+    }
+
+    /**
+     * Draws one table row, starting a new page (with the header repeated) when the page is full
+     */
+    public void row(String... cells) throws IOException {
+        if (!tableStarted) {
+            startTable();
+        }
+        if (yPosition < MARGIN + 50) {
+            newPage();
+            yPosition = pageTop - 60;
+            drawHeader();
+        }
+
+        float x = MARGIN + 5;
+        for (int i = 0; i < cells.length && i < columnWidths.length; i++) {
+            content.beginText();
+            content.newLineAtOffset(x, yPosition);
+            content.showText(cells[i]);
+            content.endText();
+            x += columnWidths[i];
+        }
+        yPosition -= ROW_HEIGHT;
+    }
+
+    /**
+     * Draws the table header now, even if no rows follow
+     */
+    public void startTable() throws IOException {
+        if (tableStarted) return;
+        tableStarted = true;
+        drawHeader();
+    }
+
+    /**
+     * Bold closing line below the table, e.g. the record count
+     */
+    public void summary(String text) throws IOException {
+        ensureRoom(20 + LINE_GAP);
+        yPosition -= 20;
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA_BOLD, 10);
+        content.newLineAtOffset(MARGIN, yPosition);
+        content.showText(text);
+        content.endText();
+        content.setFont(PDType1Font.HELVETICA, fontSize);
+    }
+
+    /**
+     * Finishes the last page and writes the whole document to the stream
+     */
+    public void save(OutputStream out) throws IOException {
+        closeContent();
+        document.save(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeContent();
+        } finally {
+            // Also removes the scratch file
+            document.close();
+        }
+    }
+
+    /**
+     * Truncates text longer than maxLength and adds an ellipsis, as the table columns are narrow
+     */
+    public static String clip(String text, int maxLength) {
+        if (text == null) return "";
+        return text.length() > maxLength ? text.substring(0, maxLength) + "..." : text;
+    }
+
+    private void line(String text, PDType1Font font, float size) throws IOException {
+        content.beginText();
+        content.setFont(font, size);
+        content.newLineAtOffset(MARGIN, yPosition);
+        content.showText(text);
+        content.endText();
+        yPosition -= LINE_GAP;
+    }
+
+    private void drawHeader() throws IOException {
+        content.setNonStrokingColor(GRAY);
+        content.addRect(MARGIN, yPosition - 15, tableWidth, 20);
+        content.fill();
+        content.setNonStrokingColor(BLACK);
+
+        content.setFont(PDType1Font.HELVETICA_BOLD, 10);
+        float x = MARGIN + 5;
+        for (int i = 0; i < headers.length; i++) {
+            content.beginText();
+            content.newLineAtOffset(x, yPosition - 10);
+            content.showText(headers[i]);
+            content.endText();
+            x += columnWidths[i];
+        }
+        yPosition -= HEADER_HEIGHT;
+        content.setFont(PDType1Font.HELVETICA, fontSize);
+    }
+
+    /**
+     * Moves to a fresh page when fewer than height points are left above the bottom margin
+     */
+    private void ensureRoom(float height) throws IOException {
+        if (yPosition - height < MARGIN) {
+            newPage();
+            yPosition = pageTop - 60;
+        }
+    }
+
+    private void newPage() throws IOException {
+        // Closing the previous page's stream hands its content to the scratch file
+        closeContent();
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+        content = new PDPageContentStream(document, page);
+        content.setFont(PDType1Font.HELVETICA, fontSize);
+        content.setNonStrokingColor(BLACK);
+    }
+
+    private void closeContent() throws IOException {
+        if (content != null) {
+            content.close();
+            content = null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package app;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Builds a parameterised SQL statement from a base query plus the optional filters a page supplies.
+ * <p>
+ * Filters are only appended when a value is present and always in the order the caller adds them,
+ * so the same combination of filters always produces the same SQL text - the query "shape".
+ * The connection pool caches one prepared statement per shape, and filter values are bound as
+ * parameters rather than concatenated into the SQL.
+ */
+public class QueryShape {
+
+    private final String name;
+    private final StringBuilder sql;
+    private final ArrayList<Object> params = new ArrayList<>();
+    private final StringJoiner filters = new StringJoiner(",");
+
+    public QueryShape(String name, String baseSql) {
+        this.name = name;
+        this.sql = new StringBuilder(baseSql);
+    }
+
+    /**
+     * Binds a value for a placeholder that is always part of the query
+     */
+    public QueryShape param(Object value) {
+        params.add(value);
+        return this;
+    }
+
+    /**
+     * Appends fixed SQL such as a JOIN, GROUP BY or ORDER BY clause
+     */
+    public QueryShape append(String text) {
+        sql.append(text);
+        return this;
+    }
+
+    /**
+     * Adds "AND clause" with the trimmed value bound to its placeholder, if a value was given
+     */
+    public QueryShape filter(String filterName, String clause, String value) {
+        if (isPresent(value)) {
+            sql.append(" AND ").append(clause);
+            params.add(value.trim());
+            filters.add(filterName);
+        }
+        return this;
+    }
+
+    /**
+     * Same as filter() but binds the year with {@link #yearParam(String)}, so SQLite compares
+     * numbers with numbers and a year that is not a number matches no rows
+     */
+    public QueryShape yearFilter(String filterName, String clause, String value) {
+        if (isPresent(value)) {
+            sql.append(" AND ").append(clause);
+            params.add(yearParam(value));
+            filters.add(filterName);
+        }
+        return this;
+    }
+
+    /**
+     * Name of the query, usually the method that runs it
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Identifies the shape for statistics, e.g. "getVaccinationData[country,yearStart]"
+     */
+    public String getKey() {
+        return name + "[" + filters + "]";
+    }
+
+    public String getSql() {
+        return sql.toString();
+    }
+
+    public List<Object> getParams() {
+        return Collections.unmodifiableList(params);
+    }
+
+    /**
+     * Binds every collected parameter to the statement in order
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Returns the year as an Integer when it is numeric, otherwise null - also for a missing
+     * year, which then matches no rows. Binding the text instead
+     * would not filter anything out: SQLite orders every INTEGER before any TEXT, so
+     * {@code year <= 'abc'} holds for every row. A NULL comparison holds for none.
+     */
+    public static Integer yearParam(String value) {
+        if (value == null) return null;
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
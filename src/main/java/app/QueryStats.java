@@ -0,0 +1,290 @@
+package app;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Times the statements JDBCConnection runs, per query shape, in four phases: waiting for a
+ * pooled connection, preparing the statement (or finding it in the cache), executing it and
+ * reading the rows into objects.
+ * <p>
+ * Shapes are keyed like the statement cache, e.g. "getVaccinationData[country,yearStart]", and
+ * keep their SQL with literals and whitespace normalised. Counters are LongAdders and latencies
+ * go into an HdrHistogram {@link Recorder} per shape, so timing a query takes no lock. SQLite
+ * works out rows as they are read, so a plain scan spends most of its time in the map phase
+ * while a sorted or grouped query spends it in execute.
+ * <p>
+ * A query slower than {@code -Ddb.slowQueryMs} (default 250) is logged to standard error with
+ * its phases, bound values and EXPLAIN QUERY PLAN, and kept among the latest slow queries for
+ * /admin/queries. The plan is read again at most once a minute per shape.
+ */
+public class QueryStats {
+
+    private static final long SLOW_QUERY_MS = Long.getLong("db.slowQueryMs", 250L);
+    private static final int SLOW_QUERIES_KEPT = 50;
+    private static final long PLAN_REFRESH_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    // Latencies are kept in microseconds, to two significant digits (1%), up to an hour
+    private static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int DIGITS = 2;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public enum Phase { CONNECT, PREPARE, EXECUTE, MAP }
+
+    /**
+     * Reads the query plan of a slow query, on the connection it ran on
+     */
+    interface PlanReader {
+        List<String> read() throws SQLException;
+    }
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    // Latest slow queries, newest first - only touched while holding the deque
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Starts timing a query - call before borrowing its connection
+     */
+    public Timer start(QueryShape shape) {
+        Shape stats = shapes.computeIfAbsent(shape.getKey(), key -> new Shape(key, shape.getName(), normalise(shape.getSql())));
+        return new Timer(stats, shape.getParams());
+    }
+
+    public static long getSlowQueryMillis() {
+        return SLOW_QUERY_MS;
+    }
+
+    /**
+     * Every shape timed so far
+     */
+    public List<Shape> getShapes() {
+        return new ArrayList<>(shapes.values());
+    }
+
+    /**
+     * The latest slow queries, newest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    /**
+     * SQL on one line with string and number literals replaced by "?", so queries that differ only
+     * in their values read the same
+     */
+    static String normalise(String sql) {
+        String text = STRING_LITERAL.matcher(sql).replaceAll("?");
+        text = NUMBER_LITERAL.matcher(text).replaceAll("?");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private void logSlow(Shape shape, List<Object> params, long[] phases, long nanos, PlanReader planReader) {
+        List<String> plan = shape.plan(planReader);
+        SlowQuery slow = new SlowQuery(LocalDateTime.now().format(TIME), shape, params, phases, nanos, plan);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(slow);
+            if (slowQueries.size() > SLOW_QUERIES_KEPT) slowQueries.removeLast();
+        }
+        System.err.println(slow);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Times one run of a query. Mark each phase as it ends, then finish once the rows are read;
+     * a query that fails part way is not recorded.
+     */
+    public final class Timer {
+        private final Shape shape;
+        private final List<Object> params;
+        private final long[] phases = new long[Phase.values().length];
+        private final long start = System.nanoTime();
+        private long last = start;
+
+        private Timer(Shape shape, List<Object> params) {
+            this.shape = shape;
+            this.params = params;
+        }
+
+        public void connected() {
+            mark(Phase.CONNECT);
+        }
+
+        public void prepared() {
+            mark(Phase.PREPARE);
+        }
+
+        public void executed() {
+            mark(Phase.EXECUTE);
+        }
+
+        /**
+         * Ends the map phase and records the query, logging it with its plan if it was slow
+         */
+        void finish(PlanReader planReader) {
+            mark(Phase.MAP);
+            long nanos = last - start;
+            shape.record(phases, nanos);
+            if (nanos >= TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_MS)) {
+                logSlow(shape, params, phases, nanos, planReader);
+            }
+        }
+
+        private void mark(Phase phase) {
+            long now = System.nanoTime();
+            phases[phase.ordinal()] += now - last;
+            last = now;
+        }
+    }
+
+    /**
+     * Running figures for one query shape
+     */
+    public static final class Shape {
+        private final String key;
+        private final String method;
+        private final String sql;
+
+        private final Recorder recorder = new Recorder(HIGHEST_MICROS, DIGITS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        // Everything recorded so far - only touched under the lock
+        private final Histogram latencies = new Histogram(HIGHEST_MICROS, DIGITS);
+        private Histogram interval;
+
+        // Last plan read for a slow run of this shape, and when
+        private volatile List<String> plan;
+        private volatile long planRead;
+
+        private Shape(String key, String method, String sql) {
+            this.key = key;
+            this.method = method;
+            this.sql = sql;
+            for (int i = 0; i < phaseNanos.length; i++) phaseNanos[i] = new LongAdder();
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Name of the JDBCConnection method the query belongs to
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getTotalMillis() {
+            return millis(totalNanos.sum());
+        }
+
+        public double getMaxMillis() {
+            return millis(maxNanos.get());
+        }
+
+        public double getPhaseMillis(Phase phase) {
+            return millis(phaseNanos[phase.ordinal()].sum());
+        }
+
+        /**
+         * Copy of every latency recorded so far, in microseconds
+         */
+        public synchronized Histogram getLatencies() {
+            interval = recorder.getIntervalHistogram(interval);
+            latencies.add(interval);
+            return latencies.copy();
+        }
+
+        private void record(long[] phases, long nanos) {
+            recorder.recordValue(Math.min(Math.max(nanos / 1_000, 0), HIGHEST_MICROS));
+            count.increment();
+            totalNanos.add(nanos);
+            for (int i = 0; i < phases.length; i++) phaseNanos[i].add(phases[i]);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        // A slow shape tends to stay slow, so its plan is only read again once it may have changed
+        private List<String> plan(PlanReader planReader) {
+            long now = System.nanoTime();
+            List<String> current = plan;
+            if (current != null && now - planRead < PLAN_REFRESH_NANOS) return current;
+            try {
+                current = Collections.unmodifiableList(new ArrayList<>(planReader.read()));
+            } catch (SQLException e) {
+                return List.of("EXPLAIN QUERY PLAN failed: " + e.getMessage());
+            }
+            plan = current;
+            planRead = now;
+            return current;
+        }
+    }
+
+    /**
+     * One query that took longer than the threshold
+     */
+    public static final class SlowQuery {
+        private final String time;
+        private final Shape shape;
+        private final List<Object> params;
+        private final long[] phases;
+        private final long nanos;
+        private final List<String> plan;
+
+        private SlowQuery(String time, Shape shape, List<Object> params, long[] phases, long nanos, List<String> plan) {
+            this.time = time;
+            this.shape = shape;
+            this.params = params;
+            this.phases = phases;
+            this.nanos = nanos;
+            this.plan = plan;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder()
+                .append("Slow query at ").append(time).append(": ").append(shape.key)
+                .append(String.format(" took %.3f ms (connect %.3f, prepare %.3f, execute %.3f, map %.3f) params %s",
+                    millis(nanos), millis(phases[0]), millis(phases[1]), millis(phases[2]), millis(phases[3]), params))
+                .append("\n  sql ").append(shape.sql);
+            for (String line : plan) {
+                text.append("\n  plan ").append(line);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+/**
+ * Counts and times every request, per route.
+ * <p>
+ * A before handler works out which registered route the request is for and counts it as in
+ * flight; an after handler records its latency and status code. Latencies go into an
+ * HdrHistogram {@link Recorder} per route, which request threads write to without taking a
+ * lock; readers swap its interval out and add it to the route's running histogram. Counters
+ * are LongAdders, so busy routes do not contend on one value either.
+ * <p>
+ * Routes are labelled by their registered path, so "/export/jobs/:id" is one route however
+ * many jobs there are. Requests that match no route - static files and 404s - share "other".
+ */
+public class RequestMetrics {
+
+    // Latencies are kept in microseconds, to two significant digits (1%), up to an hour
+    private static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int DIGITS = 2;
+
+    private static final String ROUTE_ATTRIBUTE = "metrics.route";
+    private static final String START_ATTRIBUTE = "metrics.start";
+
+    // Registered routes without path parameters, by "METHOD path"
+    private final Map<String, Route> exact = new ConcurrentHashMap<>();
+    // Routes with path parameters, matched segment by segment
+    private final List<Route> patterns = new CopyOnWriteArrayList<>();
+    private final Route other = new Route("*", "other");
+
+    /**
+     * Adds the before and after handlers and starts listening for routes. Call before the
+     * routes are added so each gets its own entry.
+     */
+    public void install(Javalin app) {
+        app.events(events -> events.handlerAdded(handler -> {
+            if (handler.getHttpMethod().isHttpMethod()) add(handler.getHttpMethod().name(), handler.getPath());
+        }));
+        app.before(this::begin);
+        app.after(this::end);
+    }
+
+    /**
+     * Every route seen so far, ordered by path and method, with "other" last
+     */
+    public List<Route> getRoutes() {
+        TreeMap<String, Route> sorted = new TreeMap<>();
+        for (Route route : exact.values()) sorted.put(route.path + " " + route.method, route);
+        for (Route route : patterns) sorted.put(route.path + " " + route.method, route);
+        List<Route> routes = new ArrayList<>(sorted.values());
+        routes.add(other);
+        return routes;
+    }
+
+    private void add(String method, String path) {
+        Route route = new Route(method, normalise(path));
+        if (path.contains(":") || path.contains("*")) {
+            patterns.add(route);
+        } else {
+            exact.putIfAbsent(method + " " + route.path, route);
+        }
+    }
+
+    /**
+     * Route the request was counted under, or null if the request did not pass the before handler
+     */
+    static Route routeOf(Context context) {
+        return context.attribute(ROUTE_ATTRIBUTE);
+    }
+
+    private void begin(Context context) {
+        Route route = resolve(context.method(), normalise(context.path()));
+        route.inFlight.increment();
+        context.attribute(ROUTE_ATTRIBUTE, route);
+        context.attribute(START_ATTRIBUTE, System.nanoTime());
+    }
+
+    private void end(Context context) {
+        Route route = context.attribute(ROUTE_ATTRIBUTE);
+        Long start = context.attribute(START_ATTRIBUTE);
+        if (route == null || start == null) return;
+        route.finish(System.nanoTime() - start, context.status());
+    }
+
+    private Route resolve(String method, String path) {
+        Route route = exact.get(method + " " + path);
+        if (route != null) return route;
+        for (Route pattern : patterns) {
+            if (pattern.method.equals(method) && pattern.matches(path)) return pattern;
+        }
+        return other;
+    }
+
+    // Javalin ignores trailing slashes, so "/trending/" is the same route as "/trending"
+    private static String normalise(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * Figures for one method and path
+     */
+    public static final class Route {
+        private final String method;
+        private final String path;
+        private final String[] segments;
+
+        private final Recorder recorder = new Recorder(HIGHEST_MICROS, DIGITS);
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        // Everything recorded so far - only touched under the lock
+        private final Histogram latencies = new Histogram(HIGHEST_MICROS, DIGITS);
+        private Histogram interval;
+
+        private Route(String method, String path) {
+            this.method = method;
+            this.path = path;
+            this.segments = path.split("/");
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * Time spent on finished requests, in seconds
+         */
+        public double getTotalSeconds() {
+            return totalNanos.sum() / 1e9;
+        }
+
+        /**
+         * Finished requests by status code
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            TreeMap<Integer, Long> counts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return counts;
+        }
+
+        /**
+         * Copy of every latency recorded so far, in microseconds
+         */
+        public synchronized Histogram getLatencies() {
+            interval = recorder.getIntervalHistogram(interval);
+            latencies.add(interval);
+            return latencies.copy();
+        }
+
+        private void finish(long nanos, int status) {
+            recorder.recordValue(Math.min(Math.max(nanos / 1_000, 0), HIGHEST_MICROS));
+            totalNanos.add(nanos);
+            statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+            inFlight.decrement();
+        }
+
+        private boolean matches(String requestPath) {
+            String[] parts = requestPath.split("/");
+            if (parts.length != segments.length) return false;
+            for (int i = 0; i < parts.length; i++) {
+                if (segments[i].startsWith(":") || segments[i].equals("*")) continue;
+                if (!segments[i].equals(parts[i])) return false;
+            }
+            return true;
+        }
+    }
+}
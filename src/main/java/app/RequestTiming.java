@@ -0,0 +1,243 @@
+package app;
+
+import java.util.Locale;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.server.Response;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Splits each request into phases - filter load, data query, model building, JSON serialisation
+ * and template render - and reports them as a {@code Server-Timing} header and as JDK Flight
+ * Recorder events.
+ * <p>
+ * Handlers call {@link #mark(Context, Phase)} as each phase ends; the time since the previous
+ * mark (or since the request started) is charged to that phase, so a phase marked twice adds up.
+ * Each mark commits an {@code app.RequestPhase} event covering the phase, and the after handler
+ * commits one {@code app.Request} event holding the whole breakdown, labelled with the route
+ * from {@link RequestMetrics}. Neither costs more than an allocation while no recording is running:
+ * <pre>
+ *   java -XX:StartFlightRecording=filename=app.jfr,settings=profile -jar ...
+ * </pre>
+ * The header is added by the after handler. Handlers that stream their body call
+ * {@link #streaming(Context, Phase)} first instead, and the timings follow the body as a trailer.
+ * {@code -Dhttp.serverTiming=false} leaves the header out; the events are still recorded.
+ */
+public class RequestTiming {
+
+    private static final boolean SERVER_TIMING = Boolean.parseBoolean(System.getProperty("http.serverTiming", "true"));
+
+    private static final String ATTRIBUTE = "timing.request";
+
+    public enum Phase {
+        FILTERS("filters", "Filter load"),
+        QUERY("query", "Data query"),
+        MODEL("model", "Model building"),
+        JSON("json", "JSON serialisation"),
+        RENDER("render", "Template render");
+
+        private final String metric;
+        private final String description;
+
+        Phase(String metric, String description) {
+            this.metric = metric;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Adds the before and after handlers. Call after {@link RequestMetrics#install(Javalin)} so
+     * the route is known when the request starts.
+     */
+    public static void install(Javalin app) {
+        app.before(RequestTiming::begin);
+        app.after(RequestTiming::end);
+    }
+
+    /**
+     * Ends a phase: the time since the last mark is charged to it
+     */
+    public static void mark(Context context, Phase phase) {
+        Timing timing = context.attribute(ATTRIBUTE);
+        if (timing != null) timing.mark(phase);
+    }
+
+    /**
+     * Call before a handler writes its body straight to the response. Everything from here until
+     * the body is complete is charged to the phase, and the timings are sent as an HTTP trailer,
+     * since the headers have gone by then. Clients that ignore trailers still see the events.
+     */
+    public static void streaming(Context context, Phase phase) {
+        Timing timing = context.attribute(ATTRIBUTE);
+        if (timing == null || !SERVER_TIMING) return;
+        Response response = jettyResponse(context.res);
+        if (response == null || response.isCommitted()) return;
+
+        context.header("Trailer", "Server-Timing");
+        response.setTrailers(() -> {
+            timing.mark(phase);
+            HttpFields trailers = new HttpFields();
+            trailers.put("Server-Timing", timing.serverTiming(System.nanoTime()));
+            return trailers;
+        });
+    }
+
+    private static void begin(Context context) {
+        Timing timing = new Timing(RequestMetrics.routeOf(context));
+        context.attribute(ATTRIBUTE, timing);
+    }
+
+    private static void end(Context context) {
+        Timing timing = context.attribute(ATTRIBUTE);
+        if (timing == null) return;
+        long now = System.nanoTime();
+        if (SERVER_TIMING && !context.res.isCommitted()) {
+            context.header("Server-Timing", timing.serverTiming(now));
+        }
+        timing.commit(context, now);
+    }
+
+    // Javalin hands out Jetty's own response, but filters may have wrapped it
+    private static Response jettyResponse(ServletResponse response) {
+        while (response instanceof ServletResponseWrapper) {
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+        return response instanceof Response ? (Response) response : null;
+    }
+
+    /**
+     * Phases of one request so far - only touched by the thread handling it
+     */
+    private static final class Timing {
+        private final RequestMetrics.Route route;
+        private final long start = System.nanoTime();
+        private final long[] nanos = new long[Phase.values().length];
+        private final boolean[] marked = new boolean[Phase.values().length];
+        private long last = start;
+
+        // Begun at the last mark, so it covers the phase the next mark ends
+        private PhaseEvent event = new PhaseEvent();
+        private final RequestEvent request = new RequestEvent();
+
+        private Timing(RequestMetrics.Route route) {
+            this.route = route;
+            request.begin();
+            event.begin();
+        }
+
+        private void mark(Phase phase) {
+            long now = System.nanoTime();
+            nanos[phase.ordinal()] += now - last;
+            marked[phase.ordinal()] = true;
+            last = now;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = route != null ? route.getMethod() : null;
+                event.route = route != null ? route.getPath() : null;
+                event.phase = phase.description;
+                event.commit();
+            }
+            event = new PhaseEvent();
+            event.begin();
+        }
+
+        private String serverTiming(long now) {
+            StringBuilder value = new StringBuilder();
+            for (Phase phase : Phase.values()) {
+                if (!marked[phase.ordinal()]) continue;
+                value.append(phase.metric).append(";desc=\"").append(phase.description).append("\";dur=")
+                    .append(millis(nanos[phase.ordinal()])).append(", ");
+            }
+            return value.append("total;dur=").append(millis(now - start)).toString();
+        }
+
+        private void commit(Context context, long now) {
+            request.end();
+            if (!request.shouldCommit()) return;
+            request.method = context.method();
+            request.route = route != null ? route.getPath() : null;
+            request.path = context.path();
+            request.status = context.status();
+            request.filterLoad = nanos[Phase.FILTERS.ordinal()];
+            request.dataQuery = nanos[Phase.QUERY.ordinal()];
+            request.modelBuilding = nanos[Phase.MODEL.ordinal()];
+            request.jsonSerialisation = nanos[Phase.JSON.ordinal()];
+            request.templateRender = nanos[Phase.RENDER.ordinal()];
+            request.total = now - start;
+            request.commit();
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+        }
+    }
+
+    @Name("app.RequestPhase")
+    @Label("Request Phase")
+    @Category({ "Application", "HTTP" })
+    @Description("One phase of handling a request")
+    public static final class PhaseEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Route")
+        String route;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("app.Request")
+    @Label("Request")
+    @Category({ "Application", "HTTP" })
+    @Description("A finished request with the time spent in each phase")
+    public static final class RequestEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Route")
+        String route;
+
+        @Label("Path")
+        String path;
+
+        @Label("Status")
+        int status;
+
+        @Label("Filter Load")
+        @Timespan(Timespan.NANOSECONDS)
+        long filterLoad;
+
+        @Label("Data Query")
+        @Timespan(Timespan.NANOSECONDS)
+        long dataQuery;
+
+        @Label("Model Building")
+        @Timespan(Timespan.NANOSECONDS)
+        long modelBuilding;
+
+        @Label("JSON Serialisation")
+        @Timespan(Timespan.NANOSECONDS)
+        long jsonSerialisation;
+
+        @Label("Template Render")
+        @Timespan(Timespan.NANOSECONDS)
+        long templateRender;
+
+        @Label("Total")
+        @Timespan(Timespan.NANOSECONDS)
+        long total;
+    }
+}
@@ -0,0 +1,217 @@
+package app;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least-recently-used cache of query results, shared by the filtered query methods in
+ * JDBCConnection.
+ * <p>
+ * Entries are keyed by the method name plus its filter values, normalised so that requests
+ * which select the same rows share one entry. Each entry is weighed by its row count times an
+ * estimated row size, and the least recently used entries are evicted once the total passes
+ * {@code cache.results.maxBytes}. Each entry remembers the version of the data it was loaded
+ * from and is dropped when looked up under a newer one; JDBCConnection also drops a method's
+ * entries as soon as the tables behind it change, so other methods keep theirs.
+ * <p>
+ * Concurrent misses on the same key share one load through {@link SingleFlight}, so a burst of
+ * identical requests runs the query once and every caller receives that one result.
+ * <p>
+ * Lists are cached as loaded and each caller gets its own copy of the list, so callers may
+ * reorder or trim what they get back without affecting the cache. The rows themselves are
+ * shared and must not be modified.
+ */
+public class ResultCache {
+
+    // Memory budget for cached rows - override with -Dcache.results.maxBytes=N, 0 disables the cache
+    private static final long MAX_BYTES = Long.getLong("cache.results.maxBytes", 16L * 1024 * 1024);
+
+    // Rough per-entry cost on top of the rows: map entry, key string and list header
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    /**
+     * Loads a result on a cache miss
+     */
+    public interface Loader<T> {
+        ArrayList<T> load() throws SQLException;
+    }
+
+    private final long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesUsed;
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // Loads in progress, keyed by cache key and data version
+    private final SingleFlight loads = new SingleFlight();
+
+    public ResultCache() {
+        this(MAX_BYTES);
+    }
+
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Canonical key for a method and its filter values. Values are trimmed and blank ones
+     * treated as absent, matching how QueryShape applies filters.
+     */
+    public static String key(String method, String... filters) {
+        StringBuilder key = new StringBuilder(method);
+        for (String filter : filters) {
+            key.append('\u0000');
+            if (filter != null) key.append(filter.trim());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a copy of the cached result for the key, loading and caching it first on a miss.
+     * A loader that throws caches nothing, so a failed query is retried on the next request.
+     * Callers missing on a key that is already being loaded wait for that load.
+     */
+    public <T> ArrayList<T> get(String key, long dataVersion, int bytesPerRow, Loader<T> loader) throws SQLException {
+        ArrayList<?> cached = lookup(key, dataVersion);
+        if (cached != null) {
+            hits.increment();
+            @SuppressWarnings("unchecked")
+            ArrayList<T> rows = new ArrayList<>((ArrayList<T>) cached);
+            return rows;
+        }
+
+        misses.increment();
+        ArrayList<T> rows = loads.execute(key + '\u0000' + dataVersion, () -> {
+            ArrayList<T> loaded = loader.load();
+            store(key, dataVersion, loaded, ENTRY_OVERHEAD_BYTES + 2L * key.length() + (long) bytesPerRow * loaded.size());
+            return loaded;
+        });
+        return new ArrayList<>(rows);
+    }
+
+    /**
+     * Drops the entries of one method, whose data has changed
+     */
+    public synchronized void invalidate(String method) {
+        String prefix = method + '\u0000';
+        boolean removed = false;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                bytesUsed -= entry.getValue().bytes;
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (removed) invalidations.increment();
+    }
+
+    /**
+     * Drops every entry - used by the admin refresh endpoint
+     */
+    public synchronized void clear() {
+        if (!entries.isEmpty()) invalidations.increment();
+        entries.clear();
+        bytesUsed = 0;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Share of lookups answered from the cache, between 0 and 1
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Misses that waited for another caller's load of the same key instead of querying
+     */
+    public long getCoalescedCount() {
+        return loads.getSharedCount();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Times entries were dropped because their data changed or an operator asked
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public synchronized long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized ArrayList<?> lookup(String key, long dataVersion) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.version != dataVersion) {
+            // Loaded from data that has changed since
+            entries.remove(key);
+            bytesUsed -= entry.bytes;
+            invalidations.increment();
+            return null;
+        }
+        return entry.rows;
+    }
+
+    private synchronized void store(String key, long dataVersion, ArrayList<?> rows, long bytes) {
+        // A result too big to ever fit is not worth keeping, nor one older than what is cached
+        Entry previous = entries.get(key);
+        if (bytes > maxBytes || (previous != null && previous.version > dataVersion)) return;
+
+        entries.put(key, new Entry(rows, bytes, dataVersion));
+        if (previous != null) bytesUsed -= previous.bytes;
+        bytesUsed += bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytesUsed > maxBytes && eldest.hasNext()) {
+            bytesUsed -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+        private final ArrayList<?> rows;
+        private final long bytes;
+        private final long version;
+
+        private Entry(ArrayList<?> rows, long bytes, long version) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.version = version;
+        }
+    }
+}
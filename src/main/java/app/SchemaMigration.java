@@ -0,0 +1,103 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the who.db schema up to date at startup.
+ * <p>
+ * The shipped database only has the indexes SQLite creates for primary keys and UNIQUE columns,
+ * which lead with inf_type and so cannot serve the year ranges and country joins the pages run.
+ * Each step adds indexes shaped after those queries; the schema version is kept in
+ * {@code PRAGMA user_version} so a step is only applied once. ANALYZE is run after any step, or
+ * whenever the planner statistics are missing, so SQLite knows which index is selective.
+ */
+public class SchemaMigration {
+
+    // Index statements per schema version - steps[0] takes the database from version 0 to 1
+    private static final String[][] STEPS = {
+        {
+            // getVaccinationImprovements, getVaccinationCoverage, getRegions, getEconomySnapshot:
+            // join on country and read coverage per year without touching the table
+            "CREATE INDEX IF NOT EXISTS idx_vaccination_country_year ON Vaccination (country, year, coverage)",
+            // getVaccinationData: year ranges in year order, optionally narrowed by antigen
+            "CREATE INDEX IF NOT EXISTS idx_vaccination_year_antigen ON Vaccination (year, antigen)",
+            // getInfectionData, getInfectionDataByEconomicStatus: reached per country through the
+            // Country join, with the year range and cases read from the index
+            "CREATE INDEX IF NOT EXISTS idx_infection_country_year ON InfectionData (country, year, inf_type, cases)",
+            // Countries by region and economic status
+            "CREATE INDEX IF NOT EXISTS idx_country_region ON Country (region)",
+            "CREATE INDEX IF NOT EXISTS idx_country_economy ON Country (economy)",
+            // getAllFeedback: newest first
+            "CREATE INDEX IF NOT EXISTS idx_feedback_submitted_at ON Feedback (submitted_at)"
+        }
+    };
+
+    private final Connection connection;
+
+    public SchemaMigration(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * The schema version this code expects
+     */
+    public static int getTargetVersion() {
+        return STEPS.length;
+    }
+
+    /**
+     * Applies every step newer than the database's version, each in its own transaction, then
+     * refreshes planner statistics if anything changed or they were never gathered
+     */
+    public void migrate() throws SQLException {
+        int version = getVersion();
+        boolean changed = false;
+
+        for (int step = version; step < STEPS.length; step++) {
+            applyStep(step);
+            changed = true;
+        }
+
+        if (changed || !hasStatistics()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE");
+            }
+        }
+    }
+
+    private void applyStep(int step) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : STEPS[step]) {
+                statement.execute(sql);
+            }
+            // PRAGMA values cannot be bound, but the version is our own integer
+            statement.execute("PRAGMA user_version = " + (step + 1));
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private int getVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private boolean hasStatistics() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                 "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'sqlite_stat1'")) {
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        }
+    }
+}
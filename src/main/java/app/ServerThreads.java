@@ -0,0 +1,124 @@
+package app;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import io.javalin.core.JavalinConfig;
+
+/**
+ * Chooses the threads Jetty runs requests on.
+ * <p>
+ * By default Javalin's own pool of platform threads is used, which caps the requests in progress
+ * at the pool's size even when most of them are only waiting on SQLite or PDF rendering. With
+ * {@code -Dserver.threads=virtual} every task Jetty runs gets its own virtual thread instead, so
+ * a blocked handler no longer holds one of a few hundred workers. Database work stays bounded
+ * by the connection pool, whose permits make extra requests wait for a connection.
+ * <p>
+ * Virtual threads need Java 21. The executor is looked up reflectively so the application still
+ * builds and runs on Java 17, where the virtual mode logs a warning and keeps the platform pool.
+ * <p>
+ * The virtual mode is experimental and unverified: it has not yet been measured against the
+ * platform pool. Expect less from it than the thread count suggests - sqlite-jdbc calls into
+ * native code and NativeDB's methods are synchronized, and both pin a virtual thread to its
+ * carrier for the length of each query. Compare the two with the load test before relying on it:
+ * <pre>
+ *   java -Dloadtest.clients=1000 -jar loadtest/target/loadtest.jar
+ *   java -Dloadtest.clients=1000 -Dloadtest.appJvmOptions=-Dserver.threads=virtual -jar loadtest/target/loadtest.jar
+ * </pre>
+ */
+public final class ServerThreads {
+
+    // "platform" (default) or "virtual"
+    private static final String MODE = System.getProperty("server.threads", "platform");
+
+    private ServerThreads() {
+    }
+
+    /**
+     * Applies the configured mode to the Javalin config before the server is created
+     */
+    public static void configure(JavalinConfig config) {
+        if (!"virtual".equals(MODE)) return;
+
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor == null) {
+            System.err.println("server.threads=virtual needs Java 21 or later (running " +
+                System.getProperty("java.version") + "), using platform threads");
+            return;
+        }
+        config.server(() -> new Server(new ExecutorThreadPool(executor)));
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() where the runtime has it, otherwise null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Could not create virtual thread executor: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Jetty thread pool backed by an executor that starts a new thread per task, so it never
+     * runs out of idle threads
+     */
+    private static final class ExecutorThreadPool extends AbstractLifeCycle implements ThreadPool {
+        private final ExecutorService executor;
+        private final AtomicInteger running = new AtomicInteger();
+
+        private ExecutorThreadPool(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(() -> {
+                running.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int getThreads() {
+            return running.get();
+        }
+
+        @Override
+        public int getIdleThreads() {
+            return 0;
+        }
+
+        @Override
+        public boolean isLowOnThreads() {
+            return false;
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+            executor.shutdownNow();
+            super.doStop();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets identical exports requested at the same time share one rendering.
+ * <p>
+ * The first request for a key renders the export as usual, streaming it to its own response,
+ * while a copy of every byte goes to a temp file. Requests for the same key that arrive before
+ * it finishes wait for the file and send it as it is, instead of reading the data and laying
+ * out the document again. The file is deleted once the last of them has been sent.
+ * <p>
+ * A request waits at most {@code export.shareWaitMs} for the first one to finish; after that it
+ * renders its own copy, so a stuck rendering never holds the others without an answer.
+ */
+public class SharedExports {
+
+    // Longest a request waits for an identical export before rendering its own
+    private static final long WAIT_MS = Long.getLong("export.shareWaitMs", 30_000L);
+
+    private final Map<String, Flight> inFlight = new HashMap<>();
+
+    // Metrics
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    /**
+     * Writes the export for the key to out, rendering it with the task unless an identical
+     * export is already being rendered
+     */
+    public void write(String key, OutputStream out, ExportJobs.ExportTask task) throws Exception {
+        Flight flight;
+        boolean leader;
+        synchronized (inFlight) {
+            flight = inFlight.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight();
+                inFlight.put(key, flight);
+            }
+            flight.readers++;
+        }
+
+        try {
+            if (leader) {
+                render(key, flight, out, task);
+            } else {
+                File file = flight.await();
+                if (file != null) {
+                    shared.increment();
+                    Files.copy(file.toPath(), out);
+                } else {
+                    waitTimeouts.increment();
+                    renders.increment();
+                    task.writeTo(out);
+                }
+                out.flush();
+            }
+        } finally {
+            release(flight);
+        }
+    }
+
+    /**
+     * Exports actually rendered
+     */
+    public long getRenderCount() {
+        return renders.sum();
+    }
+
+    /**
+     * Exports sent from another request's rendering
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * Requests that gave up waiting for an identical export and rendered their own
+     */
+    public long getWaitTimeoutCount() {
+        return waitTimeouts.sum();
+    }
+
+    private void render(String key, Flight flight, OutputStream out, ExportJobs.ExportTask task) throws Exception {
+        renders.increment();
+        try {
+            File file = ExportFiles.create();
+            flight.file = file;
+
+            Tee tee;
+            try (OutputStream copy = new BufferedOutputStream(new FileOutputStream(file))) {
+                tee = new Tee(out, copy);
+                task.writeTo(tee);
+                tee.flush();
+            }
+            flight.done.complete(file);
+
+            // The waiting requests are served either way, but this one still failed
+            if (tee.failure != null) throw tee.failure;
+        } catch (Exception | Error e) {
+            flight.done.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    private void release(Flight flight) {
+        File file;
+        synchronized (inFlight) {
+            // The renderer leaves the map before it lets go, so the last reader out cleans up
+            if (--flight.readers > 0) return;
+            file = flight.file;
+        }
+        if (file != null && !file.delete() && file.exists()) {
+            System.err.println("Could not delete export file " + file);
+        }
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<File> done = new CompletableFuture<>();
+        private volatile File file;
+        private int readers;
+
+        /**
+         * The rendered file, or null if it is not ready within the wait limit
+         */
+        private File await() throws Exception {
+            try {
+                return done.get(WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Sends everything written to both the response and the file copy. If the response fails
+     * (typically the client went away) rendering carries on into the file for the requests
+     * waiting on it, and the failure is reported at the end.
+     */
+    private static final class Tee extends OutputStream {
+        private final OutputStream response;
+        private final OutputStream copy;
+        private IOException failure;
+
+        private Tee(OutputStream response, OutputStream copy) {
+            this.response = response;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            copy.write(b);
+            if (failure == null) {
+                try {
+                    response.write(b);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            copy.write(bytes, offset, length);
+            if (failure == null) {
+                try {
+                    response.write(bytes, offset, length);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            copy.flush();
+            if (failure == null) {
+                try {
+                    response.flush();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The file copy is closed by its owner once rendering returns
+            flush();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package app;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs at most one call per key at a time. A caller arriving while the same key is already
+ * being loaded waits for that call and receives its result (or its exception) instead of
+ * running the query again.
+ * <p>
+ * The result object is shared between every caller of the flight, so it must not be modified;
+ * the key is forgotten as soon as the call finishes, so a later caller starts a fresh call.
+ */
+public class SingleFlight {
+
+    /**
+     * The work behind one key
+     */
+    public interface Call<V> {
+        V call() throws SQLException;
+    }
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public <V> V execute(String key, Call<V> call) throws SQLException {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Calls actually run
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * Callers that joined a call already in progress instead of running their own
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V await(CompletableFuture<Object> flight) throws SQLException {
+        try {
+            return (V) flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SQLException(cause);
+        }
+    }
+}
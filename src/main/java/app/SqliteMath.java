@@ -0,0 +1,151 @@
+package app;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic helpers that reproduce SQLite's ROUND results exactly, so figures computed from
+ * in-memory data match what the equivalent SQL query returned to the pages.
+ */
+final class SqliteMath {
+
+    // SQLite formats and parses numbers in long double, which on x86-64 keeps 64 significant bits
+    private static final int LONG_DOUBLE_BITS = 64;
+    private static final int DOUBLE_BITS = 53;
+
+    // "%.2f" prints at most this many significant digits and zeros after them
+    private static final int SIGNIFICANT_DIGITS = 16;
+
+    private static final BigDecimal NUDGE = new BigDecimal(3e-16);
+    private static final double HALF_CENT = 5.0e-3;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final MathContext EXACT_ENOUGH = new MathContext(80);
+
+    // Beyond this magnitude a double has no fraction, and ROUND returns it as it is
+    private static final double WHOLE_LIMIT = 0x1p52;
+
+    // Below this magnitude a value's cents are exact to well under FAST_MARGIN in a double
+    private static final double FAST_LIMIT = 1e6;
+
+    // Distance in cents from a rounding boundary beyond which the double arithmetic cannot tip the result
+    private static final double FAST_MARGIN = 1e-6;
+
+    private SqliteMath() {
+    }
+
+    /**
+     * ROUND(value, 2). SQLite prints the value with "%.2f", which nudges it up by 3e-16 of its
+     * magnitude before adding the half-cent rounder, then reads the text back - both in long double.
+     */
+    static double round2(double value) {
+        double magnitude = Math.abs(value);
+        if (magnitude > WHOLE_LIMIT) return value;
+        double rounded;
+
+        // Most values are nowhere near a half cent, and then plain double arithmetic gives the
+        // same cents; reading them back is a division by 100, correctly rounded unless the
+        // long double quotient sits right on a halfway point between two doubles
+        double shifted = magnitude * 100 + 0.5;
+        double cents = Math.floor(shifted);
+        if (magnitude < FAST_LIMIT && shifted - cents > FAST_MARGIN && cents + 1 - shifted > FAST_MARGIN) {
+            rounded = cents / 100;
+            if (nearHalfway(cents, rounded)) rounded = parse(BigDecimal.valueOf((long) cents));
+        } else {
+            rounded = print(magnitude);
+        }
+
+        // A small negative value prints as "-0.00", which SQLite reads back as negative zero
+        return value < 0 ? -rounded : rounded;
+    }
+
+    /**
+     * "%.2f" of a non-negative value read back as a double: the value plus the rounder, its
+     * digits taken one at a time, all in long double as SQLite's printf does
+     */
+    private static double print(double magnitude) {
+        BigDecimal real = new BigDecimal(magnitude);
+        double rounder = HALF_CENT;
+        if (2 + Math.getExponent(magnitude) / 3 < 15) {
+            BigDecimal nudged = new BigDecimal(rounder).add(longDouble(real.multiply(NUDGE)));
+            rounder = narrow(nudged, DOUBLE_BITS).doubleValue();
+        }
+        real = longDouble(real.add(new BigDecimal(rounder)));
+
+        // Scale into [1, 10), keeping the decimal exponent
+        int exponent = 0;
+        BigDecimal scale = BigDecimal.ONE;
+        while (real.compareTo(scale.multiply(BigDecimal.TEN)) >= 0) {
+            scale = scale.multiply(BigDecimal.TEN);
+            exponent++;
+        }
+        real = longDouble(real.divide(scale, EXACT_ENOUGH));
+        while (real.signum() > 0 && real.compareTo(BigDecimal.ONE) < 0) {
+            real = longDouble(real.multiply(BigDecimal.TEN));
+            exponent--;
+        }
+
+        // Whole digits then two decimals, as one number of cents
+        BigInteger cents = BigInteger.ZERO;
+        int significant = SIGNIFICANT_DIGITS;
+        for (int place = Math.max(exponent, 0); place >= -2; place--) {
+            int digit = 0;
+            if (place <= exponent && significant > 0) {
+                significant--;
+                digit = real.intValue();
+                real = longDouble(real.subtract(BigDecimal.valueOf(digit)).multiply(BigDecimal.TEN));
+            }
+            cents = cents.multiply(BigInteger.TEN).add(BigInteger.valueOf(digit));
+        }
+        return parse(new BigDecimal(cents));
+    }
+
+    /**
+     * Reads a number of cents back the way SQLite parses text: divided by 100 in long double,
+     * then narrowed to a double
+     */
+    private static double parse(BigDecimal cents) {
+        if (cents.signum() == 0) return 0.0;
+        return narrow(longDouble(cents.divide(HUNDRED)), DOUBLE_BITS).doubleValue();
+    }
+
+    /**
+     * True when cents / 100 is so close to halfway between two doubles that going through
+     * long double might round it the other way
+     */
+    private static boolean nearHalfway(double cents, double quotient) {
+        // Exact: the product needs more bits than a double, but the difference does not
+        double error = Math.abs(Math.fma(-quotient, 100, cents)) / 100;
+        double half = Math.ulp(quotient) / 2;
+        return Math.abs(error - half) <= Math.ulp(quotient) * 0x1p-10;
+    }
+
+    private static BigDecimal longDouble(BigDecimal value) {
+        return narrow(value, LONG_DOUBLE_BITS);
+    }
+
+    /**
+     * Rounds a non-negative value to the given number of significant bits, ties to even
+     */
+    private static BigDecimal narrow(BigDecimal value, int bits) {
+        if (value.signum() == 0) return value;
+        int exponent = Math.getExponent(value.doubleValue());
+        while (true) {
+            int shift = bits - 1 - exponent;
+            BigDecimal scaled = shift >= 0
+                ? value.multiply(new BigDecimal(BigInteger.TWO.pow(shift)))
+                : value.divide(new BigDecimal(BigInteger.TWO.pow(-shift)));
+            BigInteger whole = scaled.setScale(0, RoundingMode.HALF_EVEN).toBigInteger();
+            if (whole.bitLength() > bits) {
+                exponent++;
+            } else if (whole.bitLength() < bits) {
+                exponent--;
+            } else {
+                return shift >= 0
+                    ? new BigDecimal(whole).divide(new BigDecimal(BigInteger.TWO.pow(shift)))
+                    : new BigDecimal(whole.shiftLeft(-shift));
+            }
+        }
+    }
+}
@@ -2,9 +2,9 @@ package app;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import app.model.InfectionData;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
 
@@ -26,16 +26,18 @@ public class TrendingPage implements Handler {
         model.put("title", "Trending Health Data");
 
         try {
-            // Get filter data from database
-            ArrayList<String> infectionTypes = connection.getInfectionTypes();
-            ArrayList<String> economicStatuses = connection.getEconomicStatuses();
-            ArrayList<String> countries = connection.getCountries();
-            ArrayList<String> years = connection.getYears();
+            // Get filter data from the shared lookup cache
+            DimensionCache dimensions = connection.getDimensions();
+            List<String> infectionTypes = dimensions.getInfectionTypes().getNames();
+            List<String> economicStatuses = dimensions.getEconomies().getNames();
+            List<String> countries = dimensions.getCountries().getNames();
+            List<String> years = dimensions.getYears();
 
             model.put("infectionTypes", infectionTypes);
             model.put("economicStatuses", economicStatuses);
             model.put("countries", countries);
             model.put("years", years);
+            RequestTiming.mark(context, RequestTiming.Phase.FILTERS);
 
             // Get filter parameters from request
             String economicStatus = context.queryParam("economicStatus");
@@ -89,60 +91,23 @@ public class TrendingPage implements Handler {
             if (warningMessage != null) {
                 model.put("warning", warningMessage);
             }
+            RequestTiming.mark(context, RequestTiming.Phase.MODEL);
 
             // Only query data if we have at least economic status and infection type, and valid years
             if (validYearRange && economicStatus != null && !economicStatus.isEmpty() &&
                 infectionType != null && !infectionType.isEmpty()) {
 
-                // Get detailed infection data filtered by economic status
-                ArrayList<InfectionData> detailedData = connection.getInfectionData(
-                    infectionType, economicStatus, country, yearStart, yearEnd
-                );
-                model.put("detailedData", detailedData);
+                // Only whether any detailed rows exist; the charts load them from InfectionApi
+                try (InfectionCursor cursor = connection.openInfectionCursor(
+                        infectionType, economicStatus, country, yearStart, yearEnd)) {
+                    model.put("hasDetailedData", cursor.next());
+                }
 
-                // Get aggregated summary data by economic status
+                // Get aggregated summary data by economic status for the summary table
                 ArrayList<HashMap<String, String>> summaryData =
                     connection.getInfectionDataByEconomicStatus(infectionType, yearStart, yearEnd);
                 model.put("summaryData", summaryData);
-
-                // Prepare summary chart data as JSON
-                StringBuilder chartJson = new StringBuilder("[");
-                for (int i = 0; i < summaryData.size(); i++) {
-                    HashMap<String, String> row = summaryData.get(i);
-                    if (i > 0) chartJson.append(",");
-
-                    // Remove commas from total_cases and avg_cases for chart
-                    String totalCasesStr = row.get("total_cases").replace(",", "");
-                    String avgCasesStr = row.get("avg_cases").replace(",", "");
-
-                    chartJson.append("{")
-                        .append("\"economic_status\":\"").append(row.get("economic_status")).append("\",")
-                        .append("\"total_cases\":").append(totalCasesStr).append(",")
-                        .append("\"avg_cases\":").append(avgCasesStr)
-                        .append("}");
-                }
-                chartJson.append("]");
-
-                model.put("chartDataJson", chartJson.toString());
-
-                // Prepare detailed data as JSON for additional charts
-                StringBuilder detailedJson = new StringBuilder("[");
-                for (int i = 0; i < detailedData.size(); i++) {
-                    InfectionData data = detailedData.get(i);
-                    if (i > 0) detailedJson.append(",");
-
-                    // Escape country names for JSON
-                    String countryName = data.getCountry().replace("\"", "\\\"");
-
-                    detailedJson.append("{")
-                        .append("\"country\":\"").append(countryName).append("\",")
-                        .append("\"year\":").append(data.getYear()).append(",")
-                        .append("\"cases\":").append(data.getCases())
-                        .append("}");
-                }
-                detailedJson.append("]");
-
-                model.put("detailedDataJson", detailedJson.toString());
+                RequestTiming.mark(context, RequestTiming.Phase.QUERY);
             }
 
         } catch (Exception e) {
@@ -151,5 +116,6 @@ public class TrendingPage implements Handler {
         }
 
         context.render(TEMPLATE, model);
+        RequestTiming.mark(context, RequestTiming.Phase.RENDER);
     }
 }
\ No newline at end of file
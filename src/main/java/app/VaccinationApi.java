@@ -0,0 +1,57 @@
+package app;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Vaccination rows as JSON, filtered like the vaccination exports.
+ * <p>
+ * Answers an array of {@code {year, country, antigen, coverage, target_num, doses}} objects,
+ * streamed from the cursor as it is read.
+ */
+public class VaccinationApi implements Handler {
+
+    public static final String URL = "/api/vaccination";
+
+    private final JDBCConnection connection;
+
+    public VaccinationApi(JDBCConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void handle(Context context) throws Exception {
+        String country = context.queryParam("country");
+        String region = context.queryParam("region");
+        String antigen = context.queryParam("antigen");
+        String yearStart = context.queryParam("yearStart");
+        String yearEnd = context.queryParam("yearEnd");
+
+        try (VaccinationCursor cursor = connection.openVaccinationCursor(country, region, antigen, yearStart, yearEnd)) {
+            RequestTiming.mark(context, RequestTiming.Phase.QUERY);
+            context.contentType("application/json");
+            RequestTiming.streaming(context, RequestTiming.Phase.JSON);
+            try (JsonWriter json = new JsonWriter(context.res.getOutputStream())) {
+                json.beginArray();
+                while (cursor.next()) {
+                    json.beginObject()
+                        .name("year").value(cursor.getYear())
+                        .name("country").value(cursor.getCountry())
+                        .name("antigen").value(cursor.getAntigen())
+                        .name("coverage").value(cursor.getCoverage())
+                        .name("target_num").value(cursor.getTargetNum())
+                        .name("doses").value(cursor.getDoses())
+                        .endObject();
+                }
+                json.endArray();
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Once rows have been sent the status can no longer change; the client sees cut-off JSON
+            if (!context.res.isCommitted()) {
+                context.status(500).result("Error loading vaccination data: " + e.getMessage());
+            }
+        }
+    }
+}
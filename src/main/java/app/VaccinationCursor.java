@@ -0,0 +1,33 @@
+package app;
+
+import java.sql.SQLException;
+
+/**
+ * Forward-only view over vaccination rows, one row at a time.
+ * <p>
+ * Lets exports write rows as they are read instead of collecting them into a list first.
+ * Missing measures read as 0, the same as ResultSet.getDouble. Always close the cursor -
+ * a database-backed cursor holds a pooled connection until then.
+ */
+public interface VaccinationCursor extends AutoCloseable {
+
+    /**
+     * Moves to the next row, returning false once there are no more
+     */
+    boolean next() throws SQLException;
+
+    int getYear() throws SQLException;
+
+    String getCountry() throws SQLException;
+
+    String getAntigen() throws SQLException;
+
+    double getCoverage() throws SQLException;
+
+    double getTargetNum() throws SQLException;
+
+    double getDoses() throws SQLException;
+
+    @Override
+    void close();
+}
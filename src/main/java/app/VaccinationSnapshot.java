@@ -0,0 +1,590 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import app.model.VaccinationImprovement;
+
+/**
+ * Immutable, column-oriented copy of the Vaccination table held in memory.
+ * <p>
+ * Country, region and antigen names are dictionary encoded, so each row is only a handful of
+ * primitives spread across parallel arrays. Rows are sorted by year and {@code yearOffsets}
+ * marks where each year starts, so a year range is a contiguous slice of the arrays.
+ * Missing measures are stored as NaN so averages can skip them the way SQL's AVG does.
+ * <p>
+ * Within a year rows are kept in table order. {@code listingOrder} holds the listing query's
+ * order - year, then primary key - for row listings.
+ * <p>
+ * Coverage is also summed per (year, antigen, country name) and per (year, country name) into a
+ * small dense cube when the snapshot is built, so an improvement ranking reads two year slices of
+ * the cube instead of scanning rows. Countries are grouped by name, as the ranking query groups
+ * them. AVG's floating point total depends on the order it adds rows in, so the sums follow the
+ * order the ranking query reads them in once the schema is migrated: country by country, through
+ * idx_vaccination_country_year (smallest coverage first) when every antigen counts, or antigen by
+ * antigen through the primary key when the ranking is for one antigen name.
+ * <p>
+ * A snapshot never changes after it is built; JDBCConnection swaps in a new one when the
+ * database changes.
+ */
+public final class VaccinationSnapshot {
+
+    // Tables the snapshot is built from
+    static final String[] TABLES = { "Vaccination", "Country", "Region", "Antigen" };
+
+    // Antigen selectors for the coverage cube besides a single antigen id
+    private static final int ALL_ANTIGENS = -1;
+    private static final int SEVERAL_ANTIGENS = -2;
+
+    // Best improvement first, then by name with the NULL name first, as the ranking query sorts
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<VaccinationImprovement> IMPROVEMENT_ORDER = (a, b) -> {
+        // Compared as SQLite compares numbers, so -0.0 ties with 0.0
+        if (a.getImprovement() != b.getImprovement()) return a.getImprovement() < b.getImprovement() ? 1 : -1;
+        return NAME_ORDER.compare(a.getCountryName(), b.getCountryName());
+    };
+
+    // Dictionaries - index is the dense id used in the row arrays
+    private final String[] countryNames;
+    private final short[] countryRegion;    // region id per country, -1 when the region is unknown
+    private final String[] regionNames;
+    private final String[] antigenNames;    // null when the antigen code is not in the Antigen table
+
+    // Distinct country names, and each country's index among them - countries sharing a name
+    // (or having none) are one group in the improvement ranking
+    private final String[] groupNames;
+    private final short[] countryGroup;
+
+    // Row columns
+    private final int size;
+    private final short[] country;
+    private final short[] antigen;
+    private final short[] year;
+    private final double[] targetNum;
+    private final double[] doses;
+    private final double[] coverage;
+    private final int[] listingOrder;
+
+    // yearOffsets[y - minYear] is the first row of year y, yearOffsets[y - minYear + 1] the end
+    private final int minYear;
+    private final int[] yearOffsets;
+
+    // Coverage cube: cellSum[(y * antigens + a) * groups + g] and yearSum[y * groups + g]
+    // (all antigens), where y is the year offset and g the name group; NaN coverage is left out
+    // like AVG does
+    private final int[] antigenOrder;       // rows in the order cellSum adds them, grouped by year
+    private final double[] cellSum;
+    private final int[] cellCount;
+    private final double[] yearSum;
+    private final int[] yearCount;
+
+    // Identifies the database state the snapshot was built from
+    private final long version;
+
+    private VaccinationSnapshot(Builder builder, long version) {
+        this.countryNames = builder.countryNames.toArray(new String[0]);
+        this.regionNames = builder.regionNames.toArray(new String[0]);
+        this.antigenNames = builder.antigenNames.toArray(new String[0]);
+        this.countryRegion = new short[builder.countryRegion.size()];
+        for (int i = 0; i < countryRegion.length; i++) {
+            countryRegion[i] = builder.countryRegion.get(i);
+        }
+
+        HashMap<String, Short> groupIds = new HashMap<>();
+        this.countryGroup = new short[countryNames.length];
+        for (int c = 0; c < countryNames.length; c++) {
+            countryGroup[c] = groupIds.computeIfAbsent(countryNames[c], name -> (short) groupIds.size());
+        }
+        this.groupNames = new String[groupIds.size()];
+        groupIds.forEach((name, group) -> groupNames[group] = name);
+
+        this.size = builder.size;
+        this.country = Arrays.copyOf(builder.country, size);
+        this.antigen = Arrays.copyOf(builder.antigen, size);
+        this.year = Arrays.copyOf(builder.year, size);
+        this.targetNum = Arrays.copyOf(builder.targetNum, size);
+        this.doses = Arrays.copyOf(builder.doses, size);
+        this.coverage = Arrays.copyOf(builder.coverage, size);
+        this.listingOrder = builder.listingOrder();
+
+        // Rows arrive ordered by year, so the offsets are a single pass
+        int lowest = size == 0 ? 0 : year[0];
+        int highest = size == 0 ? -1 : year[size - 1];
+        this.minYear = lowest;
+        this.yearOffsets = new int[highest - lowest + 2];
+        int row = 0;
+        for (int y = lowest; y <= highest + 1; y++) {
+            while (row < size && year[row] < y) row++;
+            yearOffsets[y - lowest] = row;
+        }
+
+        int years = yearOffsets.length - 1;
+        int groups = groupNames.length;
+        int antigens = antigenNames.length;
+        this.cellSum = new double[years * antigens * groups];
+        this.cellCount = new int[cellSum.length];
+        this.yearSum = new double[years * groups];
+        this.yearCount = new int[yearSum.length];
+        this.antigenOrder = builder.rankingOrder(false);
+        for (int i : antigenOrder) {
+            double value = coverage[i];
+            if (Double.isNaN(value)) continue;
+            int cell = ((year[i] - lowest) * antigens + antigen[i]) * groups + countryGroup[country[i]];
+            cellSum[cell] += value;
+            cellCount[cell]++;
+        }
+        for (int i : builder.rankingOrder(true)) {
+            double value = coverage[i];
+            if (Double.isNaN(value)) continue;
+            int cell = (year[i] - lowest) * groups + countryGroup[country[i]];
+            yearSum[cell] += value;
+            yearCount[cell]++;
+        }
+
+        this.version = version;
+    }
+
+    /**
+     * Reads the Vaccination table and its dimensions into a new snapshot
+     */
+    public static VaccinationSnapshot load(Connection connection, long version) throws SQLException {
+        Builder builder = new Builder();
+
+        try (Statement statement = connection.createStatement()) {
+            // Regions and countries first so rows can be encoded as they stream in
+            HashMap<String, Short> regionIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT RegionID, region FROM Region")) {
+                while (rs.next()) {
+                    regionIds.put(rs.getString("RegionID"), (short) builder.regionNames.size());
+                    builder.regionNames.add(rs.getString("region"));
+                }
+            }
+
+            HashMap<String, Short> countryIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT CountryID, name, region FROM Country")) {
+                while (rs.next()) {
+                    countryIds.put(rs.getString("CountryID"), (short) builder.countryNames.size());
+                    builder.countryNames.add(rs.getString("name"));
+                    builder.countryRegion.add(regionIds.getOrDefault(rs.getString("region"), (short) -1));
+                }
+            }
+
+            HashMap<String, Short> antigenIds = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT AntigenID, name FROM Antigen")) {
+                while (rs.next()) {
+                    antigenIds.put(rs.getString("AntigenID"), (short) builder.antigenNames.size());
+                    builder.antigenNames.add(rs.getString("name"));
+                }
+            }
+
+            // Only rows whose country exists, matching the JOIN on Country in the SQL queries
+            String query = """
+                SELECT v.inf_type, v.country, v.antigen, v.year, v.target_num, v.doses, v.coverage
+                FROM Vaccination v
+                JOIN Country c ON v.country = c.CountryID
+                ORDER BY v.year, v.rowid
+            """;
+            try (ResultSet rs = statement.executeQuery(query)) {
+                while (rs.next()) {
+                    String antigenCode = rs.getString("antigen");
+                    Short antigenId = antigenIds.get(antigenCode);
+                    if (antigenId == null) {
+                        // Antigen code with no name - kept so unfiltered averages still count it
+                        antigenId = (short) builder.antigenNames.size();
+                        antigenIds.put(antigenCode, antigenId);
+                        builder.antigenNames.add(null);
+                    }
+                    String countryCode = rs.getString("country");
+                    builder.add(countryIds.get(countryCode), antigenId, rs.getInt("year"),
+                        readNullable(rs, "target_num"), readNullable(rs, "doses"), readNullable(rs, "coverage"),
+                        rs.getString("inf_type") + "\0" + antigenCode + "\0" + countryCode);
+                }
+            }
+        }
+
+        return new VaccinationSnapshot(builder, version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Same rows, in the same order, as the SQL behind JDBCConnection.getVaccinationData, read
+     * lazily from the arrays
+     */
+    public VaccinationCursor cursor(String countryName, String regionName, String antigenName,
+                                    String yearStart, String yearEnd) {
+        boolean[] countryOk = matchCountries(countryName, regionName, true);
+        boolean[] antigenOk = matchAntigens(antigenName);
+        int[] slice = yearSlice(yearStart, yearEnd);
+        if (countryOk == null || antigenOk == null || slice == null) {
+            return new SnapshotCursor(null, null, 0, 0);
+        }
+        return new SnapshotCursor(countryOk, antigenOk, slice[0], slice[1]);
+    }
+
+    /**
+     * Same result as the SQL behind JDBCConnection.getVaccinationImprovements: per country name, the
+     * average coverage in the start and end years and the change between them, best first
+     */
+    public ArrayList<VaccinationImprovement> getImprovements(String startYear, String endYear,
+                                                            String antigenName, String countryName) {
+        return getImprovements(startYear, endYear, antigenName, countryName, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The limit best improvements, picked with a bounded heap rather than by sorting every country
+     */
+    public ArrayList<VaccinationImprovement> getImprovements(String startYear, String endYear,
+                                                            String antigenName, String countryName, int limit) {
+        ArrayList<VaccinationImprovement> results = new ArrayList<>();
+
+        boolean filterAntigen = antigenName != null && !antigenName.isEmpty() && !antigenName.equals("All Vaccines");
+        boolean[] countryOk = matchCountries(countryName, null, false);
+        boolean[] antigenOk = filterAntigen ? matchAntigens(antigenName) : allAntigens();
+        int start = parseYear(startYear);
+        int end = parseYear(endYear);
+        if (countryOk == null || antigenOk == null || start == Integer.MIN_VALUE || end == Integer.MIN_VALUE) {
+            return results;
+        }
+
+        // The country filter is on the name, so a group passes as a whole
+        boolean[] groupOk = new boolean[groupNames.length];
+        for (int c = 0; c < countryNames.length; c++) {
+            if (countryOk[c]) groupOk[countryGroup[c]] = true;
+        }
+
+        double[] startSum = new double[groupNames.length];
+        int[] startCount = new int[groupNames.length];
+        double[] endSum = new double[groupNames.length];
+        int[] endCount = new int[groupNames.length];
+        int antigenId = filterAntigen ? singleAntigen(antigenOk) : ALL_ANTIGENS;
+        coverageInYear(start, antigenId, antigenOk, startSum, startCount);
+        coverageInYear(end, antigenId, antigenOk, endSum, endCount);
+
+        for (int g = 0; g < groupNames.length; g++) {
+            if (!groupOk[g] || startCount[g] == 0 || endCount[g] == 0) continue;
+            double initial = startSum[g] / startCount[g];
+            double fin = endSum[g] / endCount[g];
+            results.add(new VaccinationImprovement(groupNames[g], SqliteMath.round2(initial),
+                SqliteMath.round2(fin), SqliteMath.round2(fin - initial)));
+        }
+
+        if (results.size() <= limit) {
+            results.sort(IMPROVEMENT_ORDER);
+            return results;
+        }
+
+        // Keep the limit best seen so far, with the worst of them on top of the heap
+        PriorityQueue<VaccinationImprovement> best = new PriorityQueue<>(limit + 1, IMPROVEMENT_ORDER.reversed());
+        for (VaccinationImprovement improvement : results) {
+            best.add(improvement);
+            if (best.size() > limit) best.poll();
+        }
+        ArrayList<VaccinationImprovement> top = new ArrayList<>(best);
+        top.sort(IMPROVEMENT_ORDER);
+        return top;
+    }
+
+    /**
+     * Coverage sums and counts per name group for one year, read from the cube. Several antigens
+     * sharing the filtered name cannot be combined from the cube in the query's order, so those
+     * are summed by scanning the year's rows in that order instead.
+     */
+    private void coverageInYear(int targetYear, int antigenId, boolean[] antigenOk, double[] sums, int[] counts) {
+        int offset = targetYear - minYear;
+        if (offset < 0 || offset >= yearOffsets.length - 1) return;
+
+        int groups = groupNames.length;
+        if (antigenId == ALL_ANTIGENS) {
+            System.arraycopy(yearSum, offset * groups, sums, 0, groups);
+            System.arraycopy(yearCount, offset * groups, counts, 0, groups);
+        } else if (antigenId >= 0) {
+            int first = (offset * antigenNames.length + antigenId) * groups;
+            System.arraycopy(cellSum, first, sums, 0, groups);
+            System.arraycopy(cellCount, first, counts, 0, groups);
+        } else {
+            accumulateCoverage(offset, antigenOk, sums, counts);
+        }
+    }
+
+    /**
+     * The one antigen id the filter allows, or SEVERAL_ANTIGENS
+     */
+    private static int singleAntigen(boolean[] antigenOk) {
+        int found = SEVERAL_ANTIGENS;
+        for (int a = 0; a < antigenOk.length; a++) {
+            if (!antigenOk[a]) continue;
+            if (found != SEVERAL_ANTIGENS) return SEVERAL_ANTIGENS;
+            found = a;
+        }
+        return found;
+    }
+
+    private void accumulateCoverage(int offset, boolean[] antigenOk, double[] sums, int[] counts) {
+        for (int position = yearOffsets[offset]; position < yearOffsets[offset + 1]; position++) {
+            int i = antigenOrder[position];
+            double value = coverage[i];
+            if (!Double.isNaN(value) && antigenOk[antigen[i]]) {
+                int group = countryGroup[country[i]];
+                sums[group] += value;
+                counts[group]++;
+            }
+        }
+    }
+
+    /**
+     * Marks which country ids pass the country and region filters, or null if nothing can match.
+     * When requireRegion is set, countries without a known region are excluded like an inner JOIN.
+     */
+    private boolean[] matchCountries(String countryName, String regionName, boolean requireRegion) {
+        boolean[] ok = new boolean[countryNames.length];
+        boolean filterCountry = isPresent(countryName);
+        boolean filterRegion = isPresent(regionName);
+        boolean any = false;
+
+        for (int c = 0; c < countryNames.length; c++) {
+            short region = countryRegion[c];
+            if (requireRegion && region < 0) continue;
+            if (filterCountry && !matches(countryNames[c], countryName)) continue;
+            if (filterRegion && (region < 0 || !matches(regionNames[region], regionName))) continue;
+            ok[c] = true;
+            any = true;
+        }
+        return any ? ok : null;
+    }
+
+    /**
+     * Marks which antigen ids pass the antigen filter, or null if nothing can match.
+     * Antigens missing from the Antigen table never match, like an inner JOIN.
+     */
+    private boolean[] matchAntigens(String antigenName) {
+        boolean[] ok = new boolean[antigenNames.length];
+        boolean filter = isPresent(antigenName);
+        boolean any = false;
+
+        for (int a = 0; a < antigenNames.length; a++) {
+            if (antigenNames[a] == null) continue;
+            if (filter && !matches(antigenNames[a], antigenName)) continue;
+            ok[a] = true;
+            any = true;
+        }
+        return any ? ok : null;
+    }
+
+    private boolean[] allAntigens() {
+        boolean[] ok = new boolean[antigenNames.length];
+        Arrays.fill(ok, true);
+        return ok;
+    }
+
+    /**
+     * Converts an optional year range into [firstRow, endRow), or null if it cannot match anything
+     */
+    private int[] yearSlice(String yearStart, String yearEnd) {
+        int from = 0;
+        int to = size;
+
+        if (isPresent(yearStart)) {
+            int startYear = parseYear(yearStart);
+            if (startYear == Integer.MIN_VALUE) return null;
+            from = offsetFor(startYear);
+        }
+        if (isPresent(yearEnd)) {
+            int endYear = parseYear(yearEnd);
+            if (endYear == Integer.MIN_VALUE) return null;
+            to = offsetFor(endYear + 1);
+        }
+        return new int[] { from, Math.max(from, to) };
+    }
+
+    private int offsetFor(int targetYear) {
+        int offset = targetYear - minYear;
+        if (offset <= 0) return 0;
+        if (offset >= yearOffsets.length) return size;
+        return yearOffsets[offset];
+    }
+
+    /**
+     * "column = ?" with the trimmed filter bound - a NULL name never matches
+     */
+    private static boolean matches(String name, String filter) {
+        return name != null && name.equals(filter.trim());
+    }
+
+    private static int parseYear(String value) {
+        if (value == null) return Integer.MIN_VALUE;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static double readNullable(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? Double.NaN : value;
+    }
+
+    private static double zeroIfMissing(double value) {
+        // ResultSet.getDouble returns 0 for NULL, so keep the same behaviour
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    /**
+     * Walks a year slice in listing order, skipping rows the filters reject
+     */
+    private final class SnapshotCursor implements VaccinationCursor {
+        private final boolean[] countryOk;
+        private final boolean[] antigenOk;
+        private final int end;
+        private int position;
+        private int row = -1;
+
+        private SnapshotCursor(boolean[] countryOk, boolean[] antigenOk, int start, int end) {
+            this.countryOk = countryOk;
+            this.antigenOk = antigenOk;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean next() {
+            while (position < end) {
+                int i = listingOrder[position++];
+                if (countryOk[country[i]] && antigenOk[antigen[i]]) {
+                    row = i;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int getYear() {
+            return year[row];
+        }
+
+        @Override
+        public String getCountry() {
+            return countryNames[country[row]];
+        }
+
+        @Override
+        public String getAntigen() {
+            return antigenNames[antigen[row]];
+        }
+
+        @Override
+        public double getCoverage() {
+            return zeroIfMissing(coverage[row]);
+        }
+
+        @Override
+        public double getTargetNum() {
+            return zeroIfMissing(targetNum[row]);
+        }
+
+        @Override
+        public double getDoses() {
+            return zeroIfMissing(doses[row]);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release - the snapshot stays in memory
+        }
+    }
+
+    /**
+     * Growable column buffers used while reading rows
+     */
+    private static final class Builder {
+        private final ArrayList<String> countryNames = new ArrayList<>();
+        private final ArrayList<Short> countryRegion = new ArrayList<>();
+        private final ArrayList<String> regionNames = new ArrayList<>();
+        private final ArrayList<String> antigenNames = new ArrayList<>();
+
+        private int size = 0;
+        private short[] country = new short[1024];
+        private short[] antigen = new short[1024];
+        private short[] year = new short[1024];
+        private double[] targetNum = new double[1024];
+        private double[] doses = new double[1024];
+        private double[] coverage = new double[1024];
+        private final ArrayList<String> listingKeys = new ArrayList<>();
+
+        private void add(short countryId, short antigenId, int rowYear, double target, double dose, double cover,
+                         String listingKey) {
+            if (size == country.length) {
+                int capacity = size * 2;
+                country = Arrays.copyOf(country, capacity);
+                antigen = Arrays.copyOf(antigen, capacity);
+                year = Arrays.copyOf(year, capacity);
+                targetNum = Arrays.copyOf(targetNum, capacity);
+                doses = Arrays.copyOf(doses, capacity);
+                coverage = Arrays.copyOf(coverage, capacity);
+            }
+            country[size] = countryId;
+            antigen[size] = antigenId;
+            year[size] = (short) rowYear;
+            targetNum[size] = target;
+            doses[size] = dose;
+            coverage[size] = cover;
+            listingKeys.add(listingKey);
+            size++;
+        }
+
+        /**
+         * Row indices sorted by year then primary key - rows are already grouped by year
+         */
+        private int[] listingOrder() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> year[a] != year[b]
+                ? Integer.compare(year[a], year[b])
+                : listingKeys.get(a).compareTo(listingKeys.get(b)));
+
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) result[i] = order[i];
+            return result;
+        }
+
+        /**
+         * Row indices by year then country - countries in table order, which is how a name
+         * index returns countries sharing a name - and within those by coverage, or by antigen
+         * then primary key
+         */
+        private int[] rankingOrder(boolean byCoverage) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> {
+                if (year[a] != year[b]) return Integer.compare(year[a], year[b]);
+                if (country[a] != country[b]) return Integer.compare(country[a], country[b]);
+                if (byCoverage) return Double.compare(coverage[a], coverage[b]);
+                if (antigen[a] != antigen[b]) return Integer.compare(antigen[a], antigen[b]);
+                return listingKeys.get(a).compareTo(listingKeys.get(b));
+            });
+
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) result[i] = order[i];
+            return result;
+        }
+    }
+}
@@ -24,9 +24,11 @@ public class ViewFeedbackPage implements Handler {
 
         // Retrieve all feedback from the database
         ArrayList<HashMap<String, String>> feedbackList = connection.getAllFeedback();
+        RequestTiming.mark(ctx, RequestTiming.Phase.QUERY);
         model.put("feedbackList", feedbackList);
         model.put("feedbackCount", feedbackList.size());
 
         ctx.render(TEMPLATE, model);
+        RequestTiming.mark(ctx, RequestTiming.Phase.RENDER);
     }
 }
@@ -0,0 +1,69 @@
+package app.model;
+
+/**
+ * Infection cases for one economic status and infection type, totalled over its countries
+ */
+public class InfectionSummary {
+    private String economicStatus;
+    private String infectionType;
+    private int countryCount;
+    private double totalCases;
+    private double avgCases;
+
+    public InfectionSummary() {}
+
+    public InfectionSummary(String economicStatus, String infectionType, int countryCount,
+                            double totalCases, double avgCases) {
+        this.economicStatus = economicStatus;
+        this.infectionType = infectionType;
+        this.countryCount = countryCount;
+        this.totalCases = totalCases;
+        this.avgCases = avgCases;
+    }
+
+    public String getEconomicStatus() {
+        return economicStatus;
+    }
+
+    public void setEconomicStatus(String economicStatus) {
+        this.economicStatus = economicStatus;
+    }
+
+    public String getInfectionType() {
+        return infectionType;
+    }
+
+    public void setInfectionType(String infectionType) {
+        this.infectionType = infectionType;
+    }
+
+    public int getCountryCount() {
+        return countryCount;
+    }
+
+    public void setCountryCount(int countryCount) {
+        this.countryCount = countryCount;
+    }
+
+    public double getTotalCases() {
+        return totalCases;
+    }
+
+    public void setTotalCases(double totalCases) {
+        this.totalCases = totalCases;
+    }
+
+    public double getAvgCases() {
+        return avgCases;
+    }
+
+    public void setAvgCases(double avgCases) {
+        this.avgCases = avgCases;
+    }
+
+    @Override
+    public String toString() {
+        return "InfectionSummary{economicStatus='" + economicStatus + "', infectionType='" + infectionType +
+            "', countryCount=" + countryCount + ", totalCases=" + totalCases + ", avgCases=" + avgCases + "}";
+    }
+}
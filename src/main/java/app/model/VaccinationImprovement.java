@@ -0,0 +1,58 @@
+package app.model;
+
+/**
+ * Change in a country's average vaccination coverage between two years, in percentage points
+ */
+public class VaccinationImprovement {
+    private String countryName;
+    private double initialCoverage;
+    private double finalCoverage;
+    private double improvement;
+
+    public VaccinationImprovement() {}
+
+    public VaccinationImprovement(String countryName, double initialCoverage, double finalCoverage, double improvement) {
+        this.countryName = countryName;
+        this.initialCoverage = initialCoverage;
+        this.finalCoverage = finalCoverage;
+        this.improvement = improvement;
+    }
+
+    public String getCountryName() {
+        return countryName;
+    }
+
+    public void setCountryName(String countryName) {
+        this.countryName = countryName;
+    }
+
+    public double getInitialCoverage() {
+        return initialCoverage;
+    }
+
+    public void setInitialCoverage(double initialCoverage) {
+        this.initialCoverage = initialCoverage;
+    }
+
+    public double getFinalCoverage() {
+        return finalCoverage;
+    }
+
+    public void setFinalCoverage(double finalCoverage) {
+        this.finalCoverage = finalCoverage;
+    }
+
+    public double getImprovement() {
+        return improvement;
+    }
+
+    public void setImprovement(double improvement) {
+        this.improvement = improvement;
+    }
+
+    @Override
+    public String toString() {
+        return "VaccinationImprovement{countryName='" + countryName + "', initialCoverage=" + initialCoverage +
+            ", finalCoverage=" + finalCoverage + ", improvement=" + improvement + "}";
+    }
+}
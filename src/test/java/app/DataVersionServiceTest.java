@@ -0,0 +1,136 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks what DataVersionService reports as changed, on a copy of database/who.db read through
+ * a ConnectionPool the way JDBCConnection wires them together.
+ */
+class DataVersionServiceTest {
+
+    private static final String DATABASE = "database/who.db";
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private String url;
+    private ConnectionPool pool;
+    private DataVersionService versions;
+
+    @BeforeEach
+    void open() throws Exception {
+        path = directory.resolve("who.db");
+        Files.copy(Paths.get(DATABASE), path);
+        url = "jdbc:sqlite:" + path;
+        pool = new ConnectionPool(url, 2, 1_000);
+
+        Connection writer = pool.borrowWriter();
+        try {
+            DataVersionService.installChangeLog(writer);
+        } finally {
+            pool.releaseWriter(writer);
+        }
+
+        versions = new DataVersionService(url, path.toFile());
+        versions.addReplacementPreparer(() -> {
+            pool.reopenWriter();
+            pool.switchReads(url);
+        });
+        versions.start();
+    }
+
+    @AfterEach
+    void close() {
+        if (versions != null) versions.close();
+        if (pool != null) pool.close();
+    }
+
+    @Test
+    void replacedFileIsReadAfterTheCheck() throws Exception {
+        assertEquals(0, regions("ZZZ"));
+        Map<String, Long> before = versions.getVersions();
+
+        // A refreshed copy with one more region, renamed over the file the pool has open
+        Path refreshed = directory.resolve("refreshed.db");
+        Files.copy(Paths.get(DATABASE), refreshed);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + refreshed);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO Region (RegionID, region) VALUES ('ZZZ', 'Atlantis')");
+        }
+        Files.move(refreshed, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        versions.check();
+        assertEquals(before.get("Region") + 1, versions.version("Region"));
+        assertEquals(before.get("Vaccination") + 1, versions.version("Vaccination"));
+        assertEquals(1, regions("ZZZ"));
+
+        // The writer moved to the new file too, and the new file logs changes per table
+        Map<String, Long> replaced = versions.getVersions();
+        addFeedback();
+        versions.check();
+        assertEquals(replaced.get("Feedback") + 1, versions.version("Feedback"));
+        assertEquals(replaced.get("Region"), versions.version("Region"));
+    }
+
+    @Test
+    void checkpointIsNotAChange() throws Exception {
+        addFeedback();
+        versions.check();
+        long changes = versions.getChangeCount();
+        Map<String, Long> before = versions.getVersions();
+
+        // Copies the WAL into the file as SQLite's automatic checkpoints do, with no new data
+        File file = path.toFile();
+        long stamp = file.lastModified() * 31 + file.length();
+        Thread.sleep(20);
+        Connection writer = pool.borrowWriter();
+        try (Statement statement = writer.createStatement()) {
+            statement.execute("PRAGMA wal_checkpoint(PASSIVE)");
+        } finally {
+            pool.releaseWriter(writer);
+        }
+        assertNotEquals(stamp, file.lastModified() * 31 + file.length());
+
+        versions.check();
+        assertEquals(changes, versions.getChangeCount());
+        assertEquals(before, versions.getVersions());
+    }
+
+    private void addFeedback() throws SQLException {
+        Connection writer = pool.borrowWriter();
+        try (Statement statement = writer.createStatement()) {
+            statement.executeUpdate("INSERT INTO Feedback (name, email, feedback) VALUES ('A', 'a@example.com', 'Hello')");
+        } finally {
+            pool.releaseWriter(writer);
+        }
+    }
+
+    private int regions(String id) throws SQLException {
+        Connection connection = pool.borrow();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM Region WHERE RegionID = '" + id + "'")) {
+            return rs.getInt(1);
+        } finally {
+            pool.release(connection);
+        }
+    }
+}
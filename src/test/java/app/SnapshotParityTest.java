@@ -0,0 +1,290 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import app.model.InfectionSummary;
+import app.model.VaccinationImprovement;
+
+/**
+ * Runs each in-memory snapshot method and the SQL it stands in for over a grid of filters, and
+ * checks both give the same rows in the same order.
+ * <p>
+ * Each test runs on two copies of database/who.db, both migrated like the application does at
+ * startup: one as shipped, and one edited to hold what the shipped data happens not to - two
+ * countries sharing a name, a country with no name, two antigens sharing a name and two
+ * infection types sharing a description once trimmed.
+ */
+class SnapshotParityTest {
+
+    private static final String DATABASE = "database/who.db";
+
+    // Country's name loses its UNIQUE and NOT NULL constraints so the edge cases below can be
+    // added, but stays indexed so the queries are planned as they are on the shipped table
+    private static final String[] EDGE_CASES = {
+        "CREATE TABLE CountryCopy (CountryID TEXT (3) PRIMARY KEY UNIQUE NOT NULL, name TEXT (50),"
+            + " region TEXT (3) REFERENCES Region (RegionID), economy INTEGER REFERENCES Economy (economyID))",
+        "INSERT INTO CountryCopy SELECT * FROM Country",
+        "DROP TABLE Country",
+        "ALTER TABLE CountryCopy RENAME TO Country",
+        "CREATE INDEX country_name ON Country (name)",
+        // A second Australia, with New Zealand's rows at half the coverage
+        "INSERT INTO Country (CountryID, name, region, economy) VALUES ('ZZ1', 'Australia', 'TEA', 1)",
+        "INSERT INTO Vaccination SELECT inf_type, antigen, 'ZZ1', year, target_num, doses, coverage / 2 FROM Vaccination WHERE country = 'NZL'",
+        "INSERT INTO InfectionData SELECT inf_type, 'ZZ1', year, cases FROM InfectionData WHERE country = 'NZL'",
+        // A country with no name, with Fiji's rows
+        "INSERT INTO Country (CountryID, name, region, economy) VALUES ('ZZ2', NULL, 'TEA', 2)",
+        "INSERT INTO Vaccination SELECT inf_type, antigen, 'ZZ2', year, target_num, doses, coverage FROM Vaccination WHERE country = 'FJI'",
+        "INSERT INTO InfectionData SELECT inf_type, 'ZZ2', year, cases FROM InfectionData WHERE country = 'FJI'",
+        // A second antigen named like MCV1, with MCV2's rows
+        "INSERT INTO Antigen (AntigenID, name) VALUES ('MCVX', 'Measles-containing vaccine, 1st dose')",
+        "INSERT INTO Vaccination SELECT inf_type, 'MCVX', country, year, target_num, doses, coverage FROM Vaccination WHERE antigen = 'MCV2'",
+        // A second Measles type, padded with spaces, with Rubella's rows
+        "INSERT INTO Infection_Type (id, description) VALUES ('MEB', ' Measles ')",
+        "INSERT INTO InfectionData SELECT 'MEB', country, year, cases FROM InfectionData WHERE inf_type = 'RUB'"
+    };
+
+    private static final String[] COUNTRIES = { null, "", "Australia", " New Zealand ", "Atlantis" };
+    private static final String[] REGIONS = { null, "East Asia & Pacific", "Atlantis" };
+    private static final String[] ANTIGENS = { null, "Measles-containing vaccine, 1st dose", "Atlantis" };
+    private static final String[] YEARS = { null, "2005", " 2010 ", "2030", "abc", "2010.0" };
+    private static final String[] INFECTION_TYPES = { null, "", "Measles", " Rubella ", "Atlantis" };
+    private static final String[] ECONOMIES = { null, "High Income", "Atlantis" };
+
+    private static final String[][] YEAR_RANGES = { { "2000", "2020" }, { " 2019 ", "2005" }, { "2010", "2010" }, { "1990", "2024" },
+        { "abc", "2020" }, { "2000", "2010.0" }, { null, "2020" }, { "2000", null } };
+    private static final String[] IMPROVEMENT_ANTIGENS = { null, "", "All Vaccines", "Measles-containing vaccine, 1st dose", "Atlantis" };
+    private static final int[] LIMITS = { Integer.MAX_VALUE, 5 };
+
+    @TempDir
+    static Path directory;
+
+    private static Connection shipped;
+    private static Connection edited;
+
+    @BeforeAll
+    static void openDatabases() throws Exception {
+        shipped = open("shipped.db");
+        edited = open("edited.db", EDGE_CASES);
+    }
+
+    @AfterAll
+    static void closeDatabases() throws SQLException {
+        if (shipped != null) shipped.close();
+        if (edited != null) edited.close();
+    }
+
+    static Stream<Arguments> databases() {
+        return Stream.of(
+            Arguments.of(Named.of("shipped data", shipped)),
+            Arguments.of(Named.of("edited data", edited)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("databases")
+    void vaccinationData(Connection connection) throws SQLException {
+        VaccinationSnapshot snapshot = VaccinationSnapshot.load(connection, 0);
+
+        for (String country : COUNTRIES) {
+            for (String region : REGIONS) {
+                for (String antigen : ANTIGENS) {
+                    for (String yearStart : YEARS) {
+                        for (String yearEnd : YEARS) {
+                            QueryShape shape = JDBCConnection.vaccinationDataQuery(country, region, antigen, yearStart, yearEnd);
+                            List<String> expected = query(connection, shape, rs -> row(rs.getInt("year"),
+                                rs.getString("country_name"), rs.getString("antigen_name"), rs.getDouble("coverage"),
+                                rs.getDouble("target_num"), rs.getDouble("doses")));
+
+                            List<String> actual = new ArrayList<>();
+                            try (VaccinationCursor cursor = snapshot.cursor(country, region, antigen, yearStart, yearEnd)) {
+                                while (cursor.next()) {
+                                    actual.add(row(cursor.getYear(), cursor.getCountry(), cursor.getAntigen(),
+                                        cursor.getCoverage(), cursor.getTargetNum(), cursor.getDoses()));
+                                }
+                            }
+                            assertEquals(expected, actual, filters(country, region, antigen, yearStart, yearEnd));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("databases")
+    void infectionData(Connection connection) throws SQLException {
+        InfectionSnapshot snapshot = InfectionSnapshot.load(connection, 0);
+
+        for (String infType : INFECTION_TYPES) {
+            for (String economy : ECONOMIES) {
+                for (String country : COUNTRIES) {
+                    for (String yearStart : YEARS) {
+                        for (String yearEnd : YEARS) {
+                            QueryShape shape = JDBCConnection.infectionDataQuery(infType, economy, country, yearStart, yearEnd);
+                            List<String> expected = query(connection, shape, rs -> row(rs.getInt("year"),
+                                rs.getString("country"), rs.getString("economic_status"), rs.getString("infection_type"),
+                                rs.getDouble("cases")));
+
+                            List<String> actual = new ArrayList<>();
+                            try (InfectionCursor cursor = snapshot.cursor(infType, economy, country, yearStart, yearEnd)) {
+                                while (cursor.next()) {
+                                    actual.add(row(cursor.getYear(), cursor.getCountry(), cursor.getEconomicStatus(),
+                                        cursor.getInfectionType(), cursor.getCases()));
+                                }
+                            }
+                            assertEquals(expected, actual, filters(infType, economy, country, yearStart, yearEnd));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("databases")
+    void infectionSummary(Connection connection) throws SQLException {
+        InfectionSnapshot snapshot = InfectionSnapshot.load(connection, 0);
+
+        for (String infType : INFECTION_TYPES) {
+            for (String yearStart : YEARS) {
+                for (String yearEnd : YEARS) {
+                    // Null means the caller runs the query itself, so there is nothing to compare
+                    ArrayList<InfectionSummary> summaries = snapshot.summary(infType, yearStart, yearEnd);
+                    if (summaries == null) continue;
+
+                    QueryShape shape = JDBCConnection.infectionSummaryQuery(infType, yearStart, yearEnd);
+                    List<String> expected = query(connection, shape, rs -> row(rs.getString("economic_status"),
+                        rs.getString("infection_type"), rs.getInt("country_count"), rs.getDouble("total_cases"),
+                        rs.getDouble("avg_cases")));
+
+                    List<String> actual = new ArrayList<>();
+                    for (InfectionSummary summary : summaries) {
+                        actual.add(row(summary.getEconomicStatus(), summary.getInfectionType(), summary.getCountryCount(),
+                            summary.getTotalCases(), summary.getAvgCases()));
+                    }
+                    assertEquals(expected, actual, filters(infType, yearStart, yearEnd));
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("databases")
+    void improvements(Connection connection) throws SQLException {
+        VaccinationSnapshot snapshot = VaccinationSnapshot.load(connection, 0);
+
+        for (String[] years : YEAR_RANGES) {
+            for (String antigen : IMPROVEMENT_ANTIGENS) {
+                for (String country : COUNTRIES) {
+                    QueryShape shape = JDBCConnection.improvementsQuery(years[0], years[1], antigen, country);
+                    List<String> ranking = query(connection, shape, rs -> row(rs.getString("country_name"),
+                        rs.getDouble("initial_coverage"), rs.getDouble("final_coverage"), rs.getDouble("improvement")));
+
+                    for (int limit : LIMITS) {
+                        List<String> expected = ranking.subList(0, Math.min(limit, ranking.size()));
+                        List<String> actual = new ArrayList<>();
+                        for (VaccinationImprovement improvement : snapshot.getImprovements(years[0], years[1], antigen, country, limit)) {
+                            actual.add(row(improvement.getCountryName(), improvement.getInitialCoverage(),
+                                improvement.getFinalCoverage(), improvement.getImprovement()));
+                        }
+                        assertEquals(expected, actual, filters(years[0], years[1], antigen, country) + " limit " + limit);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void round2() throws SQLException {
+        // Half cents either side of the rounding point, awkward binary fractions and random values
+        List<Double> values = new ArrayList<>();
+        for (int cents = -20_000; cents <= 20_000; cents++) {
+            double halfCent = (cents + 0.5) / 100;
+            values.add(halfCent);
+            values.add(Math.nextUp(halfCent));
+            values.add(Math.nextDown(halfCent));
+        }
+        Random random = new Random(2803);
+        for (int i = 0; i < 20_000; i++) {
+            values.add((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12)));
+        }
+        values.addAll(List.of(0.0, -0.0, 0.004, -0.004, 1e15 + 0.125, 123456789012345678.0, 123456789.125, 2.675, 1.005));
+
+        try (PreparedStatement statement = shipped.prepareStatement("SELECT ROUND(?, 2)")) {
+            for (double value : values) {
+                statement.setDouble(1, value);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    assertEquals(rs.getDouble(1), SqliteMath.round2(value), "ROUND(" + value + ", 2)");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one row of a query into text
+     */
+    interface RowReader {
+        String read(ResultSet rs) throws SQLException;
+    }
+
+    private static List<String> query(Connection connection, QueryShape shape, RowReader reader) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(shape.getSql())) {
+            shape.bind(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(reader.read(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Doubles are written in full, so any difference in the last bit shows
+    private static String row(Object... values) {
+        return Arrays.stream(values).map(String::valueOf).collect(Collectors.joining(" | "));
+    }
+
+    private static String filters(String... values) {
+        return Arrays.stream(values).map(value -> value == null ? "null" : "'" + value + "'")
+            .collect(Collectors.joining(", ", "filters (", ")"));
+    }
+
+    private static Connection open(String name, String... edits) throws Exception {
+        Path copy = directory.resolve(name);
+        Files.copy(Paths.get(DATABASE), copy);
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + copy);
+        try (Statement statement = connection.createStatement()) {
+            for (String edit : edits) {
+                statement.executeUpdate(edit);
+            }
+        }
+        new SchemaMigration(connection).migrate();
+        return connection;
+    }
+}